@@ -0,0 +1,68 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle.jfr;
+
+import jdk.jfr.EventType;
+
+/**
+ * The JFR-backed implementation, only loaded (reflectively) when the jdk.jfr API is present.
+ */
+public class JfrRebelFlightRecorder extends RebelFlightRecorder {
+
+  private final EventType modelBuildType = EventType.getEventType(RebelModelBuildEvent.class);
+
+  private final EventType canonicalizationType = EventType.getEventType(RebelCanonicalizationEvent.class);
+
+  private final EventType renderingType = EventType.getEventType(RebelRenderingEvent.class);
+
+  private final EventType writeType = EventType.getEventType(RebelWriteEvent.class);
+
+  public Span beginModelBuild(String projectPath) {
+    if (!modelBuildType.isEnabled()) {
+      return NOOP_SPAN;
+    }
+    return start(new RebelModelBuildEvent(), projectPath, null);
+  }
+
+  public Span beginCanonicalization(String projectPath, String path) {
+    if (!canonicalizationType.isEnabled()) {
+      return NOOP_SPAN;
+    }
+    return start(new RebelCanonicalizationEvent(), projectPath, path);
+  }
+
+  public Span beginRendering(String projectPath) {
+    if (!renderingType.isEnabled()) {
+      return NOOP_SPAN;
+    }
+    return start(new RebelRenderingEvent(), projectPath, null);
+  }
+
+  public Span beginWrite(String projectPath, String path) {
+    if (!writeType.isEnabled()) {
+      return NOOP_SPAN;
+    }
+    return start(new RebelWriteEvent(), projectPath, path);
+  }
+
+  private static Span start(RebelJfrEvent event, String projectPath, String path) {
+    event.projectPath = projectPath;
+    event.path = path;
+    event.begin();
+    return event;
+  }
+
+}
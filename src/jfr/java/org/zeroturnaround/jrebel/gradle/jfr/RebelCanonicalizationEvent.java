@@ -0,0 +1,26 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.zeroturnaround.jrebel.gradle.Canonicalization")
+@Label("Path Canonicalization")
+@Description("File#getCanonicalPath call made while fixing paths")
+class RebelCanonicalizationEvent extends RebelJfrEvent {
+}
@@ -0,0 +1,57 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+/**
+ * Common attributes of the plugin's JFR events.
+ */
+@Category({ "JRebel", "Gradle plugin" })
+abstract class RebelJfrEvent extends Event implements RebelFlightRecorder.Span {
+
+  @Label("Project Path")
+  String projectPath;
+
+  @Label("File Path")
+  String path;
+
+  @Label("Resource Count")
+  long resourceCount;
+
+  @Label("Bytes")
+  @DataAmount
+  long bytes;
+
+  public RebelFlightRecorder.Span resourceCount(long resourceCount) {
+    this.resourceCount = resourceCount;
+    return this;
+  }
+
+  public RebelFlightRecorder.Span bytes(long bytes) {
+    this.bytes = bytes;
+    return this;
+  }
+
+  public void finish() {
+    end();
+    commit();
+  }
+
+}
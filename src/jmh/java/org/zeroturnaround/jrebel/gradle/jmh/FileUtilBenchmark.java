@@ -0,0 +1,72 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle.jmh;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.zeroturnaround.jrebel.gradle.util.FileUtil;
+
+/**
+ * FileUtil#getRelativePath over a batch of paths (half of them inside the base directory, half outside).
+ * The paths don't have to exist, canonicalization still hits the file system for every path element.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileUtilBenchmark {
+
+  @Param({ "10", "1000", "100000" })
+  public int resources;
+
+  private File baseDir;
+
+  private File[] files;
+
+  @Setup
+  public void setUp() {
+    File tmp = new File(System.getProperty("java.io.tmpdir"));
+    baseDir = new File(tmp, "rebel-jmh/project");
+    files = new File[resources];
+    for (int i = 0; i < resources; i++) {
+      File root = i % 2 == 0 ? baseDir : new File(tmp, "rebel-jmh/project-shared");
+      files[i] = new File(root, "module-" + (i / 4) + "/build/classes/main-" + i);
+    }
+  }
+
+  @Benchmark
+  public void getRelativePath(Blackhole blackhole) {
+    for (File file : files) {
+      blackhole.consume(FileUtil.getRelativePath(baseDir, file));
+    }
+  }
+
+}
@@ -0,0 +1,90 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle.jmh;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.logging.Logging;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zeroturnaround.jrebel.gradle.RebelGenerateTask;
+import org.zeroturnaround.jrebel.gradle.RebelModelBuilder;
+import org.zeroturnaround.jrebel.gradle.RebelPathFixer;
+import org.zeroturnaround.jrebel.gradle.model.RebelMainModel;
+import org.zeroturnaround.jrebel.gradle.util.LoggerWrapper;
+
+/**
+ * Building the classpath model (including the path fixing) of a jar project with a 'classpath {}' block
+ * of the given size. The builder doesn't touch its configuration, so every invocation does the same work.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RebelClasspathModelBenchmark {
+
+  @Param({ "10", "1000", "100000" })
+  public int resources;
+
+  @Param({ "0", "1", "10" })
+  public int patterns;
+
+  private File projectDir;
+
+  private RebelModelBuilder builder;
+
+  @Setup
+  public void setUp() throws IOException {
+    projectDir = File.createTempFile("rebel-benchmark", "");
+    projectDir.delete();
+    File classesDir = new File(projectDir, "build/classes/main");
+    File resourcesDir = new File(projectDir, "build/resources/main");
+    classesDir.mkdirs();
+    resourcesDir.mkdirs();
+
+    builder = new RebelModelBuilder(new LoggerWrapper(Logging.getLogger(RebelClasspathModelBenchmark.class)),
+        new RebelPathFixer(projectDir, null, null), RebelGenerateTask.PACKAGING_TYPE_JAR,
+        SyntheticModels.classpath(resources, patterns), null, null, Collections.singletonList(classesDir), resourcesDir,
+        null, null, false);
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    FileUtils.deleteDirectory(projectDir);
+  }
+
+  @Benchmark
+  public RebelMainModel buildClasspathModel() {
+    return builder.build();
+  }
+
+}
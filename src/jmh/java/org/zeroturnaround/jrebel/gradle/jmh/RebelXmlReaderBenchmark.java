@@ -0,0 +1,71 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle.jmh;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zeroturnaround.jrebel.gradle.RebelXmlReader;
+import org.zeroturnaround.jrebel.gradle.RebelXmlWriter;
+import org.zeroturnaround.jrebel.gradle.model.RebelMainModel;
+
+/**
+ * Parse throughput of rebel.xml files of different sizes, the counterpart of RebelXmlWriterBenchmark.
+ * The generated document sizes are printed on setup to turn the scores into MB/s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RebelXmlReaderBenchmark {
+
+  @Param({ "10", "1000", "100000" })
+  public int resources;
+
+  @Param({ "0", "10" })
+  public int patterns;
+
+  private byte[] xml;
+
+  private RebelXmlReader reader;
+
+  @Setup
+  public void setUp() throws IOException {
+    RebelMainModel model = SyntheticModels.mainModel("/workspace/project", resources, patterns);
+    xml = new RebelXmlWriter().toXmlString(model).getBytes("UTF-8");
+    reader = new RebelXmlReader();
+  }
+
+  @Benchmark
+  public RebelMainModel read() throws IOException {
+    return reader.read(new ByteArrayInputStream(xml));
+  }
+
+}
@@ -0,0 +1,102 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.zeroturnaround.jrebel.gradle.model.RebelClasspath;
+import org.zeroturnaround.jrebel.gradle.model.RebelClasspathResource;
+import org.zeroturnaround.jrebel.gradle.model.RebelMainModel;
+import org.zeroturnaround.jrebel.gradle.model.RebelWar;
+import org.zeroturnaround.jrebel.gradle.model.RebelWebResource;
+
+/**
+ * Synthetic models of a given size for the benchmarks. Sizes are the total number of resources; every resource gets
+ * the given number of include and exclude patterns.
+ */
+public class SyntheticModels {
+
+  /**
+   * A model shaped like an aggregated multi-module build: mostly classpath dirs, some jars, jarsets and web links.
+   */
+  public static RebelMainModel mainModel(String root, int resources, int patterns) {
+    RebelMainModel model = new RebelMainModel();
+    for (int i = 0; i < resources; i++) {
+      String module = root + "/module-" + (i / 4);
+      switch (i % 8) {
+        case 5:
+          RebelClasspathResource jar = classpathResource(patterns);
+          jar.setJar(module + "/lib/library-" + i + ".jar");
+          model.addClasspathJar(jar);
+          break;
+        case 6:
+          RebelClasspathResource jarset = classpathResource(patterns);
+          jarset.setJarset(module + "/lib");
+          model.addClasspathJarset(jarset);
+          break;
+        case 7:
+          RebelWebResource web = new RebelWebResource();
+          web.setTarget("/static-" + i + "/");
+          web.setDirectory(module + "/src/main/webapp");
+          web.setIncludes(patterns("**/*.jsp", patterns));
+          web.setExcludes(patterns("**/*.tmp", patterns));
+          model.addWebResource(web);
+          break;
+        default:
+          RebelClasspathResource dir = classpathResource(patterns);
+          dir.setDirectory(module + "/build/classes/main-" + i);
+          model.addClasspathDir(dir);
+      }
+    }
+    RebelWar war = new RebelWar();
+    war.setPath(root + "/build/exploded");
+    model.setWar(war);
+    return model;
+  }
+
+  /**
+   * Classpath configuration (as it comes from the DSL) with relative directories.
+   */
+  public static RebelClasspath classpath(int resources, int patterns) {
+    RebelClasspath classpath = new RebelClasspath();
+    for (int i = 0; i < resources; i++) {
+      RebelClasspathResource resource = classpathResource(patterns);
+      resource.setDirectory("build/module-" + (i / 4) + "/classes-" + i);
+      classpath.addResource(resource);
+    }
+    return classpath;
+  }
+
+  private static RebelClasspathResource classpathResource(int patterns) {
+    RebelClasspathResource resource = new RebelClasspathResource();
+    resource.setIncludes(patterns("**/*.class", patterns));
+    resource.setExcludes(patterns("**/internal/**", patterns));
+    return resource;
+  }
+
+  private static List<String> patterns(String pattern, int count) {
+    if (count == 0) {
+      return null;
+    }
+    List<String> result = new ArrayList<String>(count);
+    for (int i = 0; i < count; i++) {
+      result.add(i == 0 ? pattern : pattern + i);
+    }
+    return result;
+  }
+
+}
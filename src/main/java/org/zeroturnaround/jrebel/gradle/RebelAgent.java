@@ -0,0 +1,156 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.Project;
+import org.zeroturnaround.jrebel.gradle.dsl.RebelDslMain;
+
+/**
+ * Locating the JRebel agent for the JVMs the build launches.
+ */
+public class RebelAgent {
+
+  /**
+   * The project property overriding the 'agentPath' option
+   */
+  public static final String AGENT_PATH_PROPERTY = "rebel.agentPath";
+
+  /**
+   * The version in the output of 'java -version', e.g. 'java version "1.8.0_202"' or 'openjdk version "11.0.2"'
+   */
+  private static final Pattern VERSION_PATTERN = Pattern.compile("version \"([^\"]+)\"");
+
+  /**
+   * The agent: the given one, else the rebel.agentPath project property, else the 'agentPath' option. Fails the
+   * build if none is configured or it doesn't exist.
+   */
+  public static File resolve(Project project, File agentPath) {
+    File agent = agentPath != null ? agentPath : findConfigured(project);
+    if (agent == null) {
+      throw new GradleException("No JRebel agent configured: set 'agentPath' in the rebel { } block or -P"
+          + AGENT_PATH_PROPERTY + "=<path to libjrebel64.so, jrebel64.dll, ... or jrebel.jar>");
+    }
+    if (!agent.isFile()) {
+      throw new GradleException("JRebel agent \"" + agent + "\" not found");
+    }
+    return agent;
+  }
+
+  /**
+   * The agent configured for the project (the project property wins), null if there is none
+   */
+  public static File findConfigured(Project project) {
+    Object fromProjectProperties = project.getProperties().get(AGENT_PATH_PROPERTY);
+    if (fromProjectProperties != null) {
+      return project.file(fromProjectProperties);
+    }
+    Object rebelExtension = project.getExtensions().findByName(RebelPlugin.REBEL_EXTENSION_NAME);
+    if (rebelExtension instanceof RebelDslMain && ((RebelDslMain) rebelExtension).getAgentPath() != null) {
+      return project.file(((RebelDslMain) rebelExtension).getAgentPath());
+    }
+    return null;
+  }
+
+  /**
+   * -javaagent for jrebel.jar, -agentpath for the native agent
+   */
+  public static String toJvmArg(File agent) {
+    if (agent.getName().toLowerCase().endsWith(".jar")) {
+      return "-javaagent:" + agent.getAbsolutePath();
+    }
+    return "-agentpath:" + agent.getAbsolutePath();
+  }
+
+  /**
+   * True if the JVM running the build has a JRebel agent
+   */
+  public static boolean isLoadedInCurrentJvm() {
+    for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+      String lowerCaseArgument = argument.toLowerCase();
+      if ((lowerCaseArgument.startsWith("-agentpath:") || lowerCaseArgument.startsWith("-javaagent:"))
+          && lowerCaseArgument.contains("jrebel"))
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * True if the JVM running the build reads 'java @argfile' (Java 9+)
+   */
+  public static boolean supportsArgFiles() {
+    String specificationVersion = System.getProperty("java.specification.version");
+    return specificationVersion != null && !specificationVersion.startsWith("1.");
+  }
+
+  /**
+   * True if the given java executable reads 'java @argfile'. Unless it is the java of the JVM running the build,
+   * its 'java -version' is checked; false if that fails.
+   */
+  public static boolean supportsArgFiles(String executable) {
+    if (executable == null || isCurrentJava(executable)) {
+      return supportsArgFiles();
+    }
+
+    String output;
+    try {
+      Process process = new ProcessBuilder(executable, "-version").redirectErrorStream(true).start();
+      process.getOutputStream().close();
+      output = readFully(process.getInputStream());
+      process.waitFor();
+    }
+    catch (IOException e) {
+      return false;
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+    Matcher matcher = VERSION_PATTERN.matcher(output);
+    return matcher.find() && !matcher.group(1).startsWith("1.");
+  }
+
+  private static boolean isCurrentJava(String executable) {
+    File javaBin = new File(System.getProperty("java.home"), "bin");
+    File executableFile = new File(executable);
+    return executableFile.equals(new File(javaBin, "java")) || executableFile.equals(new File(javaBin, "java.exe"));
+  }
+
+  private static String readFully(InputStream in) throws IOException {
+    try {
+      StringBuilder contents = new StringBuilder();
+      byte[] buffer = new byte[1024];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        contents.append(new String(buffer, 0, read));
+      }
+      return contents.toString();
+    }
+    finally {
+      in.close();
+    }
+  }
+
+}
@@ -0,0 +1,138 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.Task;
+import org.gradle.api.specs.Spec;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.tooling.BuildException;
+import org.zeroturnaround.jrebel.gradle.model.RebelMainModel;
+import org.zeroturnaround.jrebel.gradle.util.LoggerWrapper;
+
+/**
+ * Lists the class files added, changed or deleted in the &lt;dir&gt; directories of rebel.xml since its previous run,
+ * so that reload tooling can act on just those classes. It runs after every compilation. The list is the task's own
+ * output (build/rebel/rebel-changed-classes.txt by default): written next to rebel.xml, it would be in the compiler's
+ * output directory and make the compilation out of date.
+ *
+ * The list has the format of the delta manifest's changes (see {@link RebelDeltaManifest#writeChanges(List, File)}).
+ * The class file hashes are kept in the task's temporary directory; without them (on the first run) every class
+ * file is listed as added.
+ */
+public class RebelChangedClassesTask extends DefaultTask {
+
+  public static final String CHANGED_CLASSES_FILE_NAME = "rebel-changed-classes.txt";
+
+  /**
+   * The class file hashes of the previous run, kept in the task's temporary directory
+   */
+  public static final String SNAPSHOT_FILE_NAME = "class-snapshot.txt";
+
+  private LoggerWrapper log = new LoggerWrapper(getLogger());
+
+  private RebelGenerateTask generateRebelTask;
+
+  private Object changedClassesFile;
+
+  private List<RebelDeltaManifest.Change> changes;
+
+  public RebelChangedClassesTask() {
+    // the class snapshot tells what changed, the list is written on every run
+    getOutputs().upToDateWhen(new Spec<Task>() {
+      public boolean isSatisfiedBy(Task task) {
+        return false;
+      }
+    });
+  }
+
+  public RebelGenerateTask getGenerateRebelTask() {
+    return generateRebelTask;
+  }
+
+  /**
+   * The task whose model gives the directories. Nothing is generated.
+   */
+  public void setGenerateRebelTask(RebelGenerateTask generateRebelTask) {
+    this.generateRebelTask = generateRebelTask;
+  }
+
+  /**
+   * The changes found by the last run (for unit tests)
+   */
+  public List<RebelDeltaManifest.Change> getChanges() {
+    return changes;
+  }
+
+  @OutputFile
+  public File getChangedClassesFile() {
+    return changedClassesFile != null ? getProject().file(changedClassesFile) : null;
+  }
+
+  /**
+   * Where the list goes, anything Project#file accepts
+   */
+  public void setChangedClassesFile(Object changedClassesFile) {
+    this.changedClassesFile = changedClassesFile;
+  }
+
+  @TaskAction
+  public void listChangedClasses() {
+    RebelMainModel model = generateRebelTask.resolveLocalModel();
+    File changedClassesFile = getChangedClassesFile();
+    if (model == null) {
+      log.info("No rebel.xml model, no changed classes list");
+      return;
+    }
+
+    File snapshotFile = new File(getTemporaryDir(), SNAPSHOT_FILE_NAME);
+    RebelDeltaManifest previous;
+    try {
+      previous = RebelDeltaManifest.read(snapshotFile);
+    }
+    catch (IOException e) {
+      // every class counts as added
+      log.info("Ignoring the class snapshot of the previous run in \"{}\": {}", snapshotFile, e.getMessage());
+      previous = new RebelDeltaManifest();
+    }
+
+    long start = System.nanoTime();
+    RebelDeltaManifestBuilder builder = new RebelDeltaManifestBuilder();
+    RebelDeltaManifest snapshot = builder.buildClasses(model, previous);
+    changes = snapshot.changesSince(previous);
+
+    try {
+      snapshot.write(snapshotFile);
+      changedClassesFile.getParentFile().mkdirs();
+      // an up-to-date compilation doesn't touch an empty list, so it doesn't look like an output change
+      if (!changes.isEmpty() || !changedClassesFile.exists() || changedClassesFile.length() != 0) {
+        RebelDeltaManifest.writeChanges(changes, changedClassesFile);
+      }
+    }
+    catch (IOException e) {
+      throw new BuildException("Failed writing \"" + changedClassesFile + "\"", e);
+    }
+
+    log.info("{} of {} class files changed ({} hashed in {} ms), listed in \"{}\"", changes.size(), snapshot.size(),
+        builder.getHashed(), (System.nanoTime() - start) / 1000000, changedClassesFile);
+  }
+
+}
@@ -0,0 +1,178 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.zeroturnaround.jrebel.gradle.util.FileSystemOperations;
+import org.zeroturnaround.jrebel.gradle.util.FileUtil;
+
+/**
+ * Publishes the compiler's output from a staging directory into the directory JRebel monitors, in one batch.
+ *
+ * Only the files whose size or timestamp differ from the published ones are published. Everything is prepared
+ * first: each file is copied, with its timestamp, next to its target under a temporary name. Then the temporary files
+ * are renamed over their targets and the files no longer staged are deleted, one after another without any compiling
+ * or copying in between. Last, the marker file is replaced by an atomic rename, telling watchers that the directory
+ * is consistent again.
+ *
+ * The files are copied rather than hard-linked: a compiler writing into a staged file in place would otherwise
+ * change the published one behind JRebel's back. Files in the target directory that weren't published from here
+ * (e.g. rebel.xml, other compilers' output) are left alone.
+ */
+public class RebelClassPublisher {
+
+  /**
+   * Replaced in the target directory after every published batch
+   */
+  public static final String MARKER_FILE_NAME = ".rebel-published";
+
+  private static final String TEMPORARY_SUFFIX = ".rebel-tmp";
+
+  private final File stagingDir;
+
+  private final File targetDir;
+
+  private final Set<String> previouslyPublished;
+
+  private final Set<String> published = new TreeSet<String>();
+
+  private int updated;
+
+  private int deleted;
+
+  private int unchanged;
+
+  /**
+   * @param previouslyPublished the paths (relative, '/'-separated) published into the target by the previous run
+   */
+  public RebelClassPublisher(File stagingDir, File targetDir, Set<String> previouslyPublished) {
+    this.stagingDir = stagingDir;
+    this.targetDir = targetDir;
+    this.previouslyPublished = previouslyPublished;
+  }
+
+  public void publish() throws IOException {
+    List<String> staged = new ArrayList<String>();
+    if (stagingDir.isDirectory()) {
+      list(stagingDir, "", staged, new HashSet<String>());
+    }
+
+    // prepare the batch, nothing in the target directory changes yet
+    List<File[]> renames = new ArrayList<File[]>();
+    try {
+      for (String relativePath : staged) {
+        published.add(relativePath);
+        File source = new File(stagingDir, relativePath);
+        File target = new File(targetDir, relativePath);
+        if (isPublished(source, target)) {
+          unchanged++;
+          continue;
+        }
+        File temporary = new File(target.getParentFile(), "." + target.getName() + TEMPORARY_SUFFIX);
+        target.getParentFile().mkdirs();
+        temporary.delete();
+        FileUtil.copyFile(source, temporary);
+        renames.add(new File[] { temporary, target });
+      }
+    }
+    catch (IOException e) {
+      for (File[] rename : renames) {
+        rename[0].delete();
+      }
+      throw e;
+    }
+
+    // publish it
+    for (File[] rename : renames) {
+      FileSystemOperations.get().move(rename[0], rename[1]);
+      updated++;
+    }
+    for (String relativePath : previouslyPublished) {
+      if (!published.contains(relativePath) && new File(targetDir, relativePath).delete()) {
+        deleted++;
+      }
+    }
+
+    if (updated + deleted > 0 || !new File(targetDir, MARKER_FILE_NAME).exists()) {
+      writeMarker();
+    }
+  }
+
+  /**
+   * The paths published into the target directory, for the next run
+   */
+  public Set<String> getPublished() {
+    return Collections.unmodifiableSet(published);
+  }
+
+  public int getUpdated() {
+    return updated;
+  }
+
+  public int getDeleted() {
+    return deleted;
+  }
+
+  public int getUnchanged() {
+    return unchanged;
+  }
+
+  private void writeMarker() throws IOException {
+    targetDir.mkdirs();
+    File marker = new File(targetDir, MARKER_FILE_NAME);
+    File temporary = new File(targetDir, MARKER_FILE_NAME + TEMPORARY_SUFFIX);
+    FileUtil.writeToFile(temporary, System.currentTimeMillis() + " " + updated + " " + deleted + "\n");
+    FileSystemOperations.get().move(temporary, marker);
+  }
+
+  /**
+   * Symlinked directories are followed, each (by its canonical path) only once
+   */
+  private static void list(File dir, String relativeDir, List<String> files, Set<String> visitedDirs) {
+    if (!FileUtil.markVisited(visitedDirs, dir)) {
+      return;
+    }
+    File[] children = dir.listFiles();
+    if (children == null) {
+      return;
+    }
+    for (File child : children) {
+      String relativePath = relativeDir + child.getName();
+      if (child.isDirectory()) {
+        list(child, relativePath + "/", files, visitedDirs);
+      }
+      else {
+        files.add(relativePath);
+      }
+    }
+  }
+
+  /**
+   * The published copies keep the timestamps of the staged files, a recompiled file has a new one
+   */
+  private static boolean isPublished(File source, File target) {
+    return target.isFile() && target.length() == source.length() && target.lastModified() == source.lastModified();
+  }
+
+}
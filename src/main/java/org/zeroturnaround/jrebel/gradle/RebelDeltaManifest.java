@@ -0,0 +1,268 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.zeroturnaround.jrebel.gradle.util.FileUtil;
+
+/**
+ * The content hashes of the files under the roots of a rebel.xml, for syncing them to a remote server.
+ *
+ * One line per file, sorted: hash, size, timestamp, root directory and the path relative to it, separated by tabs.
+ * Comparing against the manifest of the previous run gives the files a sync has to upload or delete.
+ */
+public class RebelDeltaManifest {
+
+  public static final char ADDED = 'A';
+
+  public static final char MODIFIED = 'M';
+
+  public static final char DELETED = 'D';
+
+  private static final String ENCODING = "UTF-8";
+
+  private final Map<String, Entry> entries = new TreeMap<String, Entry>();
+
+  public void addEntry(Entry entry) {
+    entries.put(entry.getKey(), entry);
+  }
+
+  public Entry getEntry(String root, String relativePath) {
+    return entries.get(root + '\t' + relativePath);
+  }
+
+  public Collection<Entry> getEntries() {
+    return Collections.unmodifiableCollection(entries.values());
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * The files added, modified or deleted since the given manifest, in the order of the manifest
+   */
+  public List<Change> changesSince(RebelDeltaManifest previous) {
+    List<Change> changes = new ArrayList<Change>();
+    for (Entry entry : entries.values()) {
+      Entry previousEntry = previous.entries.get(entry.getKey());
+      if (previousEntry == null) {
+        changes.add(new Change(ADDED, entry.getRoot(), entry.getRelativePath()));
+      }
+      else if (!previousEntry.getHash().equals(entry.getHash())) {
+        changes.add(new Change(MODIFIED, entry.getRoot(), entry.getRelativePath()));
+      }
+    }
+    for (Entry previousEntry : previous.entries.values()) {
+      if (!entries.containsKey(previousEntry.getKey())) {
+        changes.add(new Change(DELETED, previousEntry.getRoot(), previousEntry.getRelativePath()));
+      }
+    }
+    return changes;
+  }
+
+  /**
+   * An empty manifest if the file doesn't exist
+   */
+  public static RebelDeltaManifest read(File file) throws IOException {
+    RebelDeltaManifest manifest = new RebelDeltaManifest();
+    if (!FileUtil.exists(file)) {
+      return manifest;
+    }
+    BufferedReader reader = null;
+    try {
+      reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), ENCODING));
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.length() == 0) {
+          continue;
+        }
+        String[] fields = line.split("\t", 5);
+        if (fields.length != 5) {
+          throw new IOException("Malformed line in \"" + file + "\": " + line);
+        }
+        try {
+          manifest.addEntry(new Entry(fields[3], fields[4], Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[0]));
+        }
+        catch (NumberFormatException e) {
+          throw new IOException("Malformed line in \"" + file + "\": " + line);
+        }
+      }
+    }
+    finally {
+      FileUtil.closeQuietly(reader);
+    }
+    return manifest;
+  }
+
+  public void write(File file) throws IOException {
+    Writer writer = openWriter(file);
+    try {
+      for (Entry entry : entries.values()) {
+        writer.write(entry.getHash() + '\t' + entry.getLength() + '\t' + entry.getLastModified() + '\t' + entry.getRoot()
+            + '\t' + entry.getRelativePath() + '\n');
+      }
+    }
+    finally {
+      FileUtil.closeQuietly(writer);
+    }
+  }
+
+  /**
+   * One line per change: the kind (A, M or D), the root directory and the relative path, separated by tabs
+   */
+  public static void writeChanges(List<Change> changes, File file) throws IOException {
+    Writer writer = openWriter(file);
+    try {
+      for (Change change : changes) {
+        writer.write(change.getKind() + "\t" + change.getRoot() + '\t' + change.getRelativePath() + '\n');
+      }
+    }
+    finally {
+      FileUtil.closeQuietly(writer);
+    }
+  }
+
+  /**
+   * Parses what {@link #writeChanges(List, File)} wrote
+   */
+  public static List<Change> readChanges(File file) throws IOException {
+    List<Change> changes = new ArrayList<Change>();
+    BufferedReader reader = null;
+    try {
+      reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), ENCODING));
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] fields = line.split("\t", 3);
+        if (fields.length != 3 || fields[0].length() != 1) {
+          throw new IOException("Malformed line in \"" + file + "\": " + line);
+        }
+        changes.add(new Change(fields[0].charAt(0), fields[1], fields[2]));
+      }
+    }
+    finally {
+      FileUtil.closeQuietly(reader);
+    }
+    return changes;
+  }
+
+  private static Writer openWriter(File file) throws IOException {
+    file.getParentFile().mkdirs();
+    return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), ENCODING));
+  }
+
+  /**
+   * A file and its hash. Size and timestamp tell whether it has to be hashed again.
+   */
+  public static class Entry {
+
+    private final String root;
+
+    private final String relativePath;
+
+    private final long length;
+
+    private final long lastModified;
+
+    private final String hash;
+
+    public Entry(String root, String relativePath, long length, long lastModified, String hash) {
+      this.root = root;
+      this.relativePath = relativePath;
+      this.length = length;
+      this.lastModified = lastModified;
+      this.hash = hash;
+    }
+
+    String getKey() {
+      return root + '\t' + relativePath;
+    }
+
+    public String getRoot() {
+      return root;
+    }
+
+    public String getRelativePath() {
+      return relativePath;
+    }
+
+    public long getLength() {
+      return length;
+    }
+
+    public long getLastModified() {
+      return lastModified;
+    }
+
+    public String getHash() {
+      return hash;
+    }
+  }
+
+  /**
+   * A file to upload (added, modified) or to delete on the remote side
+   */
+  public static class Change {
+
+    private final char kind;
+
+    private final String root;
+
+    private final String relativePath;
+
+    public Change(char kind, String root, String relativePath) {
+      this.kind = kind;
+      this.root = root;
+      this.relativePath = relativePath;
+    }
+
+    public char getKind() {
+      return kind;
+    }
+
+    public String getRoot() {
+      return root;
+    }
+
+    public String getRelativePath() {
+      return relativePath;
+    }
+
+    public File getFile() {
+      return new File(root, relativePath);
+    }
+
+    public String toString() {
+      return kind + " " + getFile();
+    }
+  }
+
+}
@@ -0,0 +1,313 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.gradle.api.GradleException;
+import org.zeroturnaround.jrebel.gradle.model.RebelClasspathResource;
+import org.zeroturnaround.jrebel.gradle.model.RebelMainModel;
+import org.zeroturnaround.jrebel.gradle.model.RebelResource;
+import org.zeroturnaround.jrebel.gradle.model.RebelWebResource;
+import org.zeroturnaround.jrebel.gradle.util.FileUtil;
+import org.zeroturnaround.jrebel.gradle.util.PatternUtil;
+
+/**
+ * Builds the {@link RebelDeltaManifest} of a model: the &lt;dir&gt; and &lt;link&gt; directories are walked with their
+ * include/exclude patterns applied and the files are hashed (SHA-1) in parallel, in batches. A file with the same
+ * size and timestamp as in the previous manifest keeps its hash without being read again. Large files are read
+ * through their channel in big chunks. They aren't memory-mapped: a mapping is only released when it is garbage
+ * collected, and until then it keeps the file locked on Windows.
+ */
+public class RebelDeltaManifestBuilder {
+
+  private static final int BATCH_SIZE = 64;
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * Files of at least this size are read in chunks of LARGE_BUFFER_SIZE for hashing
+   */
+  static final long LARGE_FILE_THRESHOLD = 1024 * 1024;
+
+  private static final int LARGE_BUFFER_SIZE = 1024 * 1024;
+
+  private final int threads;
+
+  private int hashed;
+
+  public RebelDeltaManifestBuilder() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  public RebelDeltaManifestBuilder(int threads) {
+    this.threads = Math.max(1, threads);
+  }
+
+  /**
+   * The number of files read and hashed by the last build (the others were unchanged)
+   */
+  public int getHashed() {
+    return hashed;
+  }
+
+  public RebelDeltaManifest build(RebelMainModel model, RebelDeltaManifest previous) {
+    List<Root> roots = new ArrayList<Root>();
+    for (RebelClasspathResource resource : model.getClasspathDirs()) {
+      roots.add(new Root(resource.getDirectory(), resource, false));
+    }
+    for (RebelWebResource resource : model.getWebResources()) {
+      roots.add(new Root(resource.getDirectory(), resource, false));
+    }
+    return build(roots, previous);
+  }
+
+  /**
+   * Only the class files of the &lt;dir&gt; directories
+   */
+  public RebelDeltaManifest buildClasses(RebelMainModel model, RebelDeltaManifest previous) {
+    List<Root> roots = new ArrayList<Root>();
+    for (RebelClasspathResource resource : model.getClasspathDirs()) {
+      roots.add(new Root(resource.getDirectory(), resource, true));
+    }
+    return build(roots, previous);
+  }
+
+  private RebelDeltaManifest build(List<Root> roots, RebelDeltaManifest previous) {
+    RebelDeltaManifest manifest = new RebelDeltaManifest();
+    List<Callable<List<RebelDeltaManifest.Entry>>> batches = new ArrayList<Callable<List<RebelDeltaManifest.Entry>>>();
+    List<FileToHash> batch = new ArrayList<FileToHash>();
+    hashed = 0;
+
+    for (Root root : roots) {
+      for (FileToHash file : root.listFiles()) {
+        RebelDeltaManifest.Entry previousEntry = previous.getEntry(file.root, file.relativePath);
+        if (previousEntry != null && previousEntry.getLength() == file.length && previousEntry.getLastModified() == file.lastModified) {
+          manifest.addEntry(previousEntry);
+          continue;
+        }
+        batch.add(file);
+        if (batch.size() == BATCH_SIZE) {
+          batches.add(new HashBatch(batch));
+          batch = new ArrayList<FileToHash>();
+        }
+      }
+    }
+    if (!batch.isEmpty()) {
+      batches.add(new HashBatch(batch));
+    }
+    if (batches.isEmpty()) {
+      return manifest;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, batches.size()));
+    try {
+      for (Future<List<RebelDeltaManifest.Entry>> result : executor.invokeAll(batches)) {
+        for (RebelDeltaManifest.Entry entry : result.get()) {
+          manifest.addEntry(entry);
+          hashed++;
+        }
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new GradleException("Interrupted while hashing files", e);
+    }
+    catch (ExecutionException e) {
+      throw new GradleException("Failed hashing files", e.getCause());
+    }
+    finally {
+      executor.shutdownNow();
+    }
+    return manifest;
+  }
+
+  /**
+   * The lowercase hex SHA-1 of the file's contents
+   */
+  static String hash(File file) throws IOException {
+    if (file.length() >= LARGE_FILE_THRESHOLD) {
+      return hashLarge(file);
+    }
+    MessageDigest digest = newDigest();
+    InputStream in = null;
+    try {
+      in = new FileInputStream(file);
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        digest.update(buffer, 0, read);
+      }
+    }
+    finally {
+      FileUtil.closeQuietly(in);
+    }
+    return toHex(digest.digest());
+  }
+
+  /**
+   * Hashes the file read through its channel
+   */
+  static String hashLarge(File file) throws IOException {
+    MessageDigest digest = newDigest();
+    FileInputStream in = null;
+    try {
+      in = new FileInputStream(file);
+      FileChannel channel = in.getChannel();
+      ByteBuffer buffer = ByteBuffer.allocate(LARGE_BUFFER_SIZE);
+      while (channel.read(buffer) != -1) {
+        buffer.flip();
+        digest.update(buffer);
+        buffer.clear();
+      }
+    }
+    finally {
+      FileUtil.closeQuietly(in);
+    }
+    return toHex(digest.digest());
+  }
+
+  static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-1");
+    }
+    catch (NoSuchAlgorithmException e) {
+      // every JRE has SHA-1
+      throw new IllegalStateException(e);
+    }
+  }
+
+  static String toHex(byte[] bytes) {
+    char[] digits = "0123456789abcdef".toCharArray();
+    char[] hex = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      hex[i * 2] = digits[(bytes[i] >> 4) & 0xf];
+      hex[i * 2 + 1] = digits[bytes[i] & 0xf];
+    }
+    return new String(hex);
+  }
+
+  /**
+   * A directory of the model with the patterns of its element
+   */
+  private static class Root {
+
+    private final String path;
+
+    private final RebelResource resource;
+
+    private final boolean classesOnly;
+
+    Root(String path, RebelResource resource, boolean classesOnly) {
+      this.path = path;
+      this.resource = resource;
+      this.classesOnly = classesOnly;
+    }
+
+    /**
+     * Symlinked directories are followed, each (by its canonical path) only once
+     */
+    List<FileToHash> listFiles() {
+      List<FileToHash> files = new ArrayList<FileToHash>();
+      File dir = path == null ? null : new File(path);
+      if (dir != null && dir.isDirectory()) {
+        walk(dir, "", files, new HashSet<String>());
+      }
+      return files;
+    }
+
+    private void walk(File dir, String relativeDir, List<FileToHash> files, Set<String> visitedDirs) {
+      if (!FileUtil.markVisited(visitedDirs, dir)) {
+        return;
+      }
+      File[] children = dir.listFiles();
+      if (children == null) {
+        return;
+      }
+      for (File child : children) {
+        String relativePath = relativeDir + child.getName();
+        if (child.isDirectory()) {
+          walk(child, relativePath + "/", files, visitedDirs);
+        }
+        else if ((!classesOnly || relativePath.endsWith(".class"))
+            && PatternUtil.isIncluded(relativePath, resource.getIncludes(), resource.getExcludes())) {
+          files.add(new FileToHash(path, relativePath, child));
+        }
+      }
+    }
+  }
+
+  private static class FileToHash {
+
+    private final String root;
+
+    private final String relativePath;
+
+    private final File file;
+
+    private final long length;
+
+    private final long lastModified;
+
+    FileToHash(String root, String relativePath, File file) {
+      this.root = root;
+      this.relativePath = relativePath;
+      this.file = file;
+      this.length = file.length();
+      this.lastModified = file.lastModified();
+    }
+  }
+
+  private static class HashBatch implements Callable<List<RebelDeltaManifest.Entry>> {
+
+    private final List<FileToHash> files;
+
+    HashBatch(List<FileToHash> files) {
+      this.files = files;
+    }
+
+    public List<RebelDeltaManifest.Entry> call() throws IOException {
+      List<RebelDeltaManifest.Entry> entries = new ArrayList<RebelDeltaManifest.Entry>(files.size());
+      for (FileToHash file : files) {
+        try {
+          entries.add(new RebelDeltaManifest.Entry(file.root, file.relativePath, file.length, file.lastModified, hash(file.file)));
+        }
+        catch (FileNotFoundException e) {
+          // deleted since the directory was listed, it doesn't go into the manifest
+        }
+      }
+      return entries;
+    }
+  }
+
+}
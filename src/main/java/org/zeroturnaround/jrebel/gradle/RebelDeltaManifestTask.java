@@ -0,0 +1,141 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.tooling.BuildException;
+import org.zeroturnaround.jrebel.gradle.model.RebelMainModel;
+import org.zeroturnaround.jrebel.gradle.util.LoggerWrapper;
+
+/**
+ * Writes the {@link RebelDeltaManifest} of the directories in rebel.xml and the files changed since the previous
+ * run, so that a sync tool (e.g. for JRebel remoting) uploads only those instead of whole directories.
+ *
+ * The output directory holds the current manifest, the manifest of the last synced state and the list of changes
+ * between the two. The sync tool deletes the list of changes once it has uploaded them: only then does the current
+ * manifest become the synced one. Until that, the changes of every run are relative to the same synced state, so
+ * nothing is lost when the tool skips a run. On the first run everything is a change.
+ *
+ * The directories are hashed where they are on this machine, 'rootPath' and 'relativePath' are not applied.
+ */
+public class RebelDeltaManifestTask extends DefaultTask {
+
+  public static final String MANIFEST_FILE_NAME = "manifest.txt";
+
+  /**
+   * The manifest the changes are relative to, i.e. of the state the sync tool has uploaded
+   */
+  public static final String SYNCED_MANIFEST_FILE_NAME = "manifest-synced.txt";
+
+  public static final String CHANGES_FILE_NAME = "changes.txt";
+
+  private LoggerWrapper log = new LoggerWrapper(getLogger());
+
+  private RebelGenerateTask generateRebelTask;
+
+  private Object outputDirectory;
+
+  private List<RebelDeltaManifest.Change> changes;
+
+  public RebelGenerateTask getGenerateRebelTask() {
+    return generateRebelTask;
+  }
+
+  /**
+   * The task whose model gives the directories
+   */
+  public void setGenerateRebelTask(RebelGenerateTask generateRebelTask) {
+    this.generateRebelTask = generateRebelTask;
+    dependsOn(generateRebelTask);
+  }
+
+  public File getOutputDirectory() {
+    return outputDirectory != null ? getProject().file(outputDirectory) : null;
+  }
+
+  /**
+   * Where the manifests and the changes go, anything Project#file accepts
+   */
+  public void setOutputDirectory(Object outputDirectory) {
+    this.outputDirectory = outputDirectory;
+  }
+
+  /**
+   * The changes found by the last run (for unit tests)
+   */
+  public List<RebelDeltaManifest.Change> getChanges() {
+    return changes;
+  }
+
+  @TaskAction
+  public void createManifest() {
+    RebelMainModel model = generateRebelTask.resolveLocalModel();
+    if (model == null) {
+      log.info("No rebel.xml model, no delta manifest");
+      return;
+    }
+
+    File outputDirectory = getOutputDirectory();
+    File manifestFile = new File(outputDirectory, MANIFEST_FILE_NAME);
+    File syncedManifestFile = new File(outputDirectory, SYNCED_MANIFEST_FILE_NAME);
+    File changesFile = new File(outputDirectory, CHANGES_FILE_NAME);
+    try {
+      // the changes were consumed, what the previous run found is synced now
+      if (manifestFile.exists() && !changesFile.exists()) {
+        syncedManifestFile.delete();
+        if (!manifestFile.renameTo(syncedManifestFile)) {
+          throw new IOException("Failed renaming \"" + manifestFile + "\" to \"" + syncedManifestFile + "\"");
+        }
+      }
+      RebelDeltaManifest synced = readManifest(syncedManifestFile);
+      // the hashes of the latest run, so that only the files changed since then are read
+      RebelDeltaManifest previous = manifestFile.exists() ? readManifest(manifestFile) : synced;
+
+      long start = System.nanoTime();
+      RebelDeltaManifestBuilder builder = new RebelDeltaManifestBuilder();
+      RebelDeltaManifest manifest = builder.build(model, previous);
+      changes = manifest.changesSince(synced);
+
+      manifest.write(manifestFile);
+      RebelDeltaManifest.writeChanges(changes, changesFile);
+
+      log.info("Delta manifest of {} files in {} ms ({} hashed): {} changed", manifest.size(),
+          (System.nanoTime() - start) / 1000000, builder.getHashed(), changes.size());
+    }
+    catch (IOException e) {
+      throw new BuildException("Failed writing the delta manifest into \"" + outputDirectory + "\"", e);
+    }
+  }
+
+  /**
+   * The manifest in the file, empty if there is none (or it can't be read): everything counts as changed then
+   */
+  private RebelDeltaManifest readManifest(File manifestFile) {
+    try {
+      return RebelDeltaManifest.read(manifestFile);
+    }
+    catch (IOException e) {
+      log.info("Ignoring the manifest in \"{}\": {}", manifestFile, e.getMessage());
+      return new RebelDeltaManifest();
+    }
+  }
+
+}
@@ -0,0 +1,346 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import org.gradle.api.Action;
+import org.gradle.api.Project;
+import org.gradle.api.file.FileCopyDetails;
+import org.gradle.api.file.FileTree;
+import org.gradle.api.tasks.Copy;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.bundling.War;
+import org.gradle.tooling.BuildException;
+import org.zeroturnaround.jrebel.gradle.util.CopySpecUtil;
+import org.zeroturnaround.jrebel.gradle.util.FileSystemOperations;
+import org.zeroturnaround.jrebel.gradle.util.FileUtil;
+import org.zeroturnaround.jrebel.gradle.util.LoggerWrapper;
+
+/**
+ * Stages the contents of the war task into a directory (an exploded war) for the &lt;war dir&gt; element, without
+ * building the archive.
+ *
+ * The war's copy specs are walked as usual, but instead of Copy writing the files, each one is staged here. A file
+ * that a spec without copy actions puts into the war as it is gets hard-linked to its source if the source is a build
+ * output, and copied with FileChannel#transferTo otherwise (sources and cached dependencies are never linked, writing
+ * into the exploded war must not change them). Such files are left alone if their source has the same size and
+ * timestamp as on the previous run. Files that are filtered, expanded or renamed are copied through Gradle on every
+ * run, as their contents depend on more than the source, and replaced only if they come out different. Files no
+ * longer in the war are removed, so a run after a one-file change only touches that file.
+ */
+public class RebelExplodeWarTask extends Copy {
+
+  /**
+   * Source sizes and timestamps of the staged files, kept in the task's temporary directory
+   */
+  public static final String STAGED_FILES_INDEX_NAME = "staged-files.properties";
+
+  /**
+   * The index entry of a file copied through Gradle, which is produced on every run
+   */
+  private static final String TRANSFORMED = "transformed";
+
+  private LoggerWrapper log = new LoggerWrapper(getLogger());
+
+  private War war;
+
+  private Properties previousIndex;
+
+  private Properties index;
+
+  private Set<String> staged;
+
+  private List<PlainSource> plainSources;
+
+  private List<String> buildDirectories;
+
+  private int linked;
+
+  private int copied;
+
+  private int unchanged;
+
+  private int removed;
+
+  public RebelExplodeWarTask() {
+    eachFile(new Action<FileCopyDetails>() {
+      public void execute(FileCopyDetails details) {
+        stage(details);
+        // Copy itself doesn't write anything
+        details.exclude();
+      }
+    });
+  }
+
+  /*
+   * The counts of the last run
+   */
+
+  public int getLinked() {
+    return linked;
+  }
+
+  public int getCopied() {
+    return copied;
+  }
+
+  public int getUnchanged() {
+    return unchanged;
+  }
+
+  public int getRemoved() {
+    return removed;
+  }
+
+  public War getWar() {
+    return war;
+  }
+
+  /**
+   * The war task whose contents are staged
+   */
+  public void setWar(War war) {
+    this.war = war;
+    with(war);
+  }
+
+  @Override
+  @TaskAction
+  protected void copy() {
+    File indexFile = new File(getTemporaryDir(), STAGED_FILES_INDEX_NAME);
+    previousIndex = loadIndex(indexFile);
+    index = new Properties();
+    staged = new HashSet<String>();
+    plainSources = getPlainSources();
+    buildDirectories = new ArrayList<String>();
+    for (Project project : getProject().getRootProject().getAllprojects()) {
+      buildDirectories.add(project.getBuildDir().getAbsolutePath() + File.separator);
+    }
+    linked = 0;
+    copied = 0;
+    unchanged = 0;
+    removed = 0;
+
+    super.copy();
+
+    for (Object key : previousIndex.keySet()) {
+      String relativePath = (String) key;
+      if (!staged.contains(relativePath) && new File(getDestinationDir(), relativePath).delete()) {
+        removed++;
+      }
+    }
+    saveIndex(indexFile, index);
+    setDidWork(linked + copied + removed > 0);
+
+    log.info("Staged the war into \"{}\": {} linked, {} copied, {} unchanged, {} removed", getDestinationDir(), linked,
+        copied, unchanged, removed);
+  }
+
+  private void stage(FileCopyDetails details) {
+    String relativePath = details.getRelativePath().getPathString();
+    File source = details.getFile();
+    File target = details.getRelativePath().getFile(getDestinationDir());
+
+    staged.add(relativePath);
+    if (!isPlain(source, relativePath)) {
+      index.setProperty(relativePath, TRANSFORMED);
+      stageTransformed(details, target);
+      return;
+    }
+
+    String stamp = source.length() + ":" + source.lastModified();
+    index.setProperty(relativePath, stamp);
+    if (stamp.equals(previousIndex.getProperty(relativePath)) && target.exists()) {
+      unchanged++;
+      return;
+    }
+
+    // never write into the file, it may be a link from a previous run
+    target.delete();
+    target.getParentFile().mkdirs();
+    try {
+      if (!isBuildOutput(source)) {
+        FileUtil.copyFile(source, target);
+        copied++;
+        return;
+      }
+      boolean link;
+      try {
+        link = FileSystemOperations.get().createLink(target, source);
+      }
+      catch (IOException e) {
+        // another file system
+        link = false;
+      }
+      if (link) {
+        linked++;
+      }
+      else {
+        FileUtil.copyFile(source, target);
+        copied++;
+      }
+    }
+    catch (IOException e) {
+      throw new BuildException("Failed staging \"" + source + "\" into \"" + target + "\"", e);
+    }
+  }
+
+  /**
+   * Copied through Gradle next to the target, which is replaced only if the contents differ
+   */
+  private void stageTransformed(FileCopyDetails details, File target) {
+    File temporary = new File(target.getParentFile(), "." + target.getName() + ".rebel-tmp");
+    target.getParentFile().mkdirs();
+    temporary.delete();
+    details.copyTo(temporary);
+    try {
+      if (target.isFile() && FileUtil.contentEquals(target, temporary)) {
+        temporary.delete();
+        unchanged++;
+        return;
+      }
+      FileSystemOperations.get().move(temporary, target);
+      copied++;
+    }
+    catch (IOException e) {
+      temporary.delete();
+      throw new BuildException("Failed staging \"" + details.getPath() + "\" into \"" + target + "\"", e);
+    }
+  }
+
+  /**
+   * True if the file is put into the war by a spec without copy actions, under the path it has in its source
+   */
+  private boolean isPlain(File source, String relativePath) {
+    String sourcePath = source.getAbsolutePath();
+    for (PlainSource plainSource : plainSources) {
+      String expected;
+      if (plainSource.directory) {
+        if (!sourcePath.startsWith(plainSource.path)) {
+          continue;
+        }
+        expected = sourcePath.substring(plainSource.path.length()).replace(File.separatorChar, '/');
+      }
+      else if (sourcePath.equals(plainSource.path)) {
+        expected = source.getName();
+      }
+      else {
+        continue;
+      }
+      if (plainSource.destinationPath.length() != 0) {
+        expected = plainSource.destinationPath + "/" + expected;
+      }
+      if (expected.equals(relativePath)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private List<PlainSource> getPlainSources() {
+    List<PlainSource> sources = new ArrayList<PlainSource>();
+    if (war == null) {
+      return sources;
+    }
+    for (CopySpecUtil.SourceMapping mapping : CopySpecUtil.getSourceMappings(war)) {
+      if (mapping.getSourcePath() instanceof FileTree) {
+        // contents of archives, resources of a source set: nothing to tell by the file's path
+        continue;
+      }
+      for (File file : getProject().files(mapping.getSourcePath()).getFiles()) {
+        sources.add(new PlainSource(file, mapping.getDestinationPath()));
+      }
+    }
+    return sources;
+  }
+
+  private boolean isBuildOutput(File source) {
+    String sourcePath = source.getAbsolutePath();
+    for (String buildDirectory : buildDirectories) {
+      if (sourcePath.startsWith(buildDirectory)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * A file or directory some spec without copy actions puts into the war under 'destinationPath'
+   */
+  private static class PlainSource {
+
+    private final String path;
+
+    private final boolean directory;
+
+    private final String destinationPath;
+
+    PlainSource(File file, String destinationPath) {
+      this.directory = file.isDirectory();
+      this.path = directory ? file.getAbsolutePath() + File.separator : file.getAbsolutePath();
+      this.destinationPath = destinationPath;
+    }
+  }
+
+  private Properties loadIndex(File indexFile) {
+    Properties properties = new Properties();
+    if (!FileUtil.exists(indexFile)) {
+      return properties;
+    }
+    InputStream in = null;
+    try {
+      in = new BufferedInputStream(new FileInputStream(indexFile));
+      properties.load(in);
+    }
+    catch (IOException e) {
+      // everything gets staged again
+      log.info("Ignoring the index of the previous run in \"{}\": {}", indexFile, e.toString());
+      properties.clear();
+    }
+    finally {
+      FileUtil.closeQuietly(in);
+    }
+    return properties;
+  }
+
+  private void saveIndex(File indexFile, Properties properties) {
+    OutputStream out = null;
+    try {
+      out = new BufferedOutputStream(new FileOutputStream(indexFile));
+      properties.store(out, null);
+    }
+    catch (IOException e) {
+      throw new BuildException("Failed writing \"" + indexFile + "\"", e);
+    }
+    finally {
+      FileUtil.closeQuietly(out);
+    }
+  }
+
+}
@@ -0,0 +1,128 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.zeroturnaround.jrebel.gradle.model.RebelMainModel;
+import org.zeroturnaround.jrebel.gradle.util.FileUtil;
+
+/**
+ * Parsed rebel.xml fragments keyed by the SHA-1 of their content, so unchanged fragments are not parsed again on every
+ * build. One instance lives as long as the plugin's class loader (i.e. the Gradle daemon); the least recently used
+ * fragments are dropped when it's full.
+ *
+ * The returned models are shared and must not be modified (RebelModelMerger only copies from them).
+ */
+public class RebelFragmentCache {
+
+  private static final RebelFragmentCache SHARED = new RebelFragmentCache(256);
+
+  private final Map<String, RebelMainModel> fragments;
+
+  private final RebelXmlReader reader = new RebelXmlReader();
+
+  private long hits;
+
+  private long misses;
+
+  public RebelFragmentCache(final int maxFragments) {
+    fragments = new LinkedHashMap<String, RebelMainModel>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, RebelMainModel> eldest) {
+        return size() > maxFragments;
+      }
+    };
+  }
+
+  public static RebelFragmentCache getShared() {
+    return SHARED;
+  }
+
+  public RebelMainModel load(File fragment) throws IOException {
+    byte[] content = readFully(fragment);
+    String key = sha1(content);
+
+    synchronized (this) {
+      RebelMainModel model = fragments.get(key);
+      if (model != null) {
+        hits++;
+        return model;
+      }
+      misses++;
+    }
+
+    RebelMainModel model;
+    synchronized (reader) {
+      model = reader.read(new ByteArrayInputStream(content));
+    }
+    synchronized (this) {
+      fragments.put(key, model);
+    }
+    return model;
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  private static byte[] readFully(File file) throws IOException {
+    InputStream in = new FileInputStream(file);
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.max(0, Math.min(file.length(), Integer.MAX_VALUE)));
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+      return out.toByteArray();
+    }
+    finally {
+      FileUtil.closeQuietly(in);
+    }
+  }
+
+  private static String sha1(byte[] content) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-1").digest(content);
+      StringBuilder sb = new StringBuilder(digest.length * 2);
+      for (byte b : digest) {
+        sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+      }
+      return sb.toString();
+    }
+    catch (NoSuchAlgorithmException e) {
+      // every JRE has SHA-1
+      throw new IllegalStateException(e);
+    }
+  }
+
+}
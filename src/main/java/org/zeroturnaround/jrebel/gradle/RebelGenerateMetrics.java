@@ -0,0 +1,268 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.zeroturnaround.jrebel.gradle.util.CanonicalPathCache;
+import org.zeroturnaround.jrebel.gradle.util.FileOperationCounter;
+import org.zeroturnaround.jrebel.gradle.util.FileUtil;
+
+/**
+ * Wall time per phase and a few counters for a single generateRebel run, exported as JSON
+ * into build/reports/rebel/.
+ *
+ * The metrics of the currently running task are bound to the executing thread as its FileUtil counter, so that
+ * FileUtil counts its work without having a reference to the task. Worker threads may count into them as well.
+ */
+public class RebelGenerateMetrics implements FileOperationCounter {
+
+  public static final String PHASE_CONVENTION_PROPAGATION = "conventionPropagation";
+
+  public static final String PHASE_MODEL_BUILD = "modelBuild";
+
+  public static final String PHASE_FRAGMENT_MERGING = "fragmentMerging";
+
+  public static final String PHASE_PATH_FIXING = "pathFixing";
+
+  public static final String PHASE_RENDERING = "rendering";
+
+  public static final String PHASE_WRITING = "writing";
+
+  private final String projectPath;
+
+  /**
+   * Phase name -> accumulated wall time in nanoseconds, in the order the phases were first entered.
+   */
+  private final Map<String, Long> phaseNanos = new LinkedHashMap<String, Long>();
+
+  private final AtomicLong canonicalizations = new AtomicLong();
+
+  private final AtomicLong pathCacheHits = new AtomicLong();
+
+  private final AtomicLong statCalls = new AtomicLong();
+
+  private long bytesWritten;
+
+  private long resourcesProcessed;
+
+  private boolean skipped;
+
+  public RebelGenerateMetrics(String projectPath) {
+    this.projectPath = projectPath;
+  }
+
+  public static void setCurrent(RebelGenerateMetrics metrics) {
+    FileUtil.setCounter(metrics);
+  }
+
+  public static void clearCurrent() {
+    FileUtil.setCounter(null);
+  }
+
+  /**
+   * Metrics of the task running on this thread, null if none.
+   */
+  public static RebelGenerateMetrics current() {
+    FileOperationCounter counter = FileUtil.getCounter();
+    return counter instanceof RebelGenerateMetrics ? (RebelGenerateMetrics) counter : null;
+  }
+
+  public void countCanonicalization() {
+    canonicalizations.incrementAndGet();
+  }
+
+  public void countPathCacheHit() {
+    pathCacheHits.incrementAndGet();
+  }
+
+  public void countStat() {
+    statCalls.incrementAndGet();
+  }
+
+  /**
+   * Add the time elapsed since phaseStart (a System#nanoTime value) to the given phase.
+   */
+  public synchronized void endPhase(String phase, long phaseStart) {
+    long elapsed = System.nanoTime() - phaseStart;
+    Long previous = phaseNanos.get(phase);
+    phaseNanos.put(phase, previous == null ? elapsed : previous + elapsed);
+  }
+
+  public String getProjectPath() {
+    return projectPath;
+  }
+
+  public synchronized Map<String, Long> getPhaseNanos() {
+    return new LinkedHashMap<String, Long>(phaseNanos);
+  }
+
+  /**
+   * Wall time accumulated by the given phase so far, 0 if it hasn't been entered.
+   */
+  public synchronized long getPhaseNanos(String phase) {
+    Long nanos = phaseNanos.get(phase);
+    return nanos == null ? 0 : nanos;
+  }
+
+  public long getCanonicalizations() {
+    return canonicalizations.get();
+  }
+
+  public long getPathCacheHits() {
+    return pathCacheHits.get();
+  }
+
+  public long getStatCalls() {
+    return statCalls.get();
+  }
+
+  public long getBytesWritten() {
+    return bytesWritten;
+  }
+
+  public void addBytesWritten(long bytes) {
+    bytesWritten += bytes;
+  }
+
+  public long getResourcesProcessed() {
+    return resourcesProcessed;
+  }
+
+  public void addResourcesProcessed(long resources) {
+    resourcesProcessed += resources;
+  }
+
+  /**
+   * rebel.xml was up to date and nothing was generated
+   */
+  public boolean isSkipped() {
+    return skipped;
+  }
+
+  public void setSkipped(boolean skipped) {
+    this.skipped = skipped;
+  }
+
+  public String toJson() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("{\n");
+    sb.append("  \"project\": ").append(quote(projectPath)).append(",\n");
+    sb.append("  \"skipped\": ").append(skipped).append(",\n");
+    appendBody(sb, getPhaseNanos(), getCanonicalizations(), getPathCacheHits(), getStatCalls(), bytesWritten,
+        resourcesProcessed, "  ");
+    sb.append("}");
+    return sb.toString();
+  }
+
+  /**
+   * One JSON document with every project's metrics plus the totals over all of them (the root project's report),
+   * and the state of the build's path cache (over all the builds it has served so far) if given.
+   */
+  public static String toAggregateJson(Collection<RebelGenerateMetrics> all, CanonicalPathCache pathCache) {
+    Map<String, Long> totalPhases = new LinkedHashMap<String, Long>();
+    long totalCanonicalizations = 0;
+    long totalPathCacheHits = 0;
+    long totalStatCalls = 0;
+    long totalBytesWritten = 0;
+    long totalResources = 0;
+
+    StringBuilder projects = new StringBuilder();
+    for (RebelGenerateMetrics metrics : all) {
+      if (projects.length() > 0) {
+        projects.append(",\n");
+      }
+      projects.append(metrics.toJson());
+
+      for (Map.Entry<String, Long> phase : metrics.getPhaseNanos().entrySet()) {
+        Long previous = totalPhases.get(phase.getKey());
+        totalPhases.put(phase.getKey(), previous == null ? phase.getValue() : previous + phase.getValue());
+      }
+      totalCanonicalizations += metrics.getCanonicalizations();
+      totalPathCacheHits += metrics.getPathCacheHits();
+      totalStatCalls += metrics.getStatCalls();
+      totalBytesWritten += metrics.getBytesWritten();
+      totalResources += metrics.getResourcesProcessed();
+    }
+
+    StringBuilder sb = new StringBuilder();
+    sb.append("{\n");
+    sb.append("  \"projectCount\": ").append(all.size()).append(",\n");
+    sb.append("  \"totals\": {\n");
+    appendBody(sb, totalPhases, totalCanonicalizations, totalPathCacheHits, totalStatCalls, totalBytesWritten, totalResources,
+        "    ");
+    sb.append("  },\n");
+    if (pathCache != null) {
+      long hits = pathCache.getHits();
+      long lookups = hits + pathCache.getMisses();
+      sb.append("  \"pathCache\": {\n");
+      sb.append("    \"entries\": ").append(pathCache.size()).append(",\n");
+      sb.append("    \"hits\": ").append(hits).append(",\n");
+      sb.append("    \"misses\": ").append(pathCache.getMisses()).append(",\n");
+      sb.append("    \"stale\": ").append(pathCache.getStale()).append(",\n");
+      sb.append("    \"hitRate\": ").append(lookups == 0 ? "0.0" : String.valueOf((double) hits / lookups)).append("\n");
+      sb.append("  },\n");
+    }
+    sb.append("  \"projects\": [\n").append(projects).append("\n  ]\n");
+    sb.append("}\n");
+    return sb.toString();
+  }
+
+  private static void appendBody(StringBuilder sb, Map<String, Long> phases, long canonicalizations, long pathCacheHits,
+      long statCalls, long bytesWritten, long resourcesProcessed, String indent)
+  {
+    sb.append(indent).append("\"phasesMillis\": {");
+    boolean first = true;
+    for (Map.Entry<String, Long> phase : phases.entrySet()) {
+      sb.append(first ? "" : ",").append(' ').append(quote(phase.getKey())).append(": ");
+      sb.append(String.valueOf(phase.getValue() / 1000000.0));
+      first = false;
+    }
+    sb.append(" },\n");
+    sb.append(indent).append("\"canonicalizations\": ").append(canonicalizations).append(",\n");
+    sb.append(indent).append("\"pathCacheHits\": ").append(pathCacheHits).append(",\n");
+    long lookups = canonicalizations + pathCacheHits;
+    sb.append(indent).append("\"pathCacheHitRate\": ").append(lookups == 0 ? "0.0" : String.valueOf((double) pathCacheHits / lookups));
+    sb.append(",\n");
+    sb.append(indent).append("\"statCalls\": ").append(statCalls).append(",\n");
+    sb.append(indent).append("\"bytesWritten\": ").append(bytesWritten).append(",\n");
+    sb.append(indent).append("\"resourcesProcessed\": ").append(resourcesProcessed).append("\n");
+  }
+
+  private static String quote(String value) {
+    if (value == null) {
+      return "null";
+    }
+    StringBuilder sb = new StringBuilder("\"");
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        sb.append('\\').append(c);
+      }
+      else if (c < 0x20) {
+        sb.append(String.format("\\u%04x", (int) c));
+      }
+      else {
+        sb.append(c);
+      }
+    }
+    return sb.append('"').toString();
+  }
+
+}
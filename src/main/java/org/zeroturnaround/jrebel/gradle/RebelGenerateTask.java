@@ -15,15 +15,27 @@
  */
 package org.zeroturnaround.jrebel.gradle;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.commons.lang.StringUtils;
-
 import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.FileCollection;
 import org.gradle.api.tasks.TaskAction;
 import org.gradle.tooling.BuildException;
+import org.zeroturnaround.jrebel.gradle.jfr.RebelFlightRecorder;
 import org.zeroturnaround.jrebel.gradle.util.LoggerWrapper;
 
 import org.zeroturnaround.jrebel.gradle.model.RebelClasspath;
@@ -32,6 +44,8 @@ import org.zeroturnaround.jrebel.gradle.model.RebelWar;
 import org.zeroturnaround.jrebel.gradle.model.RebelWeb;
 import org.zeroturnaround.jrebel.gradle.model.RebelWebResource;
 import org.zeroturnaround.jrebel.gradle.model.RebelMainModel;
+import org.zeroturnaround.jrebel.gradle.model.RebelModelDiff;
+import org.zeroturnaround.jrebel.gradle.util.CanonicalPathCache;
 import org.zeroturnaround.jrebel.gradle.util.FileUtil;
 
 public class RebelGenerateTask extends DefaultTask {
@@ -39,6 +53,20 @@ public class RebelGenerateTask extends DefaultTask {
   public static final String PACKAGING_TYPE_JAR = "jar";
     
   public static final String PACKAGING_TYPE_WAR = "war";
+
+  public static final String REBEL_XML_FILE_NAME = "rebel.xml";
+
+  public static final String REBEL_REMOTE_XML_FILE_NAME = "rebel-remote.xml";
+
+  /**
+   * The model rebel.xml was last generated from, kept in the task's temporary directory
+   */
+  public static final String PREVIOUS_MODEL_FILE_NAME = "rebel-model.ser";
+
+  /**
+   * The fragments (path, size and timestamp) rebel.xml was last generated with, kept in the task's temporary directory
+   */
+  public static final String FRAGMENTS_STATE_FILE_NAME = "fragments.txt";
   
   private LoggerWrapper log = new LoggerWrapper(getProject().getLogger()); 
   
@@ -51,14 +79,24 @@ public class RebelGenerateTask extends DefaultTask {
   private RebelWar war;
 
   private RebelMainModel rebelModel;
+
+  private RebelModelDiff modelDiff;
   
   private boolean skipWritingRebelXml;
   
   private Boolean alwaysGenerate;
 
   private File defaultClassesDirectory;
+
+  private List<File> defaultClassesDirectories;
   
   private File defaultResourcesDirectory;
+
+  private List<RebelClasspathResource> sourceResourcesDirectories;
+
+  private List<RebelWebResource> warWebResources;
+
+  private List<RebelClasspathResource> copySpecClasspathResources;
   
   private File defaultWebappDirectory;
 
@@ -75,6 +113,20 @@ public class RebelGenerateTask extends DefaultTask {
    *        Rein who probably originally introduced it to Maven plugin where it was copy-pasted from. 
    */
   private File configuredRelativePath;
+
+  private Long monitoredFilesBudget;
+
+  private Long monitoredBytesBudget;
+
+  private Boolean failOnBudgetExceeded = false;
+
+  private Boolean mergeFragments = false;
+
+  private File fragmentsDirectory;
+
+  private Boolean pathsOnly = false;
+
+  private String remoteId;
       
   public String getConfiguredRootPath() {
     return configuredRootPath;
@@ -144,6 +196,14 @@ public class RebelGenerateTask extends DefaultTask {
     return defaultClassesDirectory;
   }
 
+  /**
+   * The classes directories of every language compiled in the main source set (Java, Groovy, Kotlin, Scala, ..),
+   * in the source set's order
+   */
+  public List<File> getDefaultClassesDirectories() {
+    return defaultClassesDirectories;
+  }
+
   public File getDefaultResourcesDirectory() {
     return defaultResourcesDirectory;
   }
@@ -155,6 +215,79 @@ public class RebelGenerateTask extends DefaultTask {
   public File getRebelXmlDirectory() {
     return rebelXmlDirectory;
   }
+
+  /**
+   * rebel.xml in the rebelXmlDirectory, null if there is no rebelXmlDirectory
+   */
+  public File getRebelXmlFile() {
+    return rebelXmlDirectory != null ? new File(rebelXmlDirectory, REBEL_XML_FILE_NAME) : null;
+  }
+
+  public Long getMonitoredFilesBudget() {
+    return monitoredFilesBudget;
+  }
+
+  public void setMonitoredFilesBudget(Long monitoredFilesBudget) {
+    this.monitoredFilesBudget = monitoredFilesBudget;
+  }
+
+  public Long getMonitoredBytesBudget() {
+    return monitoredBytesBudget;
+  }
+
+  public void setMonitoredBytesBudget(Long monitoredBytesBudget) {
+    this.monitoredBytesBudget = monitoredBytesBudget;
+  }
+
+  public Boolean getFailOnBudgetExceeded() {
+    return failOnBudgetExceeded;
+  }
+
+  public void setFailOnBudgetExceeded(Boolean failOnBudgetExceeded) {
+    this.failOnBudgetExceeded = failOnBudgetExceeded;
+  }
+
+  public Boolean getMergeFragments() {
+    return mergeFragments;
+  }
+
+  public void setMergeFragments(Boolean mergeFragments) {
+    this.mergeFragments = mergeFragments;
+  }
+
+  public File getFragmentsDirectory() {
+    return fragmentsDirectory;
+  }
+
+  public void setFragmentsDirectory(File fragmentsDirectory) {
+    this.fragmentsDirectory = fragmentsDirectory;
+  }
+
+  public Boolean getPathsOnly() {
+    return pathsOnly;
+  }
+
+  public void setPathsOnly(Boolean pathsOnly) {
+    this.pathsOnly = pathsOnly;
+  }
+
+  public String getRemoteId() {
+    return remoteId;
+  }
+
+  /**
+   * The application id of rebel-remote.xml, null for no rebel-remote.xml
+   */
+  public void setRemoteId(String remoteId) {
+    this.remoteId = remoteId;
+  }
+
+  /**
+   * Directory for the plugin's reports (build/reports/rebel)
+   */
+  public File getReportsDirectory() {
+    return new File(getProject().getBuildDir(), "reports/rebel");
+  }
   
   /**
    * Getter for the functional tests to examine the model
@@ -163,6 +296,14 @@ public class RebelGenerateTask extends DefaultTask {
     return rebelModel;
   }
 
+  /**
+   * What changed in the model since rebel.xml was last generated (everything is "added" on the first run).
+   * Null until the task has built its model.
+   */
+  public RebelModelDiff getModelDiff() {
+    return modelDiff;
+  }
+
   /**
    * Only for automated tests! Tests should not try to write the actual file.
    */
@@ -191,358 +332,486 @@ public class RebelGenerateTask extends DefaultTask {
       );  
     }
     
+    RebelGenerateMetrics metrics = new RebelGenerateMetrics(getProject().getPath());
+    RebelGenerateMetrics.setCurrent(metrics);
+    // the canonical paths of the previous builds of this root project in the daemon are reused
+    FileUtil.setPathCache(CanonicalPathCache.forRootDir(getProject().getRootDir()));
+    try {
+      doGenerate(metrics);
+    }
+    finally {
+      FileUtil.setPathCache(null);
+      RebelGenerateMetrics.clearCurrent();
+    }
+
+    RebelMetricsAggregator aggregator = RebelMetricsAggregator.find(getProject());
+    if (aggregator != null) {
+      aggregator.add(getPath(), metrics);
+    }
+    if (!skipWritingRebelXml) {
+      writeMetricsReport(metrics);
+    }
+  }
+
+  private void doGenerate(RebelGenerateMetrics metrics) {
+    long phaseStart = System.nanoTime();
     propagateConventionMappingSettings();
+    metrics.endPhase(RebelGenerateMetrics.PHASE_CONVENTION_PROPAGATION, phaseStart);
     
-    log.info("rebel.alwaysGenerate = " + alwaysGenerate);
-    log.info("rebel.showGenerated = " + showGenerated);
-    log.info("rebel.rebelXmlDirectory = " + rebelXmlDirectory);
-    log.info("rebel.packaging = " + packaging);
-    log.info("rebel.war = " + war);
-    log.info("rebel.web = " + web);
-    log.info("rebel.classpath = " + classpath);
-    log.info("rebel.defaultClassesDirectory = " + defaultClassesDirectory);
-    log.info("rebel.defaultResourcesDirectory = " + defaultResourcesDirectory);
-    log.info("rebel.defaultWebappDirectory = " + defaultWebappDirectory);
-    log.info("rebel.configuredRootPath = " + configuredRootPath);
-    log.info("rebel.configuredRelativePath = " + configuredRelativePath);
+    log.info("rebel.alwaysGenerate = {}", alwaysGenerate);
+    log.info("rebel.showGenerated = {}", showGenerated);
+    log.info("rebel.rebelXmlDirectory = {}", rebelXmlDirectory);
+    log.info("rebel.packaging = {}", packaging);
+    log.info("rebel.war = {}", war);
+    log.info("rebel.web = {}", web);
+    log.info("rebel.classpath = {}", classpath);
+    log.info("rebel.defaultClassesDirectory = {}", defaultClassesDirectory);
+    log.info("rebel.defaultClassesDirectories = {}", defaultClassesDirectories);
+    log.info("rebel.defaultResourcesDirectory = {}", defaultResourcesDirectory);
+    log.info("rebel.sourceResourcesDirectories = {}", sourceResourcesDirectories);
+    log.info("rebel.warWebResources = {}", warWebResources);
+    log.info("rebel.copySpecClasspathResources = {}", copySpecClasspathResources);
+    log.info("rebel.defaultWebappDirectory = {}", defaultWebappDirectory);
+    log.info("rebel.configuredRootPath = {}", configuredRootPath);
+    log.info("rebel.configuredRelativePath = {}", configuredRelativePath);
+    log.info("rebel.mergeFragments = {}", mergeFragments);
+    log.info("rebel.fragmentsDirectory = {}", fragmentsDirectory);
+    log.info("rebel.pathsOnly = {}", pathsOnly);
     
     // find rebel.xml location
-    File rebelXmlFile = null;
-  
-    if (rebelXmlDirectory != null) {
-      rebelXmlFile = new File(rebelXmlDirectory, "rebel.xml");
-    }
+    File rebelXmlFile = getRebelXmlFile();
   
     // find build.gradle location
     File buildXmlFile = getProject().getBuildFile();
   
-    if (!alwaysGenerate && (rebelXmlFile != null) && rebelXmlFile.exists() && (buildXmlFile != null) && buildXmlFile.exists() && rebelXmlFile.lastModified() > buildXmlFile.lastModified()) {
+    if (!alwaysGenerate && (rebelXmlFile != null) && FileUtil.exists(rebelXmlFile) && (buildXmlFile != null) && FileUtil.exists(buildXmlFile)
+        && FileUtil.lastModified(rebelXmlFile) > FileUtil.lastModified(buildXmlFile) && !haveFragmentsChanged()) {
+      metrics.setSkipped(true);
       return;
     }
   
     // find the type of the project
-    if (getPackaging().equals(PACKAGING_TYPE_JAR)) {
-      rebelModel = buildModelForJar();
+    // the path fixing done while building and merging is a phase of its own, leave it out of theirs
+    phaseStart = System.nanoTime();
+    long pathFixingNanos = metrics.getPhaseNanos(RebelGenerateMetrics.PHASE_PATH_FIXING);
+    RebelFlightRecorder.Span modelBuildSpan = RebelFlightRecorder.get().beginModelBuild(metrics.getProjectPath());
+    rebelModel = createModelBuilder().build();
+    metrics.endPhase(RebelGenerateMetrics.PHASE_MODEL_BUILD,
+        phaseStart + metrics.getPhaseNanos(RebelGenerateMetrics.PHASE_PATH_FIXING) - pathFixingNanos);
+
+    if (rebelModel != null && mergeFragments) {
+      phaseStart = System.nanoTime();
+      pathFixingNanos = metrics.getPhaseNanos(RebelGenerateMetrics.PHASE_PATH_FIXING);
+      mergeFragments(rebelModel, createPathFixer());
+      metrics.endPhase(RebelGenerateMetrics.PHASE_FRAGMENT_MERGING,
+          phaseStart + metrics.getPhaseNanos(RebelGenerateMetrics.PHASE_PATH_FIXING) - pathFixingNanos);
     }
-    else if (getPackaging().equals(PACKAGING_TYPE_WAR)) {
-      rebelModel = buildModelForWar();
+  
+    if (rebelModel != null) {
+      metrics.addResourcesProcessed(rebelModel.getResourceCount());
+      modelBuildSpan.resourceCount(rebelModel.getResourceCount());
     }
+    modelBuildSpan.finish();
   
-    if (rebelModel != null && !skipWritingRebelXml) {
-      generateRebelXml(rebelXmlFile);
+    if (rebelModel != null && (monitoredFilesBudget != null || monitoredBytesBudget != null)) {
+      // with 'rootPath' or 'relativePath' the model's paths are placeholders, count the directories of this machine
+      boolean pathsFixed = configuredRootPath != null || configuredRelativePath != null;
+      checkMonitoredFilesBudget(pathsFixed ? buildLocalModel(pathsOnly) : rebelModel);
+    }
+  
+    if (rebelModel == null) {
+      return;
     }
-  }
 
-  /**
-   * Construct a builder for jar projects
-   */
-  private RebelMainModel buildModelForJar() {
-    log.info("Building rebel backend model for jar ..");
-    RebelMainModel model = new RebelMainModel();
-    
-    buildClasspath(model);
-    
-    log.info("Backend model eventually built: " + model);
-    return model;
+    RebelMainModel previousModel = loadPreviousModel();
+    modelDiff = RebelModelDiff.compare(previousModel, rebelModel);
+    if (previousModel == null) {
+      log.info("No model of a previous run found, generating rebel.xml from scratch");
+    }
+    else if (modelDiff.isEmpty()) {
+      log.info("Model unchanged since rebel.xml was last generated");
+    }
+    else if (log.isInfoEnabled()) {
+      log.info("Model changes since rebel.xml was last generated:\n" + modelDiff.toSummaryString());
+    }
+
+    if (skipWritingRebelXml) {
+      return;
+    }
+
+    if (remoteId != null && rebelXmlFile != null) {
+      generateRebelRemoteXml(new File(rebelXmlFile.getParentFile(), REBEL_REMOTE_XML_FILE_NAME));
+    }
+
+    String xmlFileContents = renderRebelXml(metrics);
+
+    // rebel.xml comes out the same, leave it (and its timestamp that JRebel watches) alone. The model alone doesn't
+    // tell, the writer (or the plugin version) may render it differently.
+    if (previousModel != null && modelDiff.isEmpty() && !alwaysGenerate && rebelXmlFile != null
+        && xmlFileContents.equals(readExistingRebelXml(rebelXmlFile)))
+    {
+      log.info("\"{}\" is up to date", rebelXmlFile);
+      metrics.setSkipped(true);
+      saveFragmentsState();
+      return;
+    }
+
+    generateRebelXml(rebelXmlFile, xmlFileContents, metrics);
+    savePreviousModel(rebelModel);
+    saveFragmentsState();
   }
 
   /**
-   * Construct a builder for war projects
+   * The contents of the existing rebel.xml, null if there is none
    */
-  private RebelMainModel buildModelForWar() {
-    log.info("Building rebel backend model for war ..");
-    RebelMainModel model = new RebelMainModel();
-  
-    buildWeb(model);
-    buildClasspath(model);
-    buildWar(model);
+  private String readExistingRebelXml(File rebelXmlFile) {
+    if (!FileUtil.exists(rebelXmlFile)) {
+      return null;
+    }
+    try {
+      return FileUtil.readFile(rebelXmlFile);
+    }
+    catch (IOException e) {
+      log.info("Ignoring the existing \"{}\": {}", rebelXmlFile, e.getMessage());
+      return null;
+    }
+  }
 
-    log.info("Backend model eventually built: " + model);
-    return model;
+  private File getPreviousModelFile() {
+    return new File(getTemporaryDir(), PREVIOUS_MODEL_FILE_NAME);
   }
 
   /**
-   * Compile the model that corresponds to the <classpath> node in rebel.xml.
+   * The model rebel.xml was generated from the last time, null if there is none (or it can't be read, e.g. it was
+   * written by another plugin version). An existing rebel.xml isn't parsed instead: the parsed model isn't
+   * exactly the one it was written from, so rebel.xml is generated anew.
    */
-  private void buildClasspath(RebelMainModel model) {
+  private RebelMainModel loadPreviousModel() {
+    File modelFile = getPreviousModelFile();
+    if (!FileUtil.exists(modelFile)) {
+      return null;
+    }
 
-    // User has defined no 'classpath {}' block in the DSL configuration. Just add the default and return.
-    if (classpath == null) {
-      log.info("No custom classpath configuration found .. using the defaults");
-      buildDefaultClasspath(model, null);
-      return;
+    ObjectInputStream in = null;
+    try {
+      in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(modelFile)));
+      return (RebelMainModel) in.readObject();
     }
-    
-    // User has provided custom 'classpath {}' configuration
-    else {
-      // Search for the default element. If we find it, we have to place it exactly into the same place where we
-      // found it (preserving the order). If we *don't* find it, we'll add the default classpath as first element.
-      boolean addDefaultAsFirst = true;
-      RebelClasspathResource defaultClasspath = null;
-      
-      // Just search for the default element. Don't add anything anywhere yet.
-      for (RebelClasspathResource resource : classpath.getResources()) {
-        // we found the default.
-        if (resource.isDefaultClasspathElement()) {
-          addDefaultAsFirst = false;
-          defaultClasspath = resource;
-          break;
-        }
-      }
-    
-      // Default classpath element not found. Put the default as first.
-      if (addDefaultAsFirst) {
-        // check if configuration allows adding the default
-        buildDefaultClasspath(model, defaultClasspath);
-      }
-      
-      // Iterate through all classpath elements and add them.
-      for (RebelClasspathResource resource : classpath.getResources()) {
-
-        // Special treatment for the default.
-        if (resource.isDefaultClasspathElement()) {
-          buildDefaultClasspath(model, resource);
-        }
-        // An ordinary element. Add it.
-        else {
-          // TODO TODO TODO add the fixpath stuff!! --- better implementation!! 
-          // TODO fix paths for other elements as well!
-          resource.setDirectory(fixFilePath(resource.getDirectory()));
-          model.addClasspathDir(resource);
-        }
-      }
-      
+    catch (Exception e) {
+      log.info("Ignoring the model of the previous run in \"{}\": {}", modelFile, e.toString());
+      return null;
+    }
+    finally {
+      FileUtil.closeQuietly(in);
     }
   }
 
-  /**
-   * Add the default classes directory to classpath
-   */
-  private void buildDefaultClasspath(RebelMainModel model, RebelClasspathResource defaultClasspath) throws BuildException {
-    // Add default resources dir to rebel.xml unless user's configuration disallows it
-    if (classpath == null || !classpath.isOmitDefaultResourcesDir()) {
-      addDefaultResourcesDirToClasspath(model);
+  private void savePreviousModel(RebelMainModel model) {
+    File modelFile = getPreviousModelFile();
+    ObjectOutputStream out = null;
+    try {
+      out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(modelFile)));
+      out.writeObject(model);
     }
-
-    // Add default classes dir to rebel.xml unless user's configuration disallows it
-    if (classpath == null || !classpath.isOmitDefaultClassesDir()) {
-      addDefaultClassesDirToClasspath(model, defaultClasspath);
+    catch (IOException e) {
+      throw new BuildException("Failed writing \"" + modelFile + "\"", e);
+    }
+    finally {
+      FileUtil.closeQuietly(out);
     }
   }
 
   /**
-   * Add the default classes directory to classpath
+   * The hand-written rebel.xml fragments (*.xml in fragmentsDirectory), sorted by name so they're merged in a stable order
    */
-  private void addDefaultClassesDirToClasspath(RebelMainModel model, RebelClasspathResource defaultClasspath) {
-    // project output directory
-    RebelClasspathResource classpathResource = new RebelClasspathResource();
-    
-    String fixedDefaultClassesDirectory = fixFilePath(defaultClassesDirectory);
-    log.info("fixed default classes directory : " + fixedDefaultClassesDirectory); 
-    
-    classpathResource.setDirectory(fixedDefaultClassesDirectory);
-    // XXX sure about this? what if i specified an absolute path with a placeholder in it?? this wouldn't work if i do this check!
-    if (!new File(fixedDefaultClassesDirectory).isDirectory()) {
-      log.info("Not adding default classes directory as it doesn't exist or is not a directory");
-      return;
+  private File[] listFragments() {
+    if (!mergeFragments || fragmentsDirectory == null || !FileUtil.isDirectory(fragmentsDirectory)) {
+      return new File[0];
     }
-  
-    if (defaultClasspath != null) {
-      classpathResource.setIncludes(defaultClasspath.getIncludes());
-      classpathResource.setExcludes(defaultClasspath.getExcludes());
+    File[] fragments = fragmentsDirectory.listFiles(new FileFilter() {
+      public boolean accept(File file) {
+        return file.getName().endsWith(".xml") && file.isFile();
+      }
+    });
+    if (fragments == null) {
+      return new File[0];
     }
-  
-    model.addClasspathDir(classpathResource);
+    Arrays.sort(fragments);
+    return fragments;
   }
 
   /**
-   * Add the default resources directory to classpath
+   * The fragments as they are now, one "path, size, timestamp" line each
    */
-  private void addDefaultResourcesDirToClasspath(RebelMainModel model) throws BuildException {
-    log.info("Adding default resources directory to classpath ..");
-    
-    RebelClasspathResource resourcesClasspathResource = new RebelClasspathResource();
-    String fixedDefaultResourcesDir = fixFilePath(defaultResourcesDirectory);
-    log.info("Default resources directory after normalizing: " + fixedDefaultResourcesDir);
-    
-    resourcesClasspathResource.setDirectory(fixedDefaultResourcesDir);
-    // XXX sure about this? what if i specified an absolute path with a placeholder in it?? this wouldn't work if i do this check!
-    if (!new File(resourcesClasspathResource.getDirectory()).isDirectory()) {
-      log.info("Didn't add default resources directory as it doesn't exist or is not a directory!");
-      return;
+  private String getFragmentsState() {
+    StringBuilder state = new StringBuilder();
+    for (File fragment : listFragments()) {
+      state.append(fragment.getAbsolutePath()).append('\t').append(FileUtil.length(fragment)).append('\t')
+          .append(FileUtil.lastModified(fragment)).append('\n');
     }
-    model.addClasspathDir(resourcesClasspathResource);
+    return state.toString();
   }
 
   /**
-   * Build the model for the <web> element in rebel.xml
+   * Whether a fragment was added, changed or deleted since rebel.xml was last generated
    */
-  private void buildWeb(RebelMainModel model) {
-    
-    // User has not devfined a 'web {}' block
-    if (web == null) {
-      buildDefaultWeb(model, null);
-    }
-    
-    // A 'web {}' block was defined in configuration DSL
-    else {
-      
-      // Go through all elements, look up the default one
-      boolean addDefaultAsFirst = true;
-      RebelWebResource defaultWeb = null;
-    
-      for (RebelWebResource resource : web.getResources()) {
-        if (resource.isDefaultElement()) {
-          defaultWeb = resource;
-          addDefaultAsFirst = false;
-          break;
-        }
-      }
-    
-      // Add the default one as first, if a specific location was not specified by the empty element 
-      if (addDefaultAsFirst) {
-        if (web != null && !web.getOmitDefault()) {
-          buildDefaultWeb(model, defaultWeb);
-        }
+  private boolean haveFragmentsChanged() {
+    File stateFile = new File(getTemporaryDir(), FRAGMENTS_STATE_FILE_NAME);
+    String previousState = "";
+    if (FileUtil.exists(stateFile)) {
+      try {
+        previousState = FileUtil.readFile(stateFile);
       }
-    
-      // Add all the other elements from the user's configuration
-      List<RebelWebResource> resources = web.getResources();
-      if (resources != null && resources.size() > 0) {
-        for (int i = 0; i < resources.size(); i++) {
-          RebelWebResource resource = resources.get(i);
-          
-          // Add the default element
-          if (resource.isDefaultElement()) {
-            if (!web.getOmitDefault()) {
-              buildDefaultWeb(model, resource);
-            }
-          }
-          // Add a normal, non-default element
-          else {
-            resource.setDirectory(fixFilePath(resource.getDirectory()));
-            model.addWebResource(resource);
-          }
-        }
+      catch (IOException e) {
+        return true;
       }
     }
+    return !getFragmentsState().equals(previousState);
   }
 
-  /**
-   * The default for the <web> element in rebel.xml
-   */
-  private void buildDefaultWeb(RebelMainModel model, RebelWebResource defaultWeb) {
-    RebelWebResource r = new RebelWebResource();
-    r.setTarget("/");
-    r.setDirectory(fixFilePath(defaultWebappDirectory));
-  
-    if (defaultWeb != null) {
-      r.setIncludes(defaultWeb.getIncludes());
-      r.setExcludes(defaultWeb.getExcludes());
+  private void saveFragmentsState() {
+    File stateFile = new File(getTemporaryDir(), FRAGMENTS_STATE_FILE_NAME);
+    try {
+      FileUtil.writeToFile(stateFile, getFragmentsState());
+    }
+    catch (IOException e) {
+      throw new BuildException("Failed writing \"" + stateFile + "\"", e);
     }
-  
-    model.addWebResource(r);
   }
 
   /**
-   * Build model for thw <war> element in rebel.xml
+   * Merge the hand-written fragments into the generated model (merge mode)
    */
-  private void buildWar(RebelMainModel model) {
-    // fix the path on the RebelWar object (whoooh...not nicest and not the nicest placing)
-    if (war != null && war.getPath() != null) {
-      war.setOriginalPath(war.getPath());
-      war.setPath(fixFilePath(war.getPath()));
-      model.setWar(war);
+  private void mergeFragments(RebelMainModel model, RebelPathFixer pathFixer) {
+    RebelModelMerger merger = new RebelModelMerger(pathFixer);
+    for (File fragment : listFragments()) {
+      log.info("Merging rebel.xml fragment \"{}\"", fragment);
+      try {
+        merger.merge(model, RebelFragmentCache.getShared().load(fragment));
+      }
+      catch (IOException e) {
+        throw new GradleException("Failed reading rebel.xml fragment \"" + fragment + "\": " + e.getMessage(), e);
+      }
     }
   }
 
-  private void generateRebelXml(File rebelXmlFile) {
-    // TODO replacement of those placeholders does not work and probably has never worked (probably copy-pasted from maven plugin). REPLACE!
-    log.info("Processing ${project.group}:${project.name} with packaging " + getPackaging());
-    log.info("Generating \"${rebelXmlFile}\"...");
- 
-    // Do generate the rebel.xml
+  /**
+   * Write this run's metrics into build/reports/rebel/generateRebel.json
+   */
+  private void writeMetricsReport(RebelGenerateMetrics metrics) {
+    File reportFile = new File(getReportsDirectory(), getName() + ".json");
     try {
-      String xmlFileContents = getRebelModel().toXmlString();
- 
-      // Print generated rebel.xml out to console if user wants to see it
-      if (getShowGenerated()) {
-        System.out.println(xmlFileContents);
-      }
-     
-      // Write out the rebel.xml file
-      rebelXmlFile.getParentFile().mkdirs();
-      FileUtil.writeToFile(rebelXmlFile, xmlFileContents);
+      reportFile.getParentFile().mkdirs();
+      FileUtil.writeToFile(reportFile, metrics.toJson() + "\n");
     }
     catch (IOException e) {
-      throw new BuildException("Failed writing \"${rebelXmlFile}\"", e);
+      throw new BuildException("Failed writing \"" + reportFile + "\"", e);
     }
   }
 
   /**
-   * Get the absolute, normalized path. 
-   * XXX maybe should be moved to an external utility class
+   * Count what the generated rebel.xml will make JRebel monitor and compare it against the configured budget.
+   * The model must have the local paths, those of {@link #buildLocalModel(boolean)}.
+   * The per-entry summary goes to build/reports/rebel/monitored-files.txt.
    */
-  private String fixFilePath(File file) {
-    File baseDir = getProject().getProjectDir();
-
-    if (file.isAbsolute() && !FileUtil.isRelativeToPath(new File(baseDir, getRelativePath()), file)) {
-      return StringUtils.replace(FileUtil.getCanonicalPath(file), "\\", "/");
+  private void checkMonitoredFilesBudget(RebelMainModel model) {
+    RebelMonitoredFilesReport report = new RebelMonitoredFilesEstimator().estimate(model);
+    if (log.isInfoEnabled()) {
+      log.info("Monitored files estimate:\n" + report.toSummaryString());
     }
 
-    if (!file.isAbsolute()) {
-      file = new File(baseDir, file.getPath());
+    File summaryFile = new File(getReportsDirectory(), "monitored-files.txt");
+    try {
+      summaryFile.getParentFile().mkdirs();
+      FileUtil.writeToFile(summaryFile, report.toSummaryString());
+    }
+    catch (IOException e) {
+      throw new BuildException("Failed writing \"" + summaryFile + "\"", e);
     }
 
-    String relative = FileUtil.getRelativePath(new File(baseDir, getRelativePath()), file);
-    
-    if (!(new File(relative)).isAbsolute()) {
-      return StringUtils.replace(getRootPath(), "\\", "/") + "/" + relative;
+    List<String> violations = new ArrayList<String>();
+    if (monitoredFilesBudget != null && report.getTotalFiles() > monitoredFilesBudget) {
+      violations.add(report.getTotalFiles() + " files, the budget is " + monitoredFilesBudget);
+    }
+    if (monitoredBytesBudget != null && report.getTotalBytes() > monitoredBytesBudget) {
+      violations.add(report.getTotalBytes() + " bytes, the budget is " + monitoredBytesBudget);
     }
 
-    // relative path was outside baseDir
+    if (!violations.isEmpty()) {
+      String violation = "rebel.xml makes JRebel monitor " + StringUtils.join(violations, "; ") + " (see " + summaryFile + ")";
+      if (failOnBudgetExceeded) {
+        throw new GradleException(violation);
+      }
+      log.warn(violation);
+    }
+  }
 
-    // if root path is absolute then try to get a path relative to root
-    if ((new File(getRootPath())).isAbsolute()) {
-      String s = FileUtil.getRelativePath(new File(getRootPath()), file);
+  /**
+   * The model rebel.xml would be generated from, resolved from the configuration alone: nothing is compiled or
+   * written, the default directories are included whether they exist yet or not (as in paths-only mode) and the
+   * fragments are merged in merge mode. Null if JavaPlugin isn't applied or the packaging is unknown.
+   *
+   * For the tooling model (IDE import), which must not execute any tasks.
+   */
+  public RebelMainModel resolveModel() {
+    if (!isPluginConfigured) {
+      return null;
+    }
+    propagateConventionMappingSettings();
+    RebelPathFixer pathFixer = createPathFixer();
+    RebelMainModel model = createModelBuilder(true, pathFixer).build();
+    if (model != null && mergeFragments) {
+      mergeFragments(model, pathFixer);
+    }
+    return model;
+  }
 
-      if (!(new File(s)).isAbsolute()) {
-        return StringUtils.replace(getRootPath(), "\\", "/") + "/" + s;
-      }
-      else {
-        // root path and the calculated path are absolute, so
-        // just return calculated path
-        return s;
-      }
+  /**
+   * Same as {@link #resolveModel()}, but with the paths of this machine: 'rootPath' and 'relativePath' aren't
+   * applied, so the directories can be read. For the tasks working on the contents of the directories.
+   */
+  public RebelMainModel resolveLocalModel() {
+    if (!isPluginConfigured) {
+      return null;
     }
+    propagateConventionMappingSettings();
+    return buildLocalModel(true);
+  }
 
-    // return absolute path to file
-    return StringUtils.replace(file.getAbsolutePath(), "\\", "/");
+  private RebelMainModel buildLocalModel(boolean pathsOnly) {
+    RebelPathFixer pathFixer = new RebelPathFixer(getProject().getProjectDir(), null, null);
+    RebelMainModel model = createModelBuilder(pathsOnly, pathFixer).build();
+    if (model != null && mergeFragments) {
+      mergeFragments(model, pathFixer);
+    }
+    return model;
   }
 
-  private String fixFilePath(String path) {
-    return fixFilePath(new File(path));
+  /**
+   * The classpath with the rebel.xml directory in front, unless it's already on it. For the JVMs launched with
+   * JRebel, which looks up rebel.xml from the classpath.
+   */
+  public FileCollection withRebelXmlDirectory(FileCollection classpath) {
+    propagateConventionMappingSettings();
+    if (rebelXmlDirectory == null || classpath.contains(rebelXmlDirectory)) {
+      return classpath;
+    }
+    return getProject().files(rebelXmlDirectory, classpath);
   }
 
-  private String getRelativePath() {
-    if (getConfiguredRelativePath() != null) {
-      return getConfiguredRelativePath().getAbsolutePath();
+  /**
+   * The 'web {}' configuration with the links derived from the war task appended, null if there is neither
+   */
+  private RebelWeb getWebWithWarWebResources() {
+    if (warWebResources == null || warWebResources.isEmpty()) {
+      return web;
+    }
+    RebelWeb combined;
+    if (web != null) {
+      combined = web.copy();
     }
     else {
-      return ".";
+      combined = new RebelWeb();
+      combined.setOmitDefault(false);
     }
+    for (RebelWebResource resource : warWebResources) {
+      combined.addResource(resource.copy());
+    }
+    return combined;
   }
 
-  private String getRootPath() {
-    if (getConfiguredRootPath() != null) {
-      return getConfiguredRootPath();
+  /**
+   * The 'classpath {}' configuration with the directories derived from the copy specs appended, null if there is neither
+   */
+  private RebelClasspath getClasspathWithCopySpecResources() {
+    if (copySpecClasspathResources == null || copySpecClasspathResources.isEmpty()) {
+      return classpath;
     }
-    else {
-      return getProject().getProjectDir().getAbsolutePath();
+    RebelClasspath combined = classpath != null ? classpath.copy() : new RebelClasspath();
+    for (RebelClasspathResource resource : copySpecClasspathResources) {
+      combined.addResource(resource.copy());
     }
+    return combined;
   }
-  
+
+  /**
+   * A model builder working on a snapshot of the task's current configuration
+   */
+  public RebelModelBuilder createModelBuilder() {
+    return createModelBuilder(pathsOnly);
+  }
+
+  private RebelModelBuilder createModelBuilder(boolean pathsOnly) {
+    return createModelBuilder(pathsOnly, createPathFixer());
+  }
+
+  /**
+   * The paths in the form they are written into rebel.xml, with 'rootPath' and 'relativePath' applied
+   */
+  private RebelPathFixer createPathFixer() {
+    return new RebelPathFixer(getProject().getProjectDir(), configuredRootPath, configuredRelativePath);
+  }
+
+  private RebelModelBuilder createModelBuilder(boolean pathsOnly, RebelPathFixer pathFixer) {
+    List<File> classesDirectories = defaultClassesDirectories;
+    if (classesDirectories == null || classesDirectories.isEmpty()) {
+      classesDirectories = defaultClassesDirectory != null ? Collections.singletonList(defaultClassesDirectory) : null;
+    }
+    return new RebelModelBuilder(log, pathFixer, packaging, getClasspathWithCopySpecResources(), getWebWithWarWebResources(), war, classesDirectories,
+        defaultResourcesDirectory, sourceResourcesDirectories, defaultWebappDirectory, pathsOnly);
+  }
+
+  /**
+   * Written only if its contents change, like rebel.xml it is monitored
+   */
+  private void generateRebelRemoteXml(File rebelRemoteXmlFile) {
+    String xmlFileContents = new RebelXmlWriter().toRemoteXmlString(remoteId);
+    try {
+      if (FileUtil.exists(rebelRemoteXmlFile) && xmlFileContents.equals(FileUtil.readFile(rebelRemoteXmlFile))) {
+        log.info("\"{}\" is up to date", rebelRemoteXmlFile);
+        return;
+      }
+      log.info("Generating \"{}\"...", rebelRemoteXmlFile);
+      rebelRemoteXmlFile.getParentFile().mkdirs();
+      FileUtil.writeToFile(rebelRemoteXmlFile, xmlFileContents);
+    }
+    catch (IOException e) {
+      throw new BuildException("Failed writing \"" + rebelRemoteXmlFile + "\"", e);
+    }
+  }
+
+  private String renderRebelXml(RebelGenerateMetrics metrics) {
+    long phaseStart = System.nanoTime();
+    RebelFlightRecorder.Span renderingSpan = RebelFlightRecorder.get().beginRendering(metrics.getProjectPath());
+    String xmlFileContents = getRebelModel().toXmlString();
+    renderingSpan.resourceCount(getRebelModel().getResourceCount()).bytes(xmlFileContents.length()).finish();
+    metrics.endPhase(RebelGenerateMetrics.PHASE_RENDERING, phaseStart);
+    return xmlFileContents;
+  }
+
+  private void generateRebelXml(File rebelXmlFile, String xmlFileContents, RebelGenerateMetrics metrics) {
+    log.info("Processing {}:{} with packaging {}", getProject().getGroup(), getProject().getName(), getPackaging());
+    log.info("Generating \"{}\"...", rebelXmlFile);
  
+    // Do generate the rebel.xml
+    try {
+      // Print generated rebel.xml out to console if user wants to see it
+      if (getShowGenerated()) {
+        System.out.println(xmlFileContents);
+      }
+     
+      // Write out the rebel.xml file
+      long phaseStart = System.nanoTime();
+      rebelXmlFile.getParentFile().mkdirs();
+      FileUtil.writeToFile(rebelXmlFile, xmlFileContents);
+      metrics.addBytesWritten(FileUtil.length(rebelXmlFile));
+      metrics.endPhase(RebelGenerateMetrics.PHASE_WRITING, phaseStart);
+    }
+    catch (IOException e) {
+      throw new BuildException("Failed writing \"${rebelXmlFile}\"", e);
+    }
+  }
+
   /* ====================================================================================================
    *   Properties intercepted by Gradle's convention-mapping byte code magic. These methods will actually
    *   be intercepted and return values set by the callback set up in RebelPlugin#configure.
@@ -552,8 +821,16 @@ public class RebelGenerateTask extends DefaultTask {
 
   public static final String NAME_DEFAULT_CLASSES_DIRECTORY = "defaultClassesDirectory$MAGIC";
   
+  public static final String NAME_DEFAULT_CLASSES_DIRECTORIES = "defaultClassesDirectories$MAGIC";
+
   public static final String NAME_DEFAULT_RESOURCES_DIRECTORY = "defaultResourcesDirectory$MAGIC";
   
+  public static final String NAME_SOURCE_RESOURCES_DIRECTORIES = "sourceResourcesDirectories$MAGIC";
+
+  public static final String NAME_WAR_WEB_RESOURCES = "warWebResources$MAGIC";
+
+  public static final String NAME_COPY_SPEC_CLASSPATH_RESOURCES = "copySpecClasspathResources$MAGIC";
+
   public static final String NAME_DEFAULT_WEBAPP_DIRECTORY = "defaultWebappDirectory$MAGIC";
 
   public static final String NAME_REBEL_XML_DIRECTORY = "rebelXmlDirectory$MAGIC";
@@ -562,10 +839,26 @@ public class RebelGenerateTask extends DefaultTask {
     return null;
   }
   
+  public List<File> getDefaultClassesDirectories$MAGIC() {
+    return null;
+  }
+
   public File getDefaultResourcesDirectory$MAGIC() {
     return null;
   }
   
+  public List<RebelClasspathResource> getSourceResourcesDirectories$MAGIC() {
+    return null;
+  }
+
+  public List<RebelWebResource> getWarWebResources$MAGIC() {
+    return null;
+  }
+
+  public List<RebelClasspathResource> getCopySpecClasspathResources$MAGIC() {
+    return null;
+  }
+
   public File getDefaultWebappDirectory$MAGIC() {
     return null;
   }
@@ -582,7 +875,11 @@ public class RebelGenerateTask extends DefaultTask {
    */
   public void propagateConventionMappingSettings() {
     defaultClassesDirectory = getDefaultClassesDirectory$MAGIC();
+    defaultClassesDirectories = getDefaultClassesDirectories$MAGIC();
     defaultResourcesDirectory = getDefaultResourcesDirectory$MAGIC();
+    sourceResourcesDirectories = getSourceResourcesDirectories$MAGIC();
+    warWebResources = getWarWebResources$MAGIC();
+    copySpecClasspathResources = getCopySpecClasspathResources$MAGIC();
     defaultWebappDirectory = getDefaultWebappDirectory$MAGIC();
     rebelXmlDirectory = getRebelXmlDirectory$MAGIC();
   }
@@ -0,0 +1,246 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle;
+
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import groovy.lang.Closure;
+
+import org.gradle.api.Task;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.tasks.JavaExec;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.process.JavaExecSpec;
+import org.gradle.tooling.BuildException;
+import org.zeroturnaround.jrebel.gradle.util.FileUtil;
+import org.zeroturnaround.jrebel.gradle.util.LoggerWrapper;
+
+/**
+ * JavaExec with JRebel: the agent (see RebelAgent) is added to the JVM and the directory of the rebel.xml generated
+ * by generateRebel is put on the classpath, where the agent looks for it. generateRebel is executed first.
+ *
+ * The JVM options and the classpath are written into an argument file (java @argfile, Java 9+) instead of the
+ * command line, so long classpaths cost nothing at startup. The time until the JVM first writes to its standard
+ * output (with JRebel, the agent's banner) is logged as the startup time.
+ *
+ * The JVM is launched with a copy of the task's configuration, the task itself is left as it was configured.
+ */
+public class RebelJavaExec extends JavaExec {
+
+  public static final String ARG_FILE_NAME = "jvm.args";
+
+  private LoggerWrapper log = new LoggerWrapper(getLogger());
+
+  private File agentPath;
+
+  private Map<String, Object> rebelProperties = new LinkedHashMap<String, Object>();
+
+  private Boolean useArgFile;
+
+  private long startupMillis = -1;
+
+  public RebelJavaExec() {
+    // resolved when the task graph is built: generateRebel only exists once the plugin is applied
+    dependsOn(new Callable<Object>() {
+      public Object call() {
+        Task generateRebelTask = getProject().getTasks().findByName(RebelPlugin.GENERATE_REBEL_TASK_NAME);
+        return generateRebelTask != null ? generateRebelTask : Collections.emptyList();
+      }
+    });
+  }
+
+  /**
+   * The agent, if not the one configured for the project
+   */
+  public File getAgentPath() {
+    return agentPath;
+  }
+
+  public void setAgentPath(File agentPath) {
+    this.agentPath = agentPath;
+  }
+
+  /**
+   * -Drebel.* system properties (the 'rebel.' prefix is added if missing) for the agent
+   */
+  public Map<String, Object> getRebelProperties() {
+    return rebelProperties;
+  }
+
+  public void setRebelProperties(Map<String, Object> rebelProperties) {
+    this.rebelProperties = rebelProperties;
+  }
+
+  public void rebelProperty(String name, Object value) {
+    rebelProperties.put(name, value);
+  }
+
+  /**
+   * Pass the JVM options and the classpath in an argument file; if not set, on if 'executable' is Java 9+
+   */
+  public Boolean getUseArgFile() {
+    return useArgFile;
+  }
+
+  public void setUseArgFile(Boolean useArgFile) {
+    this.useArgFile = useArgFile;
+  }
+
+  /**
+   * Milliseconds from launching the JVM until its first output, -1 if it didn't write anything (or hasn't run)
+   */
+  public long getStartupMillis() {
+    return startupMillis;
+  }
+
+  @Override
+  @TaskAction
+  public void exec() {
+    List<String> rebelJvmArgs = new ArrayList<String>();
+    rebelJvmArgs.add(RebelAgent.toJvmArg(RebelAgent.resolve(getProject(), agentPath)));
+    for (Map.Entry<String, Object> property : rebelProperties.entrySet()) {
+      String name = property.getKey().startsWith("rebel.") ? property.getKey() : "rebel." + property.getKey();
+      rebelJvmArgs.add("-D" + name + "=" + property.getValue());
+    }
+
+    FileCollection classpath = getClasspath();
+    Task generateRebelTask = getProject().getTasks().findByName(RebelPlugin.GENERATE_REBEL_TASK_NAME);
+    if (generateRebelTask instanceof RebelGenerateTask) {
+      classpath = ((RebelGenerateTask) generateRebelTask).withRebelXmlDirectory(classpath);
+    }
+
+    final List<String> jvmArgs = new ArrayList<String>(rebelJvmArgs);
+    jvmArgs.addAll(getAllJvmArgs());
+    final FileCollection execClasspath;
+    if (useArgFile != null ? useArgFile : RebelAgent.supportsArgFiles(getExecutable())) {
+      List<String> arguments = new ArrayList<String>(jvmArgs);
+      if (!classpath.isEmpty()) {
+        arguments.add("-cp");
+        arguments.add(classpath.getAsPath());
+      }
+      File argFile = new File(getTemporaryDir(), ARG_FILE_NAME);
+      writeArgFile(argFile, arguments);
+      log.info("JVM options and classpath written into \"{}\"", argFile);
+
+      jvmArgs.clear();
+      jvmArgs.add("@" + argFile.getAbsolutePath());
+      execClasspath = getProject().files();
+    }
+    else {
+      execClasspath = classpath;
+    }
+
+    final FirstOutputStream standardOutput = new FirstOutputStream(getStandardOutput());
+    long start = System.nanoTime();
+    try {
+      getProject().javaexec(new Closure<Object>(this) {
+        public Object doCall(JavaExecSpec spec) {
+          copyTo(spec);
+          spec.setAllJvmArgs(jvmArgs);
+          spec.setClasspath(execClasspath);
+          spec.setMain(getMain());
+          spec.setArgs(getArgs());
+          spec.setStandardInput(getStandardInput());
+          spec.setStandardOutput(standardOutput);
+          spec.setErrorOutput(getErrorOutput());
+          spec.setIgnoreExitValue(isIgnoreExitValue());
+          return null;
+        }
+      });
+    }
+    finally {
+      long end = System.nanoTime();
+      if (standardOutput.getFirstWriteNanos() != 0) {
+        startupMillis = (standardOutput.getFirstWriteNanos() - start) / 1000000;
+        log.lifecycle("JVM started in {} ms (until its first output), ran for {} ms", startupMillis, (end - start) / 1000000);
+      }
+    }
+  }
+
+  /**
+   * One argument per line, quoted if needed (the 'java @argfile' syntax)
+   */
+  private static void writeArgFile(File argFile, List<String> arguments) {
+    StringBuilder contents = new StringBuilder();
+    for (String argument : arguments) {
+      contents.append(quoteArgument(argument)).append(System.getProperty("line.separator"));
+    }
+    try {
+      argFile.getParentFile().mkdirs();
+      FileUtil.writeToFile(argFile, contents.toString());
+    }
+    catch (IOException e) {
+      throw new BuildException("Failed writing \"" + argFile + "\"", e);
+    }
+  }
+
+  private static String quoteArgument(String argument) {
+    boolean needsQuotes = argument.length() == 0;
+    for (int i = 0; i < argument.length() && !needsQuotes; i++) {
+      char c = argument.charAt(i);
+      needsQuotes = Character.isWhitespace(c) || c == '"' || c == '\'' || c == '#' || c == '\\';
+    }
+    if (!needsQuotes) {
+      return argument;
+    }
+    return "\"" + argument.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+  }
+
+  /**
+   * Passes everything through, noting when the first byte came
+   */
+  private static class FirstOutputStream extends FilterOutputStream {
+
+    private volatile long firstWriteNanos;
+
+    FirstOutputStream(OutputStream target) {
+      super(target);
+    }
+
+    long getFirstWriteNanos() {
+      return firstWriteNanos;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      noteWrite();
+      out.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      noteWrite();
+      out.write(b, off, len);
+    }
+
+    private void noteWrite() {
+      if (firstWriteNanos == 0) {
+        firstWriteNanos = System.nanoTime();
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,110 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.gradle.BuildAdapter;
+import org.gradle.BuildResult;
+import org.gradle.api.Project;
+import org.zeroturnaround.jrebel.gradle.util.CanonicalPathCache;
+import org.zeroturnaround.jrebel.gradle.util.FileUtil;
+import org.zeroturnaround.jrebel.gradle.util.LoggerWrapper;
+
+/**
+ * Collects the RebelGenerateMetrics of every generateRebel task executed in the build and writes them
+ * into a single report of the root project (build/reports/rebel/generateRebel-aggregate.json) once the build finishes.
+ *
+ * One instance per build, registered as an extension of the root project by the first project applying the plugin.
+ */
+public class RebelMetricsAggregator extends BuildAdapter {
+
+  public static final String EXTENSION_NAME = "rebelMetricsAggregator";
+
+  public static final String AGGREGATE_REPORT_NAME = "generateRebel-aggregate.json";
+
+  private final Project rootProject;
+
+  /**
+   * Task path -> metrics of its latest run. A build executes a task once, but builds driven by the same
+   * ProjectBuilder project (tests, benchmarks) may run it any number of times before buildFinished.
+   */
+  private final Map<String, RebelGenerateMetrics> collected = new LinkedHashMap<String, RebelGenerateMetrics>();
+
+  private RebelMetricsAggregator(Project rootProject) {
+    this.rootProject = rootProject;
+  }
+
+  /**
+   * Make sure the build has an aggregator. Safe to call from every project applying the plugin.
+   */
+  public static synchronized void register(Project project) {
+    Project rootProject = project.getRootProject();
+    if (rootProject.getExtensions().findByName(EXTENSION_NAME) == null) {
+      RebelMetricsAggregator aggregator = new RebelMetricsAggregator(rootProject);
+      rootProject.getExtensions().add(EXTENSION_NAME, aggregator);
+      project.getGradle().addBuildListener(aggregator);
+    }
+  }
+
+  /**
+   * The aggregator of the build the project belongs to, or null if there is none (or it was registered by the
+   * plugin loaded through some other class loader).
+   */
+  public static RebelMetricsAggregator find(Project project) {
+    Object aggregator = project.getRootProject().getExtensions().findByName(EXTENSION_NAME);
+    if (aggregator instanceof RebelMetricsAggregator) {
+      return (RebelMetricsAggregator) aggregator;
+    }
+    return null;
+  }
+
+  /**
+   * Tasks of different projects may be executed in parallel
+   */
+  public synchronized void add(String taskPath, RebelGenerateMetrics metrics) {
+    collected.put(taskPath, metrics);
+  }
+
+  @Override
+  public void buildFinished(BuildResult result) {
+    List<RebelGenerateMetrics> all;
+    synchronized (this) {
+      all = new ArrayList<RebelGenerateMetrics>(collected.values());
+      collected.clear();
+    }
+    if (all.isEmpty()) {
+      return;
+    }
+
+    File reportFile = new File(rootProject.getBuildDir(), "reports/rebel/" + AGGREGATE_REPORT_NAME);
+    try {
+      reportFile.getParentFile().mkdirs();
+      CanonicalPathCache pathCache = CanonicalPathCache.forRootDir(rootProject.getRootDir());
+      FileUtil.writeToFile(reportFile, RebelGenerateMetrics.toAggregateJson(all, pathCache));
+    }
+    catch (IOException e) {
+      // the build is already over, don't fail it because of a report
+      new LoggerWrapper(rootProject.getLogger()).error("Failed writing \"" + reportFile + "\": " + e.getMessage());
+    }
+  }
+
+}
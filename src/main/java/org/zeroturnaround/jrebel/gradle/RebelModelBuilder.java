@@ -0,0 +1,358 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.zeroturnaround.jrebel.gradle.model.RebelClasspath;
+import org.zeroturnaround.jrebel.gradle.model.RebelClasspathResource;
+import org.zeroturnaround.jrebel.gradle.model.RebelMainModel;
+import org.zeroturnaround.jrebel.gradle.model.RebelWar;
+import org.zeroturnaround.jrebel.gradle.model.RebelWeb;
+import org.zeroturnaround.jrebel.gradle.model.RebelWebResource;
+import org.zeroturnaround.jrebel.gradle.util.FileUtil;
+import org.zeroturnaround.jrebel.gradle.util.LoggerWrapper;
+
+/**
+ * Builds the backend model (RebelMainModel) for rebel.xml out of the plugin's configuration.
+ *
+ * The configuration is copied when the builder is created and is never modified afterwards; every call to build()
+ * creates a new model from fresh objects. So the same configuration can be built any number of times, and builders of
+ * different projects can run concurrently.
+ */
+public class RebelModelBuilder {
+
+  private final LoggerWrapper log;
+
+  private final RebelPathFixer pathFixer;
+
+  private final String packaging;
+
+  private final RebelClasspath classpath;
+
+  private final RebelWeb web;
+
+  private final RebelWar war;
+
+  private final List<File> defaultClassesDirectories;
+
+  private final File defaultResourcesDirectory;
+
+  private final List<RebelClasspathResource> sourceResourcesDirectories;
+
+  private final File defaultWebappDirectory;
+
+  private final boolean pathsOnly;
+
+  /**
+   * @param defaultClassesDirectories the compiler output directories, one &lt;dir&gt; is added for each of them
+   * @param sourceResourcesDirectories resource source directories (with their patterns) put in front of the default
+   *        resources directory, so that JRebel finds the resources there without them being processed first
+   * @param pathsOnly add the default classes and resources directories even if they don't exist (yet), i.e. build
+   *        the model from the paths alone, without having compiled anything
+   */
+  public RebelModelBuilder(LoggerWrapper log, RebelPathFixer pathFixer, String packaging, RebelClasspath classpath,
+      RebelWeb web, RebelWar war, List<File> defaultClassesDirectories, File defaultResourcesDirectory,
+      List<RebelClasspathResource> sourceResourcesDirectories, File defaultWebappDirectory, boolean pathsOnly)
+  {
+    this.log = log;
+    this.pathFixer = pathFixer;
+    this.packaging = packaging;
+    this.classpath = classpath != null ? classpath.copy() : null;
+    this.web = web != null ? web.copy() : null;
+    this.war = war != null ? war.copy() : null;
+    this.defaultClassesDirectories = defaultClassesDirectories != null
+        ? Collections.unmodifiableList(new ArrayList<File>(defaultClassesDirectories)) : Collections.<File>emptyList();
+    this.defaultResourcesDirectory = defaultResourcesDirectory;
+    List<RebelClasspathResource> sourceResources = new ArrayList<RebelClasspathResource>();
+    if (sourceResourcesDirectories != null) {
+      for (RebelClasspathResource resource : sourceResourcesDirectories) {
+        sourceResources.add(resource.copy());
+      }
+    }
+    this.sourceResourcesDirectories = Collections.unmodifiableList(sourceResources);
+    this.defaultWebappDirectory = defaultWebappDirectory;
+    this.pathsOnly = pathsOnly;
+  }
+
+  /**
+   * A new model for the configured packaging, null for an unknown packaging.
+   */
+  public RebelMainModel build() {
+    if (RebelGenerateTask.PACKAGING_TYPE_JAR.equals(packaging)) {
+      return buildModelForJar();
+    }
+    else if (RebelGenerateTask.PACKAGING_TYPE_WAR.equals(packaging)) {
+      return buildModelForWar();
+    }
+    return null;
+  }
+
+  /**
+   * Construct a builder for jar projects
+   */
+  private RebelMainModel buildModelForJar() {
+    log.info("Building rebel backend model for jar ..");
+    RebelMainModel model = new RebelMainModel();
+
+    buildClasspath(model);
+
+    log.debug("Backend model eventually built: {}", model);
+    return model;
+  }
+
+  /**
+   * Construct a builder for war projects
+   */
+  private RebelMainModel buildModelForWar() {
+    log.info("Building rebel backend model for war ..");
+    RebelMainModel model = new RebelMainModel();
+
+    buildWeb(model);
+    buildClasspath(model);
+    buildWar(model);
+
+    log.debug("Backend model eventually built: {}", model);
+    return model;
+  }
+
+  /**
+   * Compile the model that corresponds to the <classpath> node in rebel.xml.
+   */
+  private void buildClasspath(RebelMainModel model) {
+
+    // User has defined no 'classpath {}' block in the DSL configuration. Just add the default and return.
+    if (classpath == null) {
+      log.info("No custom classpath configuration found .. using the defaults");
+      buildDefaultClasspath(model, null);
+      return;
+    }
+
+    // User has provided custom 'classpath {}' configuration
+    else {
+      // Search for the default element. If we find it, we have to place it exactly into the same place where we
+      // found it (preserving the order). If we *don't* find it, we'll add the default classpath as first element.
+      boolean addDefaultAsFirst = true;
+      RebelClasspathResource defaultClasspath = null;
+
+      // Just search for the default element. Don't add anything anywhere yet.
+      for (RebelClasspathResource resource : classpath.getResources()) {
+        // we found the default.
+        if (resource.isDefaultClasspathElement()) {
+          addDefaultAsFirst = false;
+          defaultClasspath = resource;
+          break;
+        }
+      }
+
+      // Default classpath element not found. Put the default as first.
+      if (addDefaultAsFirst) {
+        // check if configuration allows adding the default
+        buildDefaultClasspath(model, defaultClasspath);
+      }
+
+      // Iterate through all classpath elements and add them.
+      for (RebelClasspathResource resource : classpath.getResources()) {
+
+        // Special treatment for the default.
+        if (resource.isDefaultClasspathElement()) {
+          buildDefaultClasspath(model, resource);
+        }
+        // An ordinary element. Add it.
+        else {
+          // TODO fix paths for other elements as well!
+          RebelClasspathResource fixed = resource.copy();
+          fixed.setDirectory(pathFixer.fixFilePath(resource.getDirectory()));
+          model.addClasspathDir(fixed);
+        }
+      }
+
+    }
+  }
+
+  /**
+   * Add the default classes directory to classpath
+   */
+  private void buildDefaultClasspath(RebelMainModel model, RebelClasspathResource defaultClasspath) {
+    // Add default resources dir to rebel.xml unless user's configuration disallows it
+    if (classpath == null || !classpath.isOmitDefaultResourcesDir()) {
+      addDefaultResourcesDirToClasspath(model);
+    }
+
+    // Add default classes dir to rebel.xml unless user's configuration disallows it
+    if (classpath == null || !classpath.isOmitDefaultClassesDir()) {
+      // one <dir> per language (Java, Groovy, Kotlin, Scala, ..) output
+      for (File defaultClassesDirectory : defaultClassesDirectories) {
+        addDefaultClassesDirToClasspath(model, defaultClassesDirectory, defaultClasspath);
+      }
+    }
+  }
+
+  /**
+   * Add the default classes directory to classpath
+   */
+  private void addDefaultClassesDirToClasspath(RebelMainModel model, File defaultClassesDirectory,
+      RebelClasspathResource defaultClasspath)
+  {
+    // project output directory
+    RebelClasspathResource classpathResource = new RebelClasspathResource();
+
+    String fixedDefaultClassesDirectory = pathFixer.fixFilePath(defaultClassesDirectory);
+    log.info("fixed default classes directory : {}", fixedDefaultClassesDirectory);
+
+    classpathResource.setDirectory(fixedDefaultClassesDirectory);
+    // XXX sure about this? what if i specified an absolute path with a placeholder in it?? this wouldn't work if i do this check!
+    if (!pathsOnly && !FileUtil.isDirectory(new File(fixedDefaultClassesDirectory))) {
+      log.info("Not adding default classes directory as it doesn't exist or is not a directory");
+      return;
+    }
+
+    if (defaultClasspath != null) {
+      RebelClasspathResource patterns = defaultClasspath.copy();
+      classpathResource.setIncludes(patterns.getIncludes());
+      classpathResource.setExcludes(patterns.getExcludes());
+    }
+
+    model.addClasspathDir(classpathResource);
+  }
+
+  /**
+   * Add the default resources directory to classpath
+   */
+  private void addDefaultResourcesDirToClasspath(RebelMainModel model) {
+    // the resource sources go first, what they don't serve (filtered files, generated resources) comes from the output
+    for (RebelClasspathResource sourceResourcesDirectory : sourceResourcesDirectories) {
+      addSourceResourcesDirToClasspath(model, sourceResourcesDirectory);
+    }
+
+    log.info("Adding default resources directory to classpath ..");
+
+    RebelClasspathResource resourcesClasspathResource = new RebelClasspathResource();
+    String fixedDefaultResourcesDir = pathFixer.fixFilePath(defaultResourcesDirectory);
+    log.info("Default resources directory after normalizing: {}", fixedDefaultResourcesDir);
+
+    resourcesClasspathResource.setDirectory(fixedDefaultResourcesDir);
+    // XXX sure about this? what if i specified an absolute path with a placeholder in it?? this wouldn't work if i do this check!
+    if (!pathsOnly && !FileUtil.isDirectory(new File(resourcesClasspathResource.getDirectory()))) {
+      log.info("Didn't add default resources directory as it doesn't exist or is not a directory!");
+      return;
+    }
+    model.addClasspathDir(resourcesClasspathResource);
+  }
+
+  /**
+   * Add a resource source directory to classpath
+   */
+  private void addSourceResourcesDirToClasspath(RebelMainModel model, RebelClasspathResource sourceResourcesDirectory) {
+    RebelClasspathResource classpathResource = sourceResourcesDirectory.copy();
+    classpathResource.setDirectory(pathFixer.fixFilePath(sourceResourcesDirectory.getDirectory()));
+    log.info("Linking resources directory {} ..", classpathResource.getDirectory());
+
+    if (!pathsOnly && !FileUtil.isDirectory(new File(classpathResource.getDirectory()))) {
+      log.info("Not linking resources directory as it doesn't exist or is not a directory");
+      return;
+    }
+    model.addClasspathDir(classpathResource);
+  }
+
+  /**
+   * Build the model for the <web> element in rebel.xml
+   */
+  private void buildWeb(RebelMainModel model) {
+
+    // User has not devfined a 'web {}' block
+    if (web == null) {
+      buildDefaultWeb(model, null);
+    }
+
+    // A 'web {}' block was defined in configuration DSL
+    else {
+
+      // Go through all elements, look up the default one
+      boolean addDefaultAsFirst = true;
+      RebelWebResource defaultWeb = null;
+
+      for (RebelWebResource resource : web.getResources()) {
+        if (resource.isDefaultElement()) {
+          defaultWeb = resource;
+          addDefaultAsFirst = false;
+          break;
+        }
+      }
+
+      // Add the default one as first, if a specific location was not specified by the empty element
+      if (addDefaultAsFirst) {
+        if (!web.getOmitDefault()) {
+          buildDefaultWeb(model, defaultWeb);
+        }
+      }
+
+      // Add all the other elements from the user's configuration
+      List<RebelWebResource> resources = web.getResources();
+      if (resources != null && resources.size() > 0) {
+        for (int i = 0; i < resources.size(); i++) {
+          RebelWebResource resource = resources.get(i);
+
+          // Add the default element
+          if (resource.isDefaultElement()) {
+            if (!web.getOmitDefault()) {
+              buildDefaultWeb(model, resource);
+            }
+          }
+          // Add a normal, non-default element
+          else {
+            RebelWebResource fixed = resource.copy();
+            fixed.setDirectory(pathFixer.fixFilePath(resource.getDirectory()));
+            model.addWebResource(fixed);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * The default for the <web> element in rebel.xml
+   */
+  private void buildDefaultWeb(RebelMainModel model, RebelWebResource defaultWeb) {
+    RebelWebResource r = new RebelWebResource();
+    r.setTarget("/");
+    r.setDirectory(pathFixer.fixFilePath(defaultWebappDirectory));
+
+    if (defaultWeb != null) {
+      RebelWebResource patterns = defaultWeb.copy();
+      r.setIncludes(patterns.getIncludes());
+      r.setExcludes(patterns.getExcludes());
+    }
+
+    model.addWebResource(r);
+  }
+
+  /**
+   * Build model for the <war> element in rebel.xml
+   */
+  private void buildWar(RebelMainModel model) {
+    if (war != null && war.getPath() != null) {
+      RebelWar fixed = new RebelWar();
+      fixed.setOriginalPath(war.getPath());
+      fixed.setPath(pathFixer.fixFilePath(war.getPath()));
+      model.setWar(fixed);
+    }
+  }
+
+}
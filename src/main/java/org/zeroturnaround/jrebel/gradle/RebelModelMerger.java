@@ -0,0 +1,143 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle;
+
+import java.util.List;
+
+import org.zeroturnaround.jrebel.gradle.model.RebelClasspathResource;
+import org.zeroturnaround.jrebel.gradle.model.RebelMainModel;
+import org.zeroturnaround.jrebel.gradle.model.RebelWar;
+import org.zeroturnaround.jrebel.gradle.model.RebelWebResource;
+
+/**
+ * Merges hand-written rebel.xml fragments into the generated model.
+ *
+ * The fragment's paths go through the same RebelPathFixer as the generated ones first (relative paths are relative to
+ * the project directory), so that they come out in the same form. Elements are then deduplicated by path: a fragment's &lt;dir&gt;, &lt;jar&gt;, &lt;jarset&gt; or &lt;dirset&gt; with
+ * the same path as a generated one replaces it in place (so the fragment can change its includes/excludes), as does a
+ * &lt;link&gt; with the same target and directory. Everything else is appended. The fragment's &lt;war&gt; and
+ * classpath fallback win over the generated ones.
+ *
+ * The fragment model is never modified nor shared with the result, so parsed fragments can be cached.
+ */
+public class RebelModelMerger {
+
+  private final RebelPathFixer pathFixer;
+
+  /**
+   * @param pathFixer the one the generated model was built with
+   */
+  public RebelModelMerger(RebelPathFixer pathFixer) {
+    this.pathFixer = pathFixer;
+  }
+
+  public void merge(RebelMainModel model, RebelMainModel fragment) {
+    for (RebelClasspathResource resource : fragment.getClasspathDirs()) {
+      RebelClasspathResource fixed = resource.copy();
+      fixed.setDirectory(fixPath(resource.getDirectory()));
+      mergeClasspath(model.getClasspathDirs(), fixed, fixed.getDirectory());
+    }
+    for (RebelClasspathResource resource : fragment.getClasspathDirsets()) {
+      RebelClasspathResource fixed = resource.copy();
+      fixed.setDirset(fixPath(resource.getDirset()));
+      mergeClasspath(model.getClasspathDirsets(), fixed, fixed.getDirset());
+    }
+    for (RebelClasspathResource resource : fragment.getClasspathJars()) {
+      RebelClasspathResource fixed = resource.copy();
+      fixed.setJar(fixPath(resource.getJar()));
+      mergeClasspath(model.getClasspathJars(), fixed, fixed.getJar());
+    }
+    for (RebelClasspathResource resource : fragment.getClasspathJarsets()) {
+      RebelClasspathResource fixed = resource.copy();
+      fixed.setJarset(fixPath(resource.getJarset()));
+      mergeClasspath(model.getClasspathJarsets(), fixed, fixed.getJarset());
+    }
+
+    for (RebelWebResource resource : fragment.getWebResources()) {
+      RebelWebResource fixed = resource.copy();
+      fixed.setDirectory(fixPath(resource.getDirectory()));
+      mergeWeb(model.getWebResources(), fixed);
+    }
+
+    if (fragment.getFallbackClasspath() != null) {
+      model.setFallbackClasspath(fragment.getFallbackClasspath());
+    }
+    if (fragment.getWar() != null && fragment.getWar().getPath() != null) {
+      RebelWar fixed = fragment.getWar().copy();
+      fixed.setOriginalPath(fragment.getWar().getPath());
+      fixed.setPath(fixPath(fragment.getWar().getPath()));
+      model.setWar(fixed);
+    }
+  }
+
+  private String fixPath(String path) {
+    return path != null ? pathFixer.fixFilePath(path) : null;
+  }
+
+  private void mergeClasspath(List<RebelClasspathResource> resources, RebelClasspathResource merged, String path) {
+    for (int i = 0; i < resources.size(); i++) {
+      RebelClasspathResource resource = resources.get(i);
+      if (path != null && samePath(path, pathOf(resource))) {
+        resources.set(i, merged);
+        return;
+      }
+    }
+    resources.add(merged);
+  }
+
+  private void mergeWeb(List<RebelWebResource> resources, RebelWebResource merged) {
+    for (int i = 0; i < resources.size(); i++) {
+      RebelWebResource resource = resources.get(i);
+      if (samePath(merged.getDirectory(), resource.getDirectory()) && samePath(merged.getTarget(), resource.getTarget())) {
+        resources.set(i, merged);
+        return;
+      }
+    }
+    resources.add(merged);
+  }
+
+  private static String pathOf(RebelClasspathResource resource) {
+    if (resource.getDirectory() != null) {
+      return resource.getDirectory();
+    }
+    if (resource.getDirset() != null) {
+      return resource.getDirset();
+    }
+    if (resource.getJar() != null) {
+      return resource.getJar();
+    }
+    return resource.getJarset();
+  }
+
+  /**
+   * Generated paths always use forward slashes, hand-written ones may not; a trailing slash doesn't matter either.
+   */
+  private static boolean samePath(String a, String b) {
+    if (a == null || b == null) {
+      return a == b;
+    }
+    return normalize(a).equals(normalize(b));
+  }
+
+  private static String normalize(String path) {
+    String normalized = path.replace('\\', '/');
+    while (normalized.length() > 1 && normalized.endsWith("/")) {
+      normalized = normalized.substring(0, normalized.length() - 1);
+    }
+    return normalized;
+  }
+
+}
@@ -0,0 +1,223 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.gradle.api.GradleException;
+import org.zeroturnaround.jrebel.gradle.model.RebelClasspathResource;
+import org.zeroturnaround.jrebel.gradle.model.RebelMainModel;
+import org.zeroturnaround.jrebel.gradle.model.RebelResource;
+import org.zeroturnaround.jrebel.gradle.model.RebelWebResource;
+import org.zeroturnaround.jrebel.gradle.util.FileOperationCounter;
+import org.zeroturnaround.jrebel.gradle.util.FileUtil;
+import org.zeroturnaround.jrebel.gradle.util.PatternUtil;
+
+/**
+ * Estimates how much JRebel has to monitor for a given model: walks every root of the generated rebel.xml
+ * (in parallel, one root per worker) with the include/exclude patterns applied and counts files and bytes.
+ * The workers count their file system calls into the FileUtil counter of the calling thread.
+ */
+public class RebelMonitoredFilesEstimator {
+
+  private final int threads;
+
+  public RebelMonitoredFilesEstimator() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  public RebelMonitoredFilesEstimator(int threads) {
+    this.threads = Math.max(1, threads);
+  }
+
+  public RebelMonitoredFilesReport estimate(RebelMainModel model) {
+    List<Callable<RebelMonitoredFilesReport.Entry>> walkers = new ArrayList<Callable<RebelMonitoredFilesReport.Entry>>();
+    FileOperationCounter counter = FileUtil.getCounter();
+
+    for (RebelClasspathResource resource : model.getClasspathDirs()) {
+      walkers.add(new TreeWalker("dir", resource.getDirectory(), resource, false, counter));
+    }
+    for (RebelClasspathResource resource : model.getClasspathDirsets()) {
+      walkers.add(new TreeWalker("dirset", resource.getDirset(), resource, false, counter));
+    }
+    for (RebelClasspathResource resource : model.getClasspathJarsets()) {
+      walkers.add(new TreeWalker("jarset", resource.getJarset(), resource, true, counter));
+    }
+    for (RebelClasspathResource resource : model.getClasspathJars()) {
+      walkers.add(new JarWalker(resource.getJar(), counter));
+    }
+    for (RebelWebResource resource : model.getWebResources()) {
+      walkers.add(new TreeWalker("link " + resource.getTarget(), resource.getDirectory(), resource, false,
+          counter));
+    }
+
+    RebelMonitoredFilesReport report = new RebelMonitoredFilesReport();
+    if (walkers.isEmpty()) {
+      return report;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, walkers.size()));
+    try {
+      List<Future<RebelMonitoredFilesReport.Entry>> results = executor.invokeAll(walkers);
+      // futures come back in submission order, so the report follows the order of rebel.xml
+      for (Future<RebelMonitoredFilesReport.Entry> result : results) {
+        report.addEntry(result.get());
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new GradleException("Interrupted while estimating monitored files", e);
+    }
+    catch (ExecutionException e) {
+      throw new GradleException("Failed estimating monitored files", e.getCause());
+    }
+    finally {
+      executor.shutdownNow();
+    }
+    return report;
+  }
+
+  /**
+   * Walks a directory tree, counting the files that pass the resource's include/exclude patterns.
+   * For a &lt;jarset&gt; only the jar files directly in the directory are taken into account.
+   *
+   * Symlinked directories are followed, as JRebel follows them too, but every directory (by its canonical path) is
+   * walked only once, so a link back to an ancestor doesn't send the walk into a loop.
+   */
+  private static class TreeWalker implements Callable<RebelMonitoredFilesReport.Entry> {
+
+    private final String kind;
+
+    private final String path;
+
+    private final RebelResource resource;
+
+    private final boolean jarsOnly;
+
+    private long files;
+
+    private long bytes;
+
+    private final Set<String> visitedDirs = new HashSet<String>();
+
+    private final FileOperationCounter counter;
+
+    TreeWalker(String kind, String path, RebelResource resource, boolean jarsOnly, FileOperationCounter counter) {
+      this.kind = kind;
+      this.path = path;
+      this.resource = resource;
+      this.jarsOnly = jarsOnly;
+      this.counter = counter;
+    }
+
+    public RebelMonitoredFilesReport.Entry call() {
+      FileUtil.setCounter(counter);
+      try {
+        return walkRoot();
+      }
+      finally {
+        FileUtil.setCounter(null);
+      }
+    }
+
+    private RebelMonitoredFilesReport.Entry walkRoot() {
+      File root = path == null ? null : new File(path);
+      if (root == null || !FileUtil.isDirectory(root)) {
+        return new RebelMonitoredFilesReport.Entry(kind, path, 0, 0, true);
+      }
+
+      if (jarsOnly) {
+        File[] children = root.listFiles();
+        if (children != null) {
+          for (File child : children) {
+            if (FileUtil.isFile(child) && child.getName().endsWith(".jar")) {
+              count(child, child.getName());
+            }
+          }
+        }
+      }
+      else {
+        walk(root, "");
+      }
+      return new RebelMonitoredFilesReport.Entry(kind, path, files, bytes, false);
+    }
+
+    private void walk(File dir, String relativeDir) {
+      if (!FileUtil.markVisited(visitedDirs, dir)) {
+        return;
+      }
+      File[] children = dir.listFiles();
+      if (children == null) {
+        return;
+      }
+      for (File child : children) {
+        String relativePath = relativeDir + child.getName();
+        if (FileUtil.isDirectory(child)) {
+          walk(child, relativePath + "/");
+        }
+        else {
+          count(child, relativePath);
+        }
+      }
+    }
+
+    private void count(File file, String relativePath) {
+      if (PatternUtil.isIncluded(relativePath, resource.getIncludes(), resource.getExcludes())) {
+        files++;
+        bytes += FileUtil.length(file);
+      }
+    }
+  }
+
+  /**
+   * A single &lt;jar&gt; entry is just one file.
+   */
+  private static class JarWalker implements Callable<RebelMonitoredFilesReport.Entry> {
+
+    private final String path;
+
+    private final FileOperationCounter counter;
+
+    JarWalker(String path, FileOperationCounter counter) {
+      this.path = path;
+      this.counter = counter;
+    }
+
+    public RebelMonitoredFilesReport.Entry call() {
+      FileUtil.setCounter(counter);
+      try {
+        File jar = path == null ? null : new File(path);
+        if (jar == null || !FileUtil.isFile(jar)) {
+          return new RebelMonitoredFilesReport.Entry("jar", path, 0, 0, true);
+        }
+        return new RebelMonitoredFilesReport.Entry("jar", path, 1, FileUtil.length(jar), false);
+      }
+      finally {
+        FileUtil.setCounter(null);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,118 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Result of RebelMonitoredFilesEstimator -- how many files (and bytes) each root in rebel.xml makes JRebel watch.
+ */
+public class RebelMonitoredFilesReport {
+
+  /**
+   * One monitored root, i.e. a single &lt;dir&gt;, &lt;dirset&gt;, &lt;jar&gt;, &lt;jarset&gt; or &lt;link&gt; entry.
+   */
+  public static class Entry {
+
+    private final String kind;
+
+    private final String path;
+
+    private final long files;
+
+    private final long bytes;
+
+    private final boolean missing;
+
+    public Entry(String kind, String path, long files, long bytes, boolean missing) {
+      this.kind = kind;
+      this.path = path;
+      this.files = files;
+      this.bytes = bytes;
+      this.missing = missing;
+    }
+
+    public String getKind() {
+      return kind;
+    }
+
+    public String getPath() {
+      return path;
+    }
+
+    public long getFiles() {
+      return files;
+    }
+
+    public long getBytes() {
+      return bytes;
+    }
+
+    /**
+     * The root doesn't exist at the moment (or contains a placeholder like ${my-workspace}), so it wasn't counted.
+     */
+    public boolean isMissing() {
+      return missing;
+    }
+  }
+
+  private final List<Entry> entries = new ArrayList<Entry>();
+
+  public void addEntry(Entry entry) {
+    entries.add(entry);
+  }
+
+  public List<Entry> getEntries() {
+    return entries;
+  }
+
+  public long getTotalFiles() {
+    long total = 0;
+    for (Entry entry : entries) {
+      total += entry.getFiles();
+    }
+    return total;
+  }
+
+  public long getTotalBytes() {
+    long total = 0;
+    for (Entry entry : entries) {
+      total += entry.getBytes();
+    }
+    return total;
+  }
+
+  /**
+   * Human readable per-entry summary, one line per monitored root.
+   */
+  public String toSummaryString() {
+    StringBuilder sb = new StringBuilder();
+    for (Entry entry : entries) {
+      sb.append(entry.getKind()).append('\t');
+      if (entry.isMissing()) {
+        sb.append("(missing)");
+      }
+      else {
+        sb.append(entry.getFiles()).append(" files\t").append(entry.getBytes()).append(" bytes");
+      }
+      sb.append('\t').append(entry.getPath()).append('\n');
+    }
+    sb.append("total\t").append(getTotalFiles()).append(" files\t").append(getTotalBytes()).append(" bytes\n");
+    return sb.toString();
+  }
+
+}
@@ -0,0 +1,103 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle;
+
+import java.io.File;
+
+import org.apache.commons.lang.StringUtils;
+import org.zeroturnaround.jrebel.gradle.util.FileUtil;
+
+/**
+ * Turns the paths of the model into the form they are written into rebel.xml: absolute and normalized, or relative
+ * to the configured root path (which may be a placeholder like ${myproject.root}).
+ *
+ * Immutable, so it can be shared by model builders running concurrently.
+ */
+public class RebelPathFixer {
+
+  private final File projectDir;
+
+  private final String rootPath;
+
+  private final File relativePath;
+
+  /**
+   * @param projectDir the project's directory
+   * @param rootPath the configured 'rootPath', null for the project directory
+   * @param relativePath the configured 'relativePath', null for the project directory
+   */
+  public RebelPathFixer(File projectDir, String rootPath, File relativePath) {
+    this.projectDir = projectDir;
+    this.rootPath = rootPath != null ? rootPath : projectDir.getAbsolutePath();
+    this.relativePath = new File(projectDir, relativePath != null ? relativePath.getAbsolutePath() : ".");
+  }
+
+  public String fixFilePath(String path) {
+    return fixFilePath(new File(path));
+  }
+
+  /**
+   * Get the absolute, normalized path.
+   */
+  public String fixFilePath(File file) {
+    RebelGenerateMetrics metrics = RebelGenerateMetrics.current();
+    long phaseStart = System.nanoTime();
+    try {
+      return fixFilePathImpl(file);
+    }
+    finally {
+      if (metrics != null) {
+        metrics.endPhase(RebelGenerateMetrics.PHASE_PATH_FIXING, phaseStart);
+      }
+    }
+  }
+
+  private String fixFilePathImpl(File file) {
+    if (file.isAbsolute() && !FileUtil.isRelativeToPath(relativePath, file)) {
+      return StringUtils.replace(FileUtil.getCanonicalPath(file), "\\", "/");
+    }
+
+    if (!file.isAbsolute()) {
+      file = new File(projectDir, file.getPath());
+    }
+
+    String relative = FileUtil.getRelativePath(relativePath, file);
+
+    if (!(new File(relative)).isAbsolute()) {
+      return StringUtils.replace(rootPath, "\\", "/") + "/" + relative;
+    }
+
+    // relative path was outside baseDir
+
+    // if root path is absolute then try to get a path relative to root
+    if ((new File(rootPath)).isAbsolute()) {
+      String s = FileUtil.getRelativePath(new File(rootPath), file);
+
+      if (!(new File(s)).isAbsolute()) {
+        return StringUtils.replace(rootPath, "\\", "/") + "/" + s;
+      }
+      else {
+        // root path and the calculated path are absolute, so
+        // just return calculated path
+        return s;
+      }
+    }
+
+    // return absolute path to file
+    return StringUtils.replace(file.getAbsolutePath(), "\\", "/");
+  }
+
+}
@@ -17,23 +17,56 @@ package org.zeroturnaround.jrebel.gradle;
 
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
+import org.gradle.api.Task;
+import org.gradle.api.plugins.ApplicationPlugin;
+import org.gradle.api.plugins.ApplicationPluginConvention;
 import org.gradle.api.plugins.JavaPlugin;
 import org.gradle.api.plugins.JavaPluginConvention;
 import org.gradle.api.plugins.WarPlugin;
 import org.gradle.api.plugins.WarPluginConvention;
 import org.gradle.api.Action;
 import org.gradle.api.internal.IConventionAware;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.file.FileTree;
+import org.gradle.api.file.SourceDirectorySet;
+import org.gradle.api.specs.Spec;
+import org.gradle.api.tasks.AbstractCopyTask;
+import org.gradle.api.tasks.SourceSet;
+import org.gradle.api.tasks.SourceSetOutput;
+import org.gradle.api.tasks.bundling.War;
+import org.gradle.api.tasks.compile.AbstractCompile;
+import org.gradle.api.tasks.testing.Test;
+import org.gradle.tooling.provider.model.ToolingModelBuilderRegistry;
 import org.zeroturnaround.jrebel.gradle.dsl.RebelDslClasspath;
 import org.zeroturnaround.jrebel.gradle.dsl.RebelDslMain;
 import org.zeroturnaround.jrebel.gradle.dsl.RebelDslWar;
 import org.zeroturnaround.jrebel.gradle.dsl.RebelDslWeb;
+import org.zeroturnaround.jrebel.gradle.model.RebelClasspath;
+import org.zeroturnaround.jrebel.gradle.model.RebelClasspathResource;
+import org.zeroturnaround.jrebel.gradle.model.RebelResource;
+import org.zeroturnaround.jrebel.gradle.model.RebelWar;
+import org.zeroturnaround.jrebel.gradle.model.RebelWeb;
+import org.zeroturnaround.jrebel.gradle.model.RebelWebResource;
+import org.zeroturnaround.jrebel.gradle.tooling.RebelToolingModelBuilder;
 import org.zeroturnaround.jrebel.gradle.util.BooleanUtil;
+import org.zeroturnaround.jrebel.gradle.util.CopySpecUtil;
 import org.zeroturnaround.jrebel.gradle.util.LoggerWrapper;
 
 import java.io.File;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
 
+import javax.inject.Inject;
+
 /**
  * The main entry-point for the JRebel Gradle plugin.
  * 
@@ -47,14 +80,92 @@ public class RebelPlugin implements Plugin<Project> {
   public static final String GENERATE_REBEL_TASK_NAME = "generateRebel";
   
   public static final String REBEL_EXTENSION_NAME = "rebel";
+
+  /**
+   * Where the hand-written rebel.xml fragments are looked up in merge mode, relative to the project directory
+   */
+  public static final String DEFAULT_FRAGMENTS_DIRECTORY = "src/main/rebel";
+
+  /**
+   * Where rebel.xml goes with 'useGeneratedResourcesDirectory', relative to the build directory
+   */
+  public static final String GENERATED_REBEL_XML_DIRECTORY = "generated/rebel";
+
+  /**
+   * The task staging the war's contents for war { exploded = true }
+   */
+  public static final String EXPLODED_WAR_TASK_NAME = "explodedRebelWar";
+
+  /**
+   * Where the war's contents are staged, relative to the build directory
+   */
+  public static final String EXPLODED_WAR_DIRECTORY = "rebel/exploded-war";
+
+  /**
+   * The task writing the content hashes of the rebel.xml directories and what changed since its previous run
+   */
+  public static final String DELTA_MANIFEST_TASK_NAME = "rebelDeltaManifest";
+
+  /**
+   * Where the delta manifests go, relative to the build directory
+   */
+  public static final String DELTA_MANIFEST_DIRECTORY = "rebel/delta";
+
+  /**
+   * The task listing the class files changed by a compilation, with 'listChangedClasses'
+   */
+  public static final String CHANGED_CLASSES_TASK_NAME = "rebelChangedClasses";
+
+  /**
+   * The main source set's languages whose compile tasks are followed by rebelChangedClasses
+   */
+  private static final String[] COMPILED_LANGUAGES = { "java", "groovy", "scala", "kotlin" };
+
+  /**
+   * The task publishing the staged Java classes into the classes directory, with 'publishClassesInBatches'
+   */
+  public static final String PUBLISH_CLASSES_TASK_NAME = "publishRebelClasses";
+
+  /**
+   * Where compileJava writes to with 'publishClassesInBatches', relative to the build directory
+   */
+  public static final String STAGED_CLASSES_DIRECTORY = "rebel/staged-classes";
+
+  /**
+   * The list of changed class files written by rebelChangedClasses, relative to the build directory
+   */
+  public static final String CHANGED_CLASSES_FILE = "rebel/" + RebelChangedClassesTask.CHANGED_CLASSES_FILE_NAME;
+
+  /**
+   * The JRebel-enabled counterpart of the application plugin's 'run'
+   */
+  public static final String RUN_WITH_REBEL_TASK_NAME = "runWithRebel";
+
+  /**
+   * The tasks of the Jetty plugin, which run Jetty inside the Gradle JVM
+   */
+  private static final String[] JETTY_TASK_NAMES = { "jettyRun", "jettyRunWar" };
   
   private LoggerWrapper log; 
 
+  private final ToolingModelBuilderRegistry toolingModelBuilderRegistry;
+
+  @Inject
+  public RebelPlugin(ToolingModelBuilderRegistry toolingModelBuilderRegistry) {
+    this.toolingModelBuilderRegistry = toolingModelBuilderRegistry;
+  }
+
   public void apply(final Project project) {
     log = new LoggerWrapper(project.getLogger());
     
     // register the Rebel task
     project.getTasks().create(GENERATE_REBEL_TASK_NAME, RebelGenerateTask.class);
+
+    // IDEs can ask for the resolved models (RebelToolingModel) without running generateRebel
+    RebelToolingModelBuilder.register(project, toolingModelBuilderRegistry);
+    
+    // the root project collects the generateRebel metrics of all the projects into one report
+    RebelMetricsAggregator.register(project);
     
     // only configure the real one if JavaPlugin gets enabled (it is pulled in by Groovy, Scala, War, ...)
     project.getLogger().info("Registering deferred Rebel plugin configuration...");
@@ -90,9 +201,15 @@ public class RebelPlugin implements Plugin<Project> {
 
     configureWarPluginSettings(project, generateRebelTask, conventionAwareRebelTask, rebelExtension);
 
+    configureApplicationPluginSettings(project);
+
+    configureDeltaManifestTask(project, generateRebelTask);
+
     configureDefaultClassesDirectory(project, conventionAwareRebelTask);
     
-    configureDefaultResourcesDirectory(project, conventionAwareRebelTask);
+    configureDefaultResourcesDirectory(project, conventionAwareRebelTask, rebelExtension);
+
+    configureCopySpecClasspathResources(project, conventionAwareRebelTask, rebelExtension);
     
     configureProjectAfterEvaluate(project, generateRebelTask, rebelExtension);
     
@@ -111,9 +228,12 @@ public class RebelPlugin implements Plugin<Project> {
         if (rebelExtension.getRebelXmlDirectory() != null) {
           return new File(rebelExtension.getRebelXmlDirectory());
         }
+        else if (isUsingGeneratedResourcesDirectory(rebelExtension)) {
+          return new File(project.getBuildDir(), GENERATED_REBEL_XML_DIRECTORY);
+        }
         else {
-          JavaPluginConvention javaConvention = project.getConvention().getPlugin(JavaPluginConvention.class);
-          return javaConvention.getSourceSets().getByName("main").getOutput().getClassesDir();
+          List<File> classesDirs = getMainClassesDirs(project);
+          return classesDirs.isEmpty() ? null : classesDirs.get(0);
         }
       }
     });
@@ -130,6 +250,15 @@ public class RebelPlugin implements Plugin<Project> {
       public void execute(Plugin p) {
         generateRebelTask.setPackaging(RebelGenerateTask.PACKAGING_TYPE_WAR);
 
+        RebelExplodeWarTask explodeWarTask = project.getTasks().create(EXPLODED_WAR_TASK_NAME, RebelExplodeWarTask.class);
+        explodeWarTask.setDescription("Stages the contents of the war into a directory for the JRebel <war dir>.");
+        explodeWarTask.into(new Callable<Object>() {
+          public Object call() {
+            return new File(project.getBuildDir(), EXPLODED_WAR_DIRECTORY);
+          }
+        });
+        explodeWarTask.setWar((War) project.getTasks().getByName(WarPlugin.WAR_TASK_NAME));
+
         // Propagate 'defaultWebappDirectory'
         conventionAwareRebelTask.getConventionMapping().map(RebelGenerateTask.NAME_DEFAULT_WEBAPP_DIRECTORY, new Callable<Object>() {
           public Object call() throws Exception { 
@@ -142,31 +271,211 @@ public class RebelPlugin implements Plugin<Project> {
             }
           }
         });
+
+        // Propagate 'warWebResources'
+        conventionAwareRebelTask.getConventionMapping().map(RebelGenerateTask.NAME_WAR_WEB_RESOURCES, new Callable<Object>() {
+          public Object call() {
+            if (!BooleanUtil.convertNullToFalse(rebelExtension.getDeriveWebFromWar())) {
+              return null;
+            }
+            return getWarWebResources(project);
+          }
+        });
       }
     });
   }
+
+  /**
+   * A <link> for every directory the war task puts into the war, except for the web application directory (the
+   * default <link>) and the classpath (WEB-INF/classes and WEB-INF/lib, which is what <classpath> is for). Specs that
+   * filter or rename files are left out, their files only exist in the war.
+   */
+  private List<RebelWebResource> getWarWebResources(Project project) {
+    List<RebelWebResource> webResources = new ArrayList<RebelWebResource>();
+    Task war = project.getTasks().findByName(WarPlugin.WAR_TASK_NAME);
+    if (war == null) {
+      return webResources;
+    }
+    File webAppDir = project.getConvention().getPlugin(WarPluginConvention.class).getWebAppDir();
+
+    for (CopySpecUtil.SourceMapping mapping : CopySpecUtil.getSourceMappings(war)) {
+      String destinationPath = mapping.getDestinationPath();
+      if (isWarClasspath(destinationPath) || mapping.getSourcePath() instanceof FileTree) {
+        continue;
+      }
+      for (File directory : project.files(mapping.getSourcePath()).getFiles()) {
+        if (!directory.isDirectory() || (destinationPath.length() == 0 && directory.equals(webAppDir))) {
+          continue;
+        }
+        RebelWebResource webResource = new RebelWebResource();
+        webResource.setTarget(destinationPath.length() == 0 ? "/" : "/" + destinationPath + "/");
+        webResource.setDirectory(directory.getAbsolutePath());
+        if (!mapping.getIncludes().isEmpty()) {
+          webResource.setIncludes(new ArrayList<String>(mapping.getIncludes()));
+        }
+        if (!mapping.getExcludes().isEmpty()) {
+          webResource.setExcludes(new ArrayList<String>(mapping.getExcludes()));
+        }
+        webResources.add(webResource);
+      }
+    }
+    return webResources;
+  }
+
+  private static boolean isWarClasspath(String destinationPath) {
+    return destinationPath.equals("WEB-INF/classes") || destinationPath.startsWith("WEB-INF/classes/")
+        || destinationPath.equals("WEB-INF/lib") || destinationPath.startsWith("WEB-INF/lib/");
+  }
   
   /**
-   * Propagate 'defaultClassesDirectory'
+   * Add 'rebelDeltaManifest' for syncing the rebel.xml directories to a remote server
+   */
+  private void configureDeltaManifestTask(final Project project, RebelGenerateTask generateRebelTask) {
+    RebelDeltaManifestTask deltaManifestTask = project.getTasks().create(DELTA_MANIFEST_TASK_NAME, RebelDeltaManifestTask.class);
+    deltaManifestTask.setDescription("Lists the files in the rebel.xml directories changed since the previous run.");
+    deltaManifestTask.setGenerateRebelTask(generateRebelTask);
+    deltaManifestTask.setOutputDirectory(new Callable<Object>() {
+      public Object call() {
+        return new File(project.getBuildDir(), DELTA_MANIFEST_DIRECTORY);
+      }
+    });
+  }
+
+  /**
+   * Add 'runWithRebel' if the ApplicationPlugin has been enabled
+   */
+  private void configureApplicationPluginSettings(final Project project) {
+    project.getPlugins().withType(ApplicationPlugin.class).all(new Action<Plugin>() {
+      public void execute(Plugin p) {
+        RebelJavaExec runWithRebel = project.getTasks().create(RUN_WITH_REBEL_TASK_NAME, RebelJavaExec.class);
+        runWithRebel.setDescription("Runs this project as a JVM application with JRebel.");
+        runWithRebel.setGroup(ApplicationPlugin.APPLICATION_GROUP);
+
+        JavaPluginConvention javaConvention = project.getConvention().getPlugin(JavaPluginConvention.class);
+        runWithRebel.setClasspath(javaConvention.getSourceSets().getByName(SourceSet.MAIN_SOURCE_SET_NAME).getRuntimeClasspath());
+
+        // the same way as 'run' gets it
+        ((IConventionAware) runWithRebel).getConventionMapping().map("main", new Callable<Object>() {
+          public Object call() {
+            return project.getConvention().getPlugin(ApplicationPluginConvention.class).getMainClassName();
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * Jetty runs inside the Gradle JVM, so all that can be done for it is having rebel.xml generated before it starts
+   * and telling if the Gradle JVM has no agent. Only done once an agent is configured.
+   */
+  private void configureJettyTasks(final Project project, final RebelGenerateTask generateRebelTask) {
+    if (RebelAgent.findConfigured(project) == null) {
+      return;
+    }
+    for (String jettyTaskName : JETTY_TASK_NAMES) {
+      Task jettyTask = project.getTasks().findByName(jettyTaskName);
+      if (jettyTask == null) {
+        continue;
+      }
+      jettyTask.dependsOn(generateRebelTask);
+      jettyTask.doFirst(new Action<Task>() {
+        public void execute(Task task) {
+          if (!RebelAgent.isLoadedInCurrentJvm()) {
+            log.warn(task.getPath() + " runs Jetty inside the Gradle JVM, which has no JRebel agent: add "
+                + RebelAgent.toJvmArg(RebelAgent.resolve(project, null)) + " to org.gradle.jvmargs in gradle.properties");
+          }
+        }
+      });
+    }
+  }
+
+  /**
+   * 'testWithRebel': the Test tasks execute generateRebel first and their test JVMs get the agent and rebel.xml.
+   * Both are set when the project has been evaluated, so they are inputs of the Test tasks; the classpath is resolved
+   * lazily. A missing agent only fails the build when tests are actually run.
+   */
+  private void configureTestTasks(final Project project, final RebelGenerateTask generateRebelTask) {
+    final File agent = RebelAgent.findConfigured(project);
+    project.getTasks().withType(Test.class).all(new Action<Test>() {
+      public void execute(Test test) {
+        test.dependsOn(generateRebelTask);
+        if (agent != null) {
+          test.jvmArgs(RebelAgent.toJvmArg(agent));
+        }
+        final FileCollection classpath = test.getClasspath();
+        test.setClasspath(project.files(new Callable<Object>() {
+          public Object call() {
+            return generateRebelTask.withRebelXmlDirectory(classpath);
+          }
+        }));
+        test.doFirst(new Action<Task>() {
+          public void execute(Task task) {
+            RebelAgent.resolve(project, null);
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * Propagate 'defaultClassesDirectory' and 'defaultClassesDirectories'
    */
   private void configureDefaultClassesDirectory(final Project project, final IConventionAware conventionAwareRebelTask) {
     conventionAwareRebelTask.getConventionMapping().map(RebelGenerateTask.NAME_DEFAULT_CLASSES_DIRECTORY, new Callable<Object>() {
       public Object call() {
         try {
-          JavaPluginConvention javaConvention = project.getConvention().getPlugin(JavaPluginConvention.class);
-          return javaConvention.getSourceSets().getByName("main").getOutput().getClassesDir();
+          List<File> classesDirs = getMainClassesDirs(project);
+          return classesDirs.isEmpty() ? null : classesDirs.get(0);
         }
         catch (Exception e) {
           return null;
         }
       }
     });
+
+    conventionAwareRebelTask.getConventionMapping().map(RebelGenerateTask.NAME_DEFAULT_CLASSES_DIRECTORIES, new Callable<Object>() {
+      public Object call() {
+        try {
+          return getMainClassesDirs(project);
+        }
+        catch (Exception e) {
+          return null;
+        }
+      }
+    });
+  }
+
+  /**
+   * The classes directories of the main source set. Gradle 4+ compiles every language into its own directory
+   * (SourceSetOutput#getClassesDirs), older versions have a single one shared by all (SourceSetOutput#getClassesDir).
+   * Resolved lazily, when the task asks for it, so directories of languages added later are not missed.
+   */
+  private static List<File> getMainClassesDirs(Project project) throws Exception {
+    JavaPluginConvention javaConvention = project.getConvention().getPlugin(JavaPluginConvention.class);
+    SourceSetOutput output = javaConvention.getSourceSets().getByName(SourceSet.MAIN_SOURCE_SET_NAME).getOutput();
+
+    Method getClassesDirs = null;
+    try {
+      getClassesDirs = output.getClass().getMethod("getClassesDirs");
+    }
+    catch (NoSuchMethodException e) {
+      // older Gradle
+    }
+
+    if (getClassesDirs != null) {
+      FileCollection classesDirs = (FileCollection) getClassesDirs.invoke(output);
+      return new ArrayList<File>(classesDirs.getFiles());
+    }
+    File classesDir = output.getClassesDir();
+    return classesDir != null ? Collections.singletonList(classesDir) : Collections.<File>emptyList();
   }
 
   /**
-   * Propagate 'defaultResourcesDirectory'
+   * Propagate 'defaultResourcesDirectory' and, with 'linkSourceResources', 'sourceResourcesDirectories'
    */
-  private void configureDefaultResourcesDirectory(final Project project, final IConventionAware conventionAwareRebelTask) {
+  private void configureDefaultResourcesDirectory(final Project project, final IConventionAware conventionAwareRebelTask,
+      final RebelDslMain rebelExtension)
+  {
     conventionAwareRebelTask.getConventionMapping().map(RebelGenerateTask.NAME_DEFAULT_RESOURCES_DIRECTORY, new Callable<Object>() {
       public Object call() {
         try {
@@ -178,6 +487,152 @@ public class RebelPlugin implements Plugin<Project> {
         }
       }
     });
+
+    conventionAwareRebelTask.getConventionMapping().map(RebelGenerateTask.NAME_SOURCE_RESOURCES_DIRECTORIES, new Callable<Object>() {
+      public Object call() throws Exception {
+        List<RebelClasspathResource> sourceResourcesDirectories = new ArrayList<RebelClasspathResource>();
+        // processResources copies its extra directories after the source set's resources, the later ones win
+        if (BooleanUtil.convertNullToFalse(rebelExtension.getDeriveClasspathFromCopySpecs())) {
+          JavaPluginConvention javaConvention = project.getConvention().getPlugin(JavaPluginConvention.class);
+          SourceSet main = javaConvention.getSourceSets().getByName(SourceSet.MAIN_SOURCE_SET_NAME);
+          sourceResourcesDirectories.addAll(getCopySpecClasspathResources(project, main.getProcessResourcesTaskName()));
+        }
+        if (BooleanUtil.convertNullToFalse(rebelExtension.getLinkSourceResources())) {
+          List<RebelClasspathResource> linked = getSourceResourcesDirectories(project, rebelExtension);
+          if (linked != null) {
+            sourceResourcesDirectories.addAll(linked);
+          }
+        }
+        return sourceResourcesDirectories.isEmpty() ? null : sourceResourcesDirectories;
+      }
+    });
+  }
+
+  /**
+   * The resource source directories of the main source set, to be put in front of the processed resources so that
+   * JRebel picks up resource changes without processResources being run.
+   *
+   * Files processResources filters or expands have to come from its output. Those can be listed in
+   * 'filteredResources' and are excluded here; without such a list, any filtering (or renaming) configured on
+   * processResources means nothing is linked.
+   */
+  private List<RebelClasspathResource> getSourceResourcesDirectories(Project project, RebelDslMain rebelExtension) {
+    JavaPluginConvention javaConvention = project.getConvention().getPlugin(JavaPluginConvention.class);
+    SourceSet main = javaConvention.getSourceSets().getByName(SourceSet.MAIN_SOURCE_SET_NAME);
+
+    Task processResources = project.getTasks().findByName(main.getProcessResourcesTaskName());
+    if (!(processResources instanceof AbstractCopyTask)) {
+      log.info("Not linking resource source directories: {} is not a copy task", main.getProcessResourcesTaskName());
+      return null;
+    }
+
+    List<String> filteredResources = rebelExtension.getFilteredResources();
+    boolean filteredResourcesListed = filteredResources != null && !filteredResources.isEmpty();
+    if (!filteredResourcesListed && CopySpecUtil.mayTransformFiles(processResources)) {
+      log.info("Not linking resource source directories: {} filters, expands or renames files, list those in 'filteredResources'",
+          processResources.getPath());
+      return null;
+    }
+
+    // what the source set or processResources leave out must not be served from the sources either
+    AbstractCopyTask processResourcesCopy = (AbstractCopyTask) processResources;
+    SourceDirectorySet resources = main.getResources();
+    if (!resources.getIncludes().isEmpty() && !processResourcesCopy.getIncludes().isEmpty()) {
+      // a file has to match both, rebel.xml includes match either
+      log.info("Not linking resource source directories: both the source set and {} have includes", processResources.getPath());
+      return null;
+    }
+    List<String> includes = new ArrayList<String>(resources.getIncludes());
+    includes.addAll(processResourcesCopy.getIncludes());
+    List<String> excludes = new ArrayList<String>(resources.getExcludes());
+    excludes.addAll(processResourcesCopy.getExcludes());
+    if (filteredResourcesListed) {
+      excludes.addAll(filteredResources);
+    }
+
+    List<RebelClasspathResource> sourceResourcesDirectories = new ArrayList<RebelClasspathResource>();
+    for (File srcDir : resources.getSrcDirs()) {
+      RebelClasspathResource resource = new RebelClasspathResource();
+      resource.setDirectory(srcDir.getAbsolutePath());
+      if (!includes.isEmpty()) {
+        resource.setIncludes(new ArrayList<String>(includes));
+      }
+      if (!excludes.isEmpty()) {
+        resource.setExcludes(new ArrayList<String>(excludes));
+      }
+      sourceResourcesDirectories.add(resource);
+    }
+    return sourceResourcesDirectories;
+  }
+
+  /**
+   * Propagate 'copySpecClasspathResources' with 'deriveClasspathFromCopySpecs'. The extra directories of
+   * processResources go with 'sourceResourcesDirectories' instead, in front of the processed resources that have
+   * copies of their files.
+   */
+  private void configureCopySpecClasspathResources(final Project project, final IConventionAware conventionAwareRebelTask,
+      final RebelDslMain rebelExtension)
+  {
+    conventionAwareRebelTask.getConventionMapping().map(RebelGenerateTask.NAME_COPY_SPEC_CLASSPATH_RESOURCES, new Callable<Object>() {
+      public Object call() throws Exception {
+        if (!BooleanUtil.convertNullToFalse(rebelExtension.getDeriveClasspathFromCopySpecs())
+            || !project.getPlugins().hasPlugin(JavaPlugin.class)) {
+          return null;
+        }
+        return getCopySpecClasspathResources(project, JavaPlugin.JAR_TASK_NAME);
+      }
+    });
+  }
+
+  /**
+   * A <dir> for every extra directory a copy task (jar, processResources) puts at the root of the classpath. The
+   * main source set's output and resource source directories are left out, those are covered by the defaults and
+   * 'linkSourceResources'. A <dir> has no target path, so directories copied 'into' a subdirectory are left out, and
+   * so are the specs that filter or rename files, their files only exist in the task's output.
+   */
+  private List<RebelClasspathResource> getCopySpecClasspathResources(Project project, String taskName) throws Exception {
+    JavaPluginConvention javaConvention = project.getConvention().getPlugin(JavaPluginConvention.class);
+    SourceSet main = javaConvention.getSourceSets().getByName(SourceSet.MAIN_SOURCE_SET_NAME);
+
+    Set<File> covered = new HashSet<File>(getMainClassesDirs(project));
+    covered.add(main.getOutput().getResourcesDir());
+    covered.addAll(main.getOutput().getDirs().getFiles());
+    covered.addAll(main.getResources().getSrcDirs());
+
+    List<RebelClasspathResource> resources = new ArrayList<RebelClasspathResource>();
+    Task task = project.getTasks().findByName(taskName);
+    if (task == null) {
+      return resources;
+    }
+    Set<File> added = new HashSet<File>();
+    for (CopySpecUtil.SourceMapping mapping : CopySpecUtil.getSourceMappings(task)) {
+      if (mapping.getSourcePath() instanceof FileTree) {
+        continue;
+      }
+      for (File directory : project.files(mapping.getSourcePath()).getFiles()) {
+        if (!directory.isDirectory() || covered.contains(directory)) {
+          continue;
+        }
+        if (mapping.getDestinationPath().length() != 0) {
+          log.info("Not adding {} of {} to the classpath: it is copied into '{}'", directory, task.getPath(),
+              mapping.getDestinationPath());
+          continue;
+        }
+        if (!added.add(directory)) {
+          continue;
+        }
+        RebelClasspathResource resource = new RebelClasspathResource();
+        resource.setDirectory(directory.getAbsolutePath());
+        if (!mapping.getIncludes().isEmpty()) {
+          resource.setIncludes(new ArrayList<String>(mapping.getIncludes()));
+        }
+        if (!mapping.getExcludes().isEmpty()) {
+          resource.setExcludes(new ArrayList<String>(mapping.getExcludes()));
+        }
+        resources.add(resource);
+      }
+    }
+    return resources;
   }
 
   /**
@@ -222,16 +677,399 @@ public class RebelPlugin implements Plugin<Project> {
         }
         
         RebelDslWar war = rebelExtension.getWar();
+        RebelWar rebelWar = null;
         if (war != null) {
-          generateRebelTask.setWar(war.toRebelWar());
+          rebelWar = war.toRebelWar();
+          generateRebelTask.setWar(rebelWar);
         }
         
         RebelDslWeb web = rebelExtension.getWeb();
         if (web != null) {
           generateRebelTask.setWeb(rebelExtension.getWeb().toRebelWeb());
         }
+
+        generateRebelTask.setMonitoredFilesBudget(rebelExtension.getMonitoredFilesBudget());
+        generateRebelTask.setMonitoredBytesBudget(rebelExtension.getMonitoredBytesBudget());
+        generateRebelTask.setFailOnBudgetExceeded(BooleanUtil.convertNullToFalse(rebelExtension.getFailOnBudgetExceeded()));
+
+        // The value from external configuration wins
+        Object pathsOnlyFromProjectProperties = properties.get("rebel.pathsOnly");
+        boolean pathsOnly;
+        if (pathsOnlyFromProjectProperties != null) {
+          pathsOnly = Boolean.valueOf(pathsOnlyFromProjectProperties.toString());
+        }
+        else {
+          pathsOnly = BooleanUtil.convertNullToFalse(rebelExtension.getPathsOnly());
+        }
+        generateRebelTask.setPathsOnly(pathsOnly);
+
+        if (BooleanUtil.convertNullToFalse(rebelExtension.getGenerateRebelRemote())) {
+          String remoteId = rebelExtension.getRemoteId();
+          generateRebelTask.setRemoteId(remoteId != null ? remoteId : getDefaultRemoteId(project));
+        }
+
+        if (isUsingGeneratedResourcesDirectory(rebelExtension)) {
+          registerGeneratedResourcesDirectory(project, generateRebelTask, pathsOnly);
+        }
+        else if (pathsOnly) {
+          // nothing has to be compiled, the paths come from the source set model
+          generateRebelTask.getDependsOn().remove(project.getTasks().getByName(JavaPlugin.CLASSES_TASK_NAME));
+        }
+
+        if (rebelWar != null && rebelWar.getPath() == null && BooleanUtil.convertNullToFalse(war.getExploded())) {
+          useExplodedWar(project, generateRebelTask, rebelWar, pathsOnly);
+        }
+
+        configureJettyTasks(project, generateRebelTask);
+
+        if (BooleanUtil.convertNullToFalse(rebelExtension.getTestWithRebel())) {
+          configureTestTasks(project, generateRebelTask);
+        }
+
+        if (BooleanUtil.convertNullToFalse(rebelExtension.getListChangedClasses())) {
+          configureChangedClassesTask(project, generateRebelTask);
+        }
+
+        if (BooleanUtil.convertNullToFalse(rebelExtension.getPublishClassesInBatches())) {
+          configureClassPublication(project);
+        }
+
+        generateRebelTask.setMergeFragments(BooleanUtil.convertNullToFalse(rebelExtension.getMergeFragments()));
+        String fragmentsDirectory = rebelExtension.getFragmentsDirectory();
+        generateRebelTask.setFragmentsDirectory(project.file(fragmentsDirectory != null ? fragmentsDirectory : DEFAULT_FRAGMENTS_DIRECTORY));
+
+        declareInputsAndOutputs(project, generateRebelTask);
       }
       
     });
   }
+
+  /**
+   * Let Gradle skip generateRebel when nothing it is generated from has changed (it's a dependency of 'classes' with
+   * 'useGeneratedResourcesDirectory'): rebel.xml and rebel-remote.xml are the outputs; the build files, the fragments,
+   * the task's settings and its convention-mapped directories are the inputs. Everything is read from the task when
+   * Gradle checks it, so settings made on generateRebel directly count as well.
+   */
+  private void declareInputsAndOutputs(final Project project, final RebelGenerateTask generateRebelTask) {
+    generateRebelTask.getOutputs().files(new Callable<Object>() {
+      public Object call() {
+        // asked before the task propagates its convention mapping
+        File rebelXmlDirectory = generateRebelTask.getRebelXmlDirectory$MAGIC();
+        if (rebelXmlDirectory == null) {
+          return Collections.emptyList();
+        }
+        List<File> outputs = new ArrayList<File>();
+        outputs.add(new File(rebelXmlDirectory, RebelGenerateTask.REBEL_XML_FILE_NAME));
+        if (generateRebelTask.getRemoteId() != null) {
+          outputs.add(new File(rebelXmlDirectory, RebelGenerateTask.REBEL_REMOTE_XML_FILE_NAME));
+        }
+        return outputs;
+      }
+    });
+    generateRebelTask.getOutputs().upToDateWhen(new Spec<Task>() {
+      public boolean isSatisfiedBy(Task task) {
+        return !BooleanUtil.convertNullToFalse(generateRebelTask.getAlwaysGenerate());
+      }
+    });
+
+    Set<File> buildFiles = new LinkedHashSet<File>();
+    for (Project buildProject = project; buildProject != null; buildProject = buildProject.getParent()) {
+      buildFiles.add(buildProject.getBuildFile());
+    }
+    generateRebelTask.getInputs().files(buildFiles);
+    generateRebelTask.getInputs().files(new Callable<Object>() {
+      public Object call() {
+        if (!BooleanUtil.convertNullToFalse(generateRebelTask.getMergeFragments())
+            || generateRebelTask.getFragmentsDirectory() == null)
+        {
+          return Collections.emptyList();
+        }
+        return project.fileTree(generateRebelTask.getFragmentsDirectory()).include("*.xml");
+      }
+    });
+
+    Map<String, Callable<Object>> settings = new LinkedHashMap<String, Callable<Object>>();
+    settings.put("packaging", new Callable<Object>() {
+      public Object call() {
+        return generateRebelTask.getPackaging();
+      }
+    });
+    settings.put("rootPath", new Callable<Object>() {
+      public Object call() {
+        return generateRebelTask.getConfiguredRootPath();
+      }
+    });
+    settings.put("relativePath", new Callable<Object>() {
+      public Object call() {
+        return toPath(generateRebelTask.getConfiguredRelativePath());
+      }
+    });
+    settings.put("pathsOnly", new Callable<Object>() {
+      public Object call() {
+        return generateRebelTask.getPathsOnly();
+      }
+    });
+    settings.put("mergeFragments", new Callable<Object>() {
+      public Object call() {
+        return generateRebelTask.getMergeFragments();
+      }
+    });
+    settings.put("remoteId", new Callable<Object>() {
+      public Object call() {
+        return generateRebelTask.getRemoteId();
+      }
+    });
+    settings.put("monitoredFilesBudget", new Callable<Object>() {
+      public Object call() {
+        return generateRebelTask.getMonitoredFilesBudget();
+      }
+    });
+    settings.put("monitoredBytesBudget", new Callable<Object>() {
+      public Object call() {
+        return generateRebelTask.getMonitoredBytesBudget();
+      }
+    });
+    settings.put("failOnBudgetExceeded", new Callable<Object>() {
+      public Object call() {
+        return generateRebelTask.getFailOnBudgetExceeded();
+      }
+    });
+    settings.put("classpath", new Callable<Object>() {
+      public Object call() {
+        RebelClasspath classpath = generateRebelTask.getClasspath();
+        if (classpath == null) {
+          return null;
+        }
+        List<String> description = describeResources(classpath.getResources());
+        description.add("fallback=" + classpath.getFallback());
+        description.add("omitDefaultClassesDir=" + classpath.isOmitDefaultClassesDir());
+        description.add("omitDefaultResourcesDir=" + classpath.isOmitDefaultResourcesDir());
+        return description;
+      }
+    });
+    settings.put("web", new Callable<Object>() {
+      public Object call() {
+        RebelWeb web = generateRebelTask.getWeb();
+        if (web == null) {
+          return null;
+        }
+        List<String> description = describeResources(web.getResources());
+        description.add("omitDefault=" + web.getOmitDefault());
+        return description;
+      }
+    });
+    settings.put("war", new Callable<Object>() {
+      public Object call() {
+        RebelWar war = generateRebelTask.getWar();
+        return war == null ? null : war.getPath();
+      }
+    });
+
+    // the convention-mapped defaults
+    settings.put("defaultClassesDirectories", new Callable<Object>() {
+      public Object call() {
+        List<String> paths = new ArrayList<String>();
+        paths.add(toPath(generateRebelTask.getDefaultClassesDirectory$MAGIC()));
+        List<File> classesDirectories = generateRebelTask.getDefaultClassesDirectories$MAGIC();
+        if (classesDirectories != null) {
+          for (File classesDirectory : classesDirectories) {
+            paths.add(toPath(classesDirectory));
+          }
+        }
+        return paths;
+      }
+    });
+    settings.put("defaultResourcesDirectory", new Callable<Object>() {
+      public Object call() {
+        return toPath(generateRebelTask.getDefaultResourcesDirectory$MAGIC());
+      }
+    });
+    settings.put("sourceResourcesDirectories", new Callable<Object>() {
+      public Object call() {
+        return describeResources(generateRebelTask.getSourceResourcesDirectories$MAGIC());
+      }
+    });
+    settings.put("warWebResources", new Callable<Object>() {
+      public Object call() {
+        return describeResources(generateRebelTask.getWarWebResources$MAGIC());
+      }
+    });
+    settings.put("copySpecClasspathResources", new Callable<Object>() {
+      public Object call() {
+        return describeResources(generateRebelTask.getCopySpecClasspathResources$MAGIC());
+      }
+    });
+    settings.put("defaultWebappDirectory", new Callable<Object>() {
+      public Object call() {
+        return toPath(generateRebelTask.getDefaultWebappDirectory$MAGIC());
+      }
+    });
+
+    for (Map.Entry<String, Callable<Object>> setting : settings.entrySet()) {
+      generateRebelTask.getInputs().property(setting.getKey(), setting.getValue());
+    }
+  }
+
+  private static String toPath(File file) {
+    return file == null ? null : file.getAbsolutePath();
+  }
+
+  /**
+   * One line per resource with the attributes that end up in rebel.xml, for comparing against the previous run
+   */
+  private static List<String> describeResources(List<? extends RebelResource> resources) {
+    List<String> description = new ArrayList<String>();
+    if (resources == null) {
+      return description;
+    }
+    for (RebelResource resource : resources) {
+      StringBuilder line = new StringBuilder();
+      if (resource instanceof RebelClasspathResource) {
+        RebelClasspathResource classpathResource = (RebelClasspathResource) resource;
+        line.append("dir=").append(classpathResource.getDirectory());
+        line.append(" dirset=").append(classpathResource.getDirset());
+        line.append(" jar=").append(classpathResource.getJar());
+        line.append(" jarset=").append(classpathResource.getJarset());
+      }
+      else if (resource instanceof RebelWebResource) {
+        RebelWebResource webResource = (RebelWebResource) resource;
+        line.append("target=").append(webResource.getTarget());
+        line.append(" directory=").append(webResource.getDirectory());
+      }
+      line.append(" includes=").append(resource.getIncludes());
+      line.append(" excludes=").append(resource.getExcludes());
+      description.add(line.toString());
+    }
+    return description;
+  }
+
+  /**
+   * rebelChangedClasses runs after every compile task of the main source set
+   */
+  private void configureChangedClassesTask(final Project project, RebelGenerateTask generateRebelTask) {
+    RebelChangedClassesTask changedClassesTask = project.getTasks().create(CHANGED_CLASSES_TASK_NAME, RebelChangedClassesTask.class);
+    changedClassesTask.setDescription("Lists the class files changed by the last compilation.");
+    changedClassesTask.setGenerateRebelTask(generateRebelTask);
+    changedClassesTask.setChangedClassesFile(new Callable<Object>() {
+      public Object call() {
+        return new File(project.getBuildDir(), CHANGED_CLASSES_FILE);
+      }
+    });
+
+    SourceSet main = project.getConvention().getPlugin(JavaPluginConvention.class).getSourceSets()
+        .getByName(SourceSet.MAIN_SOURCE_SET_NAME);
+    for (String language : COMPILED_LANGUAGES) {
+      Task compileTask = project.getTasks().findByName(main.getCompileTaskName(language));
+      if (compileTask != null) {
+        compileTask.finalizedBy(changedClassesTask);
+        changedClassesTask.mustRunAfter(compileTask);
+      }
+    }
+  }
+
+  /**
+   * compileJava writes into a staging directory, publishRebelClasses publishes its output into the classes directory
+   * in one batch before anything else uses it
+   */
+  private void configureClassPublication(Project project) {
+    SourceSet main = project.getConvention().getPlugin(JavaPluginConvention.class).getSourceSets()
+        .getByName(SourceSet.MAIN_SOURCE_SET_NAME);
+    Task task = project.getTasks().findByName(main.getCompileJavaTaskName());
+    if (!(task instanceof AbstractCompile)) {
+      log.info("Not publishing classes in batches: {} is not a compile task", main.getCompileJavaTaskName());
+      return;
+    }
+    AbstractCompile compileJava = (AbstractCompile) task;
+
+    RebelPublishClassesTask publishTask = project.getTasks().create(PUBLISH_CLASSES_TASK_NAME, RebelPublishClassesTask.class);
+    publishTask.setDescription("Publishes the staged classes into the classes directory monitored by JRebel.");
+    publishTask.setClassesDirectory(compileJava.getDestinationDir());
+    File stagingDirectory = new File(project.getBuildDir(), STAGED_CLASSES_DIRECTORY + "/" + compileJava.getName());
+    publishTask.setStagingDirectory(stagingDirectory);
+    compileJava.setDestinationDir(stagingDirectory);
+
+    compileJava.finalizedBy(publishTask);
+    publishTask.mustRunAfter(compileJava);
+    project.getTasks().getByName(JavaPlugin.CLASSES_TASK_NAME).dependsOn(publishTask);
+    // the other compilers find the Java classes in the classes directory
+    for (String language : COMPILED_LANGUAGES) {
+      Task compileTask = project.getTasks().findByName(main.getCompileTaskName(language));
+      if (compileTask != null && compileTask != compileJava) {
+        compileTask.dependsOn(publishTask);
+      }
+    }
+
+    Task changedClassesTask = project.getTasks().findByName(CHANGED_CLASSES_TASK_NAME);
+    if (changedClassesTask != null) {
+      changedClassesTask.mustRunAfter(publishTask);
+    }
+  }
+
+  /**
+   * group.name, or just the name without a group
+   */
+  private static String getDefaultRemoteId(Project project) {
+    Object group = project.getGroup();
+    if (group == null || group.toString().length() == 0) {
+      return project.getName();
+    }
+    return group + "." + project.getName();
+  }
+
+  /**
+   * The staging directory of explodedRebelWar becomes the <war dir>. The war is staged after every generateRebel
+   * (not before: with 'useGeneratedResourcesDirectory' the war's contents depend on generateRebel).
+   */
+  private void useExplodedWar(Project project, RebelGenerateTask generateRebelTask, RebelWar rebelWar, boolean pathsOnly) {
+    Task task = project.getTasks().findByName(EXPLODED_WAR_TASK_NAME);
+    if (!(task instanceof RebelExplodeWarTask)) {
+      log.info("Not using an exploded war: the war plugin is not applied");
+      return;
+    }
+    RebelExplodeWarTask explodeWarTask = (RebelExplodeWarTask) task;
+    rebelWar.setPath(explodeWarTask.getDestinationDir().getAbsolutePath());
+    if (!pathsOnly) {
+      generateRebelTask.finalizedBy(explodeWarTask);
+    }
+  }
+
+  /**
+   * rebel.xml goes into build/generated/rebel, unless an explicit rebelXmlDirectory is configured
+   */
+  private static boolean isUsingGeneratedResourcesDirectory(RebelDslMain rebelExtension) {
+    return BooleanUtil.convertNullToFalse(rebelExtension.getUseGeneratedResourcesDirectory())
+        && rebelExtension.getRebelXmlDirectory() == null;
+  }
+
+  /**
+   * Register build/generated/rebel as an output directory of the main source set built by generateRebel, so that
+   * rebel.xml is on the runtime classpath (and in the jar/war) without writing into the compiler's classes directory.
+   */
+  private void registerGeneratedResourcesDirectory(final Project project, final RebelGenerateTask generateRebelTask,
+      boolean pathsOnly)
+  {
+    JavaPluginConvention javaConvention = project.getConvention().getPlugin(JavaPluginConvention.class);
+    SourceSet main = javaConvention.getSourceSets().getByName(SourceSet.MAIN_SOURCE_SET_NAME);
+
+    Map<String, Object> options = new HashMap<String, Object>();
+    options.put("builtBy", generateRebelTask);
+    main.getOutput().dir(options, new File(project.getBuildDir(), GENERATED_REBEL_XML_DIRECTORY));
+
+    // 'classes' now depends on generateRebel, so generateRebel can't depend on 'classes' any more:
+    // depend on whatever 'classes' depends on (compilation, resource processing), except ourselves.
+    // In paths-only mode, nothing at all.
+    final Task classesTask = project.getTasks().getByName(main.getClassesTaskName());
+    generateRebelTask.getDependsOn().remove(classesTask);
+    if (pathsOnly) {
+      return;
+    }
+    generateRebelTask.dependsOn(new Callable<Object>() {
+      public Object call() {
+        Set<Task> dependencies = new LinkedHashSet<Task>(classesTask.getTaskDependencies().getDependencies(classesTask));
+        dependencies.remove(generateRebelTask);
+        return dependencies;
+      }
+    });
+  }
+
 }
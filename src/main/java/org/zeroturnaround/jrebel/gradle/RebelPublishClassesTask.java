@@ -0,0 +1,108 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.apache.commons.lang.StringUtils;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.tooling.BuildException;
+import org.zeroturnaround.jrebel.gradle.util.FileUtil;
+import org.zeroturnaround.jrebel.gradle.util.LoggerWrapper;
+
+/**
+ * Publishes the classes compiled into a staging directory into the classes directory in rebel.xml in one batch
+ * (see {@link RebelClassPublisher}), so that JRebel sees a recompilation as one consistent set of changes instead of
+ * a stream of single class files.
+ */
+public class RebelPublishClassesTask extends DefaultTask {
+
+  /**
+   * The paths published by the previous run, kept in the task's temporary directory
+   */
+  public static final String PUBLISHED_FILES_INDEX_NAME = "published-files.txt";
+
+  private LoggerWrapper log = new LoggerWrapper(getLogger());
+
+  private File stagingDirectory;
+
+  private File classesDirectory;
+
+  /**
+   * Not an @InputDirectory, there's no such directory before anything is compiled
+   */
+  @InputFiles
+  public File getStagingDirectory() {
+    return stagingDirectory;
+  }
+
+  /**
+   * Where the compiler writes to
+   */
+  public void setStagingDirectory(File stagingDirectory) {
+    this.stagingDirectory = stagingDirectory;
+  }
+
+  @OutputDirectory
+  public File getClassesDirectory() {
+    return classesDirectory;
+  }
+
+  /**
+   * The directory JRebel monitors
+   */
+  public void setClassesDirectory(File classesDirectory) {
+    this.classesDirectory = classesDirectory;
+  }
+
+  @TaskAction
+  public void publish() {
+    File indexFile = new File(getTemporaryDir(), PUBLISHED_FILES_INDEX_NAME);
+    try {
+      long start = System.nanoTime();
+      RebelClassPublisher publisher = new RebelClassPublisher(stagingDirectory, classesDirectory, loadIndex(indexFile));
+      publisher.publish();
+      FileUtil.writeToFile(indexFile, StringUtils.join(publisher.getPublished(), "\n"));
+      setDidWork(publisher.getUpdated() + publisher.getDeleted() > 0);
+
+      log.info("Published into \"{}\" in {} ms: {} updated, {} deleted, {} unchanged", classesDirectory,
+          (System.nanoTime() - start) / 1000000, publisher.getUpdated(), publisher.getDeleted(), publisher.getUnchanged());
+    }
+    catch (IOException e) {
+      throw new BuildException("Failed publishing \"" + stagingDirectory + "\" into \"" + classesDirectory + "\"", e);
+    }
+  }
+
+  private Set<String> loadIndex(File indexFile) throws IOException {
+    if (!FileUtil.exists(indexFile)) {
+      return Collections.emptySet();
+    }
+    String contents = FileUtil.readFile(indexFile);
+    if (contents.length() == 0) {
+      return Collections.emptySet();
+    }
+    return new LinkedHashSet<String>(Arrays.asList(contents.split("\n")));
+  }
+
+}
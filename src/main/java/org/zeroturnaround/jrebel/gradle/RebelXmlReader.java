@@ -0,0 +1,232 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.zeroturnaround.jrebel.gradle.model.RebelClasspathResource;
+import org.zeroturnaround.jrebel.gradle.model.RebelMainModel;
+import org.zeroturnaround.jrebel.gradle.model.RebelResource;
+import org.zeroturnaround.jrebel.gradle.model.RebelWar;
+import org.zeroturnaround.jrebel.gradle.model.RebelWebResource;
+import org.zeroturnaround.jrebel.gradle.util.FileUtil;
+
+/**
+ * Parse rebel.xml back into the in-memory model (RebelMainModel instance), the counterpart of RebelXmlWriter.
+ *
+ * Streams through the document with StAX, no DOM is built. Elements are matched by their local name only, so both
+ * namespaced (generated) and plain hand-written files are accepted; elements the model has no place for are skipped.
+ */
+public class RebelXmlReader {
+
+  private final XMLInputFactory factory;
+
+  public RebelXmlReader() {
+    factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+    // rebel.xml has no DTD, never resolve anything external
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+  }
+
+  public RebelMainModel read(File file) throws IOException {
+    InputStream in = new BufferedInputStream(new FileInputStream(file));
+    try {
+      return read(in, file.getPath());
+    }
+    finally {
+      FileUtil.closeQuietly(in);
+    }
+  }
+
+  public RebelMainModel readFromString(String xml) throws IOException {
+    return read(new StringReader(xml));
+  }
+
+  /**
+   * The encoding is taken from the XML declaration (UTF-8 by default).
+   */
+  public RebelMainModel read(InputStream in) throws IOException {
+    return read(in, null);
+  }
+
+  public RebelMainModel read(Reader reader) throws IOException {
+    XMLStreamReader xml = null;
+    try {
+      xml = factory.createXMLStreamReader(reader);
+      return read(xml);
+    }
+    catch (XMLStreamException e) {
+      throw new IOException("Failed parsing rebel.xml: " + e.getMessage(), e);
+    }
+    finally {
+      close(xml);
+    }
+  }
+
+  private RebelMainModel read(InputStream in, String systemId) throws IOException {
+    XMLStreamReader xml = null;
+    try {
+      xml = systemId == null ? factory.createXMLStreamReader(in) : factory.createXMLStreamReader(systemId, in);
+      return read(xml);
+    }
+    catch (XMLStreamException e) {
+      throw new IOException("Failed parsing " + (systemId != null ? "\"" + systemId + "\"" : "rebel.xml") + ": "
+          + e.getMessage(), e);
+    }
+    finally {
+      close(xml);
+    }
+  }
+
+  private RebelMainModel read(XMLStreamReader xml) throws XMLStreamException {
+    RebelMainModel model = new RebelMainModel();
+
+    boolean inClasspath = false;
+    boolean inWeb = false;
+    // the <dir>, <jar>, <jarset>, <dirset> or <link> the next <include>/<exclude> belongs to
+    RebelResource current = null;
+
+    while (xml.hasNext()) {
+      int event = xml.next();
+
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        String name = xml.getLocalName();
+
+        if (inClasspath && current == null) {
+          current = readClasspathResource(xml, name, model);
+        }
+        else if (inWeb && current == null && "link".equals(name)) {
+          RebelWebResource link = new RebelWebResource();
+          link.setTarget(attribute(xml, "target"));
+          model.addWebResource(link);
+          current = link;
+        }
+        else if (current instanceof RebelWebResource && "dir".equals(name)) {
+          ((RebelWebResource) current).setDirectory(attribute(xml, "name"));
+        }
+        else if (current != null && "include".equals(name)) {
+          current.setIncludes(add(current.getIncludes(), attribute(xml, "name")));
+        }
+        else if (current != null && "exclude".equals(name)) {
+          current.setExcludes(add(current.getExcludes(), attribute(xml, "name")));
+        }
+        else if ("classpath".equals(name)) {
+          inClasspath = true;
+          model.setFallbackClasspath(attribute(xml, "fallback"));
+        }
+        else if ("web".equals(name)) {
+          inWeb = true;
+        }
+        else if ("war".equals(name)) {
+          String path = attribute(xml, "dir");
+          if (path == null) {
+            path = attribute(xml, "file");
+          }
+          RebelWar war = new RebelWar();
+          war.setPath(path);
+          model.setWar(war);
+        }
+      }
+      else if (event == XMLStreamConstants.END_ELEMENT) {
+        String name = xml.getLocalName();
+
+        if ("classpath".equals(name)) {
+          inClasspath = false;
+        }
+        else if ("web".equals(name)) {
+          inWeb = false;
+        }
+        else if (current instanceof RebelClasspathResource && isClasspathElement(name)) {
+          current = null;
+        }
+        else if (current instanceof RebelWebResource && "link".equals(name)) {
+          current = null;
+        }
+      }
+    }
+    return model;
+  }
+
+  /**
+   * A direct child of &lt;classpath&gt;, null if it's not something the model knows about.
+   */
+  private RebelClasspathResource readClasspathResource(XMLStreamReader xml, String name, RebelMainModel model) {
+    RebelClasspathResource resource = new RebelClasspathResource();
+    if ("dir".equals(name)) {
+      resource.setDirectory(attribute(xml, "name"));
+      model.addClasspathDir(resource);
+    }
+    else if ("jar".equals(name)) {
+      resource.setJar(attribute(xml, "name"));
+      model.addClasspathJar(resource);
+    }
+    else if ("jarset".equals(name)) {
+      resource.setJarset(attribute(xml, "dir"));
+      model.addClasspathJarset(resource);
+    }
+    else if ("dirset".equals(name)) {
+      resource.setDirset(attribute(xml, "dir"));
+      model.addClasspathDirset(resource);
+    }
+    else {
+      return null;
+    }
+    return resource;
+  }
+
+  private static boolean isClasspathElement(String name) {
+    return "dir".equals(name) || "jar".equals(name) || "jarset".equals(name) || "dirset".equals(name);
+  }
+
+  private static String attribute(XMLStreamReader xml, String name) {
+    return xml.getAttributeValue(null, name);
+  }
+
+  private static List<String> add(List<String> list, String value) {
+    if (list == null) {
+      list = new ArrayList<String>();
+    }
+    list.add(value);
+    return list;
+  }
+
+  private static void close(XMLStreamReader xml) {
+    if (xml != null) {
+      try {
+        xml.close();
+      }
+      catch (XMLStreamException e) {
+        // ignore
+      }
+    }
+  }
+
+}
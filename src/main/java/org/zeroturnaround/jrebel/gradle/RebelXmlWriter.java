@@ -141,6 +141,16 @@ public class RebelXmlWriter {
     }
   }
 
+  /**
+   * rebel-remote.xml for JRebel remoting, identifying the application on the server
+   */
+  public String toRemoteXmlString(String id) {
+    return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+        + "<rebel-remote xmlns=\"http://www.zeroturnaround.com/rebel/remote\">\n"
+        + "  <id>" + escapeXml(id) + "</id>\n"
+        + "</rebel-remote>\n";
+  }
+
   private void writeFooter(Writer writer) throws IOException {
     writer.write("</application>\n");
   }
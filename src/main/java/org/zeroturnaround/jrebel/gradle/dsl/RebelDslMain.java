@@ -18,6 +18,8 @@ package org.zeroturnaround.jrebel.gradle.dsl;
 import groovy.lang.Closure;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.commons.lang.builder.ToStringBuilder;
 import org.gradle.util.ConfigureUtil;
@@ -50,6 +52,40 @@ public class RebelDslMain {
   private RebelDslWeb web;
 
   private RebelDslWar war;
+
+  private Long monitoredFilesBudget;
+
+  private Long monitoredBytesBudget;
+
+  private Boolean failOnBudgetExceeded;
+
+  private Boolean mergeFragments;
+
+  private Boolean pathsOnly;
+
+  private Boolean linkSourceResources;
+
+  private List<String> filteredResources;
+
+  private String agentPath;
+
+  private Boolean testWithRebel;
+
+  private Boolean deriveWebFromWar;
+
+  private Boolean deriveClasspathFromCopySpecs;
+
+  private Boolean generateRebelRemote;
+
+  private String remoteId;
+
+  private Boolean listChangedClasses;
+
+  private Boolean publishClassesInBatches;
+
+  private String fragmentsDirectory;
+
+  private Boolean useGeneratedResourcesDirectory;
   
   public RebelDslMain() {
   }
@@ -134,6 +170,149 @@ public class RebelDslMain {
     this.war = war;
   }
 
+  public Long getMonitoredFilesBudget() {
+    return monitoredFilesBudget;
+  }
+
+  public void setMonitoredFilesBudget(Long monitoredFilesBudget) {
+    this.monitoredFilesBudget = monitoredFilesBudget;
+  }
+
+  public Long getMonitoredBytesBudget() {
+    return monitoredBytesBudget;
+  }
+
+  public void setMonitoredBytesBudget(Long monitoredBytesBudget) {
+    this.monitoredBytesBudget = monitoredBytesBudget;
+  }
+
+  public Boolean getFailOnBudgetExceeded() {
+    return failOnBudgetExceeded;
+  }
+
+  public void setFailOnBudgetExceeded(Boolean failOnBudgetExceeded) {
+    this.failOnBudgetExceeded = failOnBudgetExceeded;
+  }
+
+  public Boolean getMergeFragments() {
+    return mergeFragments;
+  }
+
+  public void setMergeFragments(Boolean mergeFragments) {
+    this.mergeFragments = mergeFragments;
+  }
+
+  public String getFragmentsDirectory() {
+    return fragmentsDirectory;
+  }
+
+  public void setFragmentsDirectory(String fragmentsDirectory) {
+    this.fragmentsDirectory = fragmentsDirectory;
+  }
+
+  public Boolean getUseGeneratedResourcesDirectory() {
+    return useGeneratedResourcesDirectory;
+  }
+
+  public void setUseGeneratedResourcesDirectory(Boolean useGeneratedResourcesDirectory) {
+    this.useGeneratedResourcesDirectory = useGeneratedResourcesDirectory;
+  }
+
+  public Boolean getPathsOnly() {
+    return pathsOnly;
+  }
+
+  public void setPathsOnly(Boolean pathsOnly) {
+    this.pathsOnly = pathsOnly;
+  }
+
+  public Boolean getLinkSourceResources() {
+    return linkSourceResources;
+  }
+
+  public void setLinkSourceResources(Boolean linkSourceResources) {
+    this.linkSourceResources = linkSourceResources;
+  }
+
+  public List<String> getFilteredResources() {
+    return filteredResources;
+  }
+
+  public void setFilteredResources(List<String> filteredResources) {
+    this.filteredResources = filteredResources;
+  }
+
+  public void addFilteredResource(String filteredResource) {
+    if (filteredResources == null) {
+      filteredResources = new ArrayList<String>();
+    }
+    filteredResources.add(filteredResource);
+  }
+
+  public String getAgentPath() {
+    return agentPath;
+  }
+
+  public void setAgentPath(String agentPath) {
+    this.agentPath = agentPath;
+  }
+
+  public Boolean getTestWithRebel() {
+    return testWithRebel;
+  }
+
+  public void setTestWithRebel(Boolean testWithRebel) {
+    this.testWithRebel = testWithRebel;
+  }
+
+  public Boolean getDeriveWebFromWar() {
+    return deriveWebFromWar;
+  }
+
+  public void setDeriveWebFromWar(Boolean deriveWebFromWar) {
+    this.deriveWebFromWar = deriveWebFromWar;
+  }
+
+  public Boolean getDeriveClasspathFromCopySpecs() {
+    return deriveClasspathFromCopySpecs;
+  }
+
+  public void setDeriveClasspathFromCopySpecs(Boolean deriveClasspathFromCopySpecs) {
+    this.deriveClasspathFromCopySpecs = deriveClasspathFromCopySpecs;
+  }
+
+  public Boolean getGenerateRebelRemote() {
+    return generateRebelRemote;
+  }
+
+  public void setGenerateRebelRemote(Boolean generateRebelRemote) {
+    this.generateRebelRemote = generateRebelRemote;
+  }
+
+  public String getRemoteId() {
+    return remoteId;
+  }
+
+  public void setRemoteId(String remoteId) {
+    this.remoteId = remoteId;
+  }
+
+  public Boolean getListChangedClasses() {
+    return listChangedClasses;
+  }
+
+  public void setListChangedClasses(Boolean listChangedClasses) {
+    this.listChangedClasses = listChangedClasses;
+  }
+
+  public Boolean getPublishClassesInBatches() {
+    return publishClassesInBatches;
+  }
+
+  public void setPublishClassesInBatches(Boolean publishClassesInBatches) {
+    this.publishClassesInBatches = publishClassesInBatches;
+  }
+
   /**
    * Evaluate the 'classpath {..}' block
    */
@@ -170,6 +349,23 @@ public class RebelDslMain {
     builder.append("showGenerated", showGenerated);
     builder.append("alwaysGenerate", alwaysGenerate);
     builder.append("war", war);
+    builder.append("monitoredFilesBudget", monitoredFilesBudget);
+    builder.append("monitoredBytesBudget", monitoredBytesBudget);
+    builder.append("failOnBudgetExceeded", failOnBudgetExceeded);
+    builder.append("mergeFragments", mergeFragments);
+    builder.append("fragmentsDirectory", fragmentsDirectory);
+    builder.append("useGeneratedResourcesDirectory", useGeneratedResourcesDirectory);
+    builder.append("pathsOnly", pathsOnly);
+    builder.append("linkSourceResources", linkSourceResources);
+    builder.append("filteredResources", filteredResources);
+    builder.append("agentPath", agentPath);
+    builder.append("testWithRebel", testWithRebel);
+    builder.append("deriveWebFromWar", deriveWebFromWar);
+    builder.append("deriveClasspathFromCopySpecs", deriveClasspathFromCopySpecs);
+    builder.append("generateRebelRemote", generateRebelRemote);
+    builder.append("remoteId", remoteId);
+    builder.append("listChangedClasses", listChangedClasses);
+    builder.append("publishClassesInBatches", publishClassesInBatches);
     return builder.toString();
   }
   
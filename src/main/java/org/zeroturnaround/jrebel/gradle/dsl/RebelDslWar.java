@@ -26,6 +26,8 @@ import org.zeroturnaround.jrebel.gradle.model.RebelWar;
 public class RebelDslWar {
 
   private String path;
+
+  private Boolean exploded;
   
   public String getPath() {
     return path;
@@ -34,6 +36,14 @@ public class RebelDslWar {
   public void setPath(String path) {
     this.path = path;
   }
+
+  public Boolean getExploded() {
+    return exploded;
+  }
+
+  public void setExploded(Boolean exploded) {
+    this.exploded = exploded;
+  }
   
   /**
    * Convert from DSL-level model objects to the backend model objects.
@@ -47,6 +57,7 @@ public class RebelDslWar {
   public String toString() {
     ToStringBuilder builder = new ToStringBuilder(this);
     builder.append("path", path);
+    builder.append("exploded", exploded);
     return builder.toString();
   }
   
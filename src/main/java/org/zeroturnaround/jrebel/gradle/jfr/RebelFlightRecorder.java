@@ -0,0 +1,106 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle.jfr;
+
+/**
+ * Entry point for the plugin's Java Flight Recorder events (model building, path canonicalization, XML rendering
+ * and file writes), so that the time spent by generateRebel can be attributed to projects and phases in JMC.
+ *
+ * This class doesn't reference the jdk.jfr API itself: on JVMs without JFR all the methods return a shared no-op span.
+ * With JFR present, a span (an event) is only allocated when a recording has enabled the corresponding event type.
+ *
+ * Usage:
+ * <pre>
+ *   RebelFlightRecorder.Span span = RebelFlightRecorder.get().beginRendering(projectPath);
+ *   ...
+ *   span.bytes(n).finish();
+ * </pre>
+ */
+public abstract class RebelFlightRecorder {
+
+  /**
+   * A running event. Attributes not applicable to the event are ignored.
+   */
+  public interface Span {
+
+    Span resourceCount(long resourceCount);
+
+    Span bytes(long bytes);
+
+    /**
+     * End the event and commit it to the recording.
+     */
+    void finish();
+  }
+
+  public static final Span NOOP_SPAN = new Span() {
+    public Span resourceCount(long resourceCount) {
+      return this;
+    }
+
+    public Span bytes(long bytes) {
+      return this;
+    }
+
+    public void finish() {
+    }
+  };
+
+  private static final RebelFlightRecorder INSTANCE = create();
+
+  public static RebelFlightRecorder get() {
+    return INSTANCE;
+  }
+
+  public abstract Span beginModelBuild(String projectPath);
+
+  public abstract Span beginCanonicalization(String projectPath, String path);
+
+  public abstract Span beginRendering(String projectPath);
+
+  public abstract Span beginWrite(String projectPath, String path);
+
+  private static RebelFlightRecorder create() {
+    try {
+      Class.forName("jdk.jfr.FlightRecorder");
+      return (RebelFlightRecorder) Class.forName("org.zeroturnaround.jrebel.gradle.jfr.JfrRebelFlightRecorder").newInstance();
+    }
+    catch (Throwable e) {
+      // no JFR in this JVM
+      return new NoopFlightRecorder();
+    }
+  }
+
+  private static class NoopFlightRecorder extends RebelFlightRecorder {
+
+    public Span beginModelBuild(String projectPath) {
+      return NOOP_SPAN;
+    }
+
+    public Span beginCanonicalization(String projectPath, String path) {
+      return NOOP_SPAN;
+    }
+
+    public Span beginRendering(String projectPath) {
+      return NOOP_SPAN;
+    }
+
+    public Span beginWrite(String projectPath, String path) {
+      return NOOP_SPAN;
+    }
+  }
+
+}
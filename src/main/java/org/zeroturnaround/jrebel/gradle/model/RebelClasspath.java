@@ -64,6 +64,22 @@ public class RebelClasspath {
     this.resources.add(resource);
   }
   
+  /**
+   * A deep copy, the resources are copied as well.
+   */
+  public RebelClasspath copy() {
+    RebelClasspath copy = new RebelClasspath();
+    copy.fallback = fallback;
+    copy.omitDefaultClassesDir = omitDefaultClassesDir;
+    copy.omitDefaultResourcesDir = omitDefaultResourcesDir;
+    if (resources != null) {
+      for (RebelClasspathResource resource : resources) {
+        copy.resources.add(resource.copy());
+      }
+    }
+    return copy;
+  }
+
   public String toString() {
     ToStringBuilder builder = new ToStringBuilder(this, ToStringStyle.DEFAULT_STYLE);
     builder.append("resources", resources);
@@ -15,6 +15,7 @@
  */
 package org.zeroturnaround.jrebel.gradle.model;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -25,7 +26,9 @@ import org.apache.commons.lang.builder.ToStringStyle;
 /**
  * Classpath resource configuration.
  */
-public class RebelClasspathResource implements RebelResource {
+public class RebelClasspathResource implements RebelResource, Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   private String directory;
   
@@ -116,6 +119,20 @@ public class RebelClasspathResource implements RebelResource {
     this.jarset = jarset;
   }
   
+  /**
+   * A copy not sharing anything (including the include/exclude lists) with this resource.
+   */
+  public RebelClasspathResource copy() {
+    RebelClasspathResource copy = new RebelClasspathResource();
+    copy.directory = directory;
+    copy.dirset = dirset;
+    copy.jar = jar;
+    copy.jarset = jarset;
+    copy.includes = includes == null ? null : new ArrayList<String>(includes);
+    copy.excludes = excludes == null ? null : new ArrayList<String>(excludes);
+    return copy;
+  }
+
   public String toString() {
     ToStringBuilder builder = new ToStringBuilder(this, ToStringStyle.DEFAULT_STYLE);
     builder.append("directory", directory);
@@ -16,6 +16,7 @@
 package org.zeroturnaround.jrebel.gradle.model;
 
 import java.io.IOException;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -25,7 +26,9 @@ import org.zeroturnaround.jrebel.gradle.RebelXmlWriter;
 /**
  * Main model class representing the data for the rebel.xml.
  */
-public class RebelMainModel {
+public class RebelMainModel implements Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   private List<RebelClasspathResource> classpathDirs = new ArrayList<RebelClasspathResource>();
   
@@ -97,6 +100,18 @@ public class RebelMainModel {
     this.war = war;
   }
 
+  /**
+   * Number of resources (classpath entries, web links and the war) in the model.
+   */
+  public int getResourceCount() {
+    int count = classpathDirs.size() + classpathDirsets.size() + classpathJars.size() + classpathJarsets.size()
+        + webResources.size();
+    if (war != null) {
+      count++;
+    }
+    return count;
+  }
+
   /**
    * Construct the actual XML stream (string) from the model in memory.
    */
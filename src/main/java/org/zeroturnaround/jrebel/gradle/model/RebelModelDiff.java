@@ -0,0 +1,320 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.ObjectUtils;
+
+/**
+ * Structural difference between two RebelMainModel instances, e.g. the model of the previous generateRebel run and
+ * the current one: which &lt;dir&gt;, &lt;dirset&gt;, &lt;jar&gt;, &lt;jarset&gt; and &lt;link&gt; elements were added
+ * or removed, which ones got different includes/excludes, and whether their order changed.
+ *
+ * Classpath elements are identified by their kind and path, web links by their target. An empty diff means the
+ * generated rebel.xml would be exactly the same.
+ */
+public class RebelModelDiff {
+
+  public enum ChangeType {
+    ADDED, REMOVED, CHANGED
+  }
+
+  /**
+   * One added, removed or changed element of rebel.xml.
+   */
+  public static class Change {
+
+    private final ChangeType type;
+
+    private final String element;
+
+    private final String key;
+
+    private final String description;
+
+    public Change(ChangeType type, String element, String key, String description) {
+      this.type = type;
+      this.element = element;
+      this.key = key;
+      this.description = description;
+    }
+
+    public ChangeType getType() {
+      return type;
+    }
+
+    /**
+     * Name of the rebel.xml element: dir, dirset, jar, jarset, link, war, fallback, classpath or web.
+     */
+    public String getElement() {
+      return element;
+    }
+
+    /**
+     * The path (or link target) identifying the element.
+     */
+    public String getKey() {
+      return key;
+    }
+
+    /**
+     * What changed, null for added and removed elements.
+     */
+    public String getDescription() {
+      return description;
+    }
+
+    public String toString() {
+      StringBuilder sb = new StringBuilder();
+      sb.append(type == ChangeType.ADDED ? '+' : type == ChangeType.REMOVED ? '-' : '~');
+      sb.append(' ').append(element);
+      if (key != null) {
+        sb.append(' ').append(key);
+      }
+      if (description != null) {
+        sb.append(": ").append(description);
+      }
+      return sb.toString();
+    }
+  }
+
+  private final List<Change> changes = new ArrayList<Change>();
+
+  private RebelModelDiff() {
+  }
+
+  /**
+   * Compare two models. A null previous model (nothing generated before) makes every element of the current one "added".
+   */
+  public static RebelModelDiff compare(RebelMainModel previous, RebelMainModel current) {
+    if (previous == null) {
+      previous = new RebelMainModel();
+    }
+    if (current == null) {
+      current = new RebelMainModel();
+    }
+
+    RebelModelDiff diff = new RebelModelDiff();
+
+    List<String> previousOrder = new ArrayList<String>();
+    List<String> currentOrder = new ArrayList<String>();
+    diff.compareClasspath("dir", previous.getClasspathDirs(), current.getClasspathDirs(), previousOrder, currentOrder);
+    diff.compareClasspath("dirset", previous.getClasspathDirsets(), current.getClasspathDirsets(), previousOrder, currentOrder);
+    diff.compareClasspath("jar", previous.getClasspathJars(), current.getClasspathJars(), previousOrder, currentOrder);
+    diff.compareClasspath("jarset", previous.getClasspathJarsets(), current.getClasspathJarsets(), previousOrder, currentOrder);
+    diff.compareOrder("classpath", previousOrder, currentOrder);
+
+    if (!ObjectUtils.equals(previous.getFallbackClasspath(), current.getFallbackClasspath())) {
+      diff.changes.add(new Change(ChangeType.CHANGED, "fallback", null,
+          previous.getFallbackClasspath() + " -> " + current.getFallbackClasspath()));
+    }
+
+    diff.compareWeb(previous.getWebResources(), current.getWebResources());
+    diff.compareWar(previous.getWar(), current.getWar());
+    return diff;
+  }
+
+  /**
+   * No differences, the rebel.xml generated from both models is the same.
+   */
+  public boolean isEmpty() {
+    return changes.isEmpty();
+  }
+
+  public List<Change> getChanges() {
+    return Collections.unmodifiableList(changes);
+  }
+
+  /**
+   * One line per change, e.g. "+ dir /project/build/classes/main".
+   */
+  public String toSummaryString() {
+    StringBuilder sb = new StringBuilder();
+    for (Change change : changes) {
+      sb.append(change).append('\n');
+    }
+    return sb.toString();
+  }
+
+  public String toString() {
+    return toSummaryString();
+  }
+
+  private void compareClasspath(String element, List<RebelClasspathResource> previous,
+      List<RebelClasspathResource> current, List<String> previousOrder, List<String> currentOrder)
+  {
+    Map<String, RebelClasspathResource> previousByKey = indexClasspath(element, previous);
+    Map<String, RebelClasspathResource> currentByKey = indexClasspath(element, current);
+
+    for (Map.Entry<String, RebelClasspathResource> entry : currentByKey.entrySet()) {
+      RebelClasspathResource old = previousByKey.get(entry.getKey());
+      if (old == null) {
+        changes.add(new Change(ChangeType.ADDED, element, stripIndex(entry.getKey()), null));
+      }
+      else {
+        comparePatterns(element, stripIndex(entry.getKey()), old, entry.getValue());
+      }
+    }
+    for (String key : previousByKey.keySet()) {
+      if (!currentByKey.containsKey(key)) {
+        changes.add(new Change(ChangeType.REMOVED, element, stripIndex(key), null));
+      }
+    }
+
+    previousOrder.addAll(previousByKey.keySet());
+    currentOrder.addAll(currentByKey.keySet());
+  }
+
+  private void compareWeb(List<RebelWebResource> previous, List<RebelWebResource> current) {
+    Map<String, RebelWebResource> previousByKey = indexWeb(previous);
+    Map<String, RebelWebResource> currentByKey = indexWeb(current);
+
+    for (Map.Entry<String, RebelWebResource> entry : currentByKey.entrySet()) {
+      String target = stripIndex(entry.getKey());
+      RebelWebResource old = previousByKey.get(entry.getKey());
+      if (old == null) {
+        changes.add(new Change(ChangeType.ADDED, "link", target, "directory " + entry.getValue().getDirectory()));
+      }
+      else {
+        if (!ObjectUtils.equals(old.getDirectory(), entry.getValue().getDirectory())) {
+          changes.add(new Change(ChangeType.CHANGED, "link", target,
+              "directory " + old.getDirectory() + " -> " + entry.getValue().getDirectory()));
+        }
+        comparePatterns("link", target, old, entry.getValue());
+      }
+    }
+    for (String key : previousByKey.keySet()) {
+      if (!currentByKey.containsKey(key)) {
+        changes.add(new Change(ChangeType.REMOVED, "link", stripIndex(key), null));
+      }
+    }
+
+    compareOrder("web", new ArrayList<String>(previousByKey.keySet()), new ArrayList<String>(currentByKey.keySet()));
+  }
+
+  private void compareWar(RebelWar previous, RebelWar current) {
+    String previousPath = previous == null ? null : previous.getPath();
+    String currentPath = current == null ? null : current.getPath();
+    if (previousPath == null && currentPath != null) {
+      changes.add(new Change(ChangeType.ADDED, "war", currentPath, null));
+    }
+    else if (previousPath != null && currentPath == null) {
+      changes.add(new Change(ChangeType.REMOVED, "war", previousPath, null));
+    }
+    else if (previousPath != null && !previousPath.equals(currentPath)) {
+      changes.add(new Change(ChangeType.CHANGED, "war", currentPath, "path " + previousPath + " -> " + currentPath));
+    }
+  }
+
+  private void comparePatterns(String element, String key, RebelResource previous, RebelResource current) {
+    if (!samePatterns(previous.getIncludes(), current.getIncludes())) {
+      changes.add(new Change(ChangeType.CHANGED, element, key,
+          "includes " + previous.getIncludes() + " -> " + current.getIncludes()));
+    }
+    if (!samePatterns(previous.getExcludes(), current.getExcludes())) {
+      changes.add(new Change(ChangeType.CHANGED, element, key,
+          "excludes " + previous.getExcludes() + " -> " + current.getExcludes()));
+    }
+  }
+
+  /**
+   * Elements present in both models have to appear in the same relative order -- the classpath order matters to JRebel.
+   */
+  private void compareOrder(String element, List<String> previousKeys, List<String> currentKeys) {
+    previousKeys.retainAll(currentKeys);
+    currentKeys.retainAll(previousKeys);
+    if (!previousKeys.equals(currentKeys)) {
+      changes.add(new Change(ChangeType.CHANGED, element, null, "order of the elements changed"));
+    }
+  }
+
+  private static Map<String, RebelClasspathResource> indexClasspath(String element, List<RebelClasspathResource> resources) {
+    Map<String, RebelClasspathResource> index = new LinkedHashMap<String, RebelClasspathResource>();
+    for (RebelClasspathResource resource : resources) {
+      String path;
+      if ("dir".equals(element)) {
+        path = resource.getDirectory();
+      }
+      else if ("dirset".equals(element)) {
+        path = resource.getDirset();
+      }
+      else if ("jar".equals(element)) {
+        path = resource.getJar();
+      }
+      else {
+        path = resource.getJarset();
+      }
+      index.put(uniqueKey(index, element + " " + path), resource);
+    }
+    return index;
+  }
+
+  private static Map<String, RebelWebResource> indexWeb(List<RebelWebResource> resources) {
+    Map<String, RebelWebResource> index = new LinkedHashMap<String, RebelWebResource>();
+    for (RebelWebResource resource : resources) {
+      index.put(uniqueKey(index, "link " + resource.getTarget()), resource);
+    }
+    return index;
+  }
+
+  /**
+   * The same path (or link target) may legally appear more than once, the n-th occurrence gets a "#n" suffix.
+   */
+  private static String uniqueKey(Map<String, ?> index, String key) {
+    if (!index.containsKey(key)) {
+      return key;
+    }
+    int n = 2;
+    while (index.containsKey(key + "#" + n)) {
+      n++;
+    }
+    return key + "#" + n;
+  }
+
+  /**
+   * "dir /a/b#2" -> "/a/b"
+   */
+  private static String stripIndex(String key) {
+    String path = key.substring(key.indexOf(' ') + 1);
+    int hash = path.lastIndexOf('#');
+    if (hash > 0 && path.substring(hash + 1).matches("[0-9]+")) {
+      path = path.substring(0, hash);
+    }
+    return path;
+  }
+
+  /**
+   * Lists set from the DSL may hold GStrings, so compare the string values. Null and empty mean the same.
+   */
+  private static boolean samePatterns(List<?> a, List<?> b) {
+    int size = a == null ? 0 : a.size();
+    if (size != (b == null ? 0 : b.size())) {
+      return false;
+    }
+    for (int i = 0; i < size; i++) {
+      if (!String.valueOf(a.get(i)).equals(String.valueOf(b.get(i)))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
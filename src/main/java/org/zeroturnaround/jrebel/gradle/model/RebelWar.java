@@ -15,13 +15,17 @@
  */
 package org.zeroturnaround.jrebel.gradle.model;
 
+import java.io.Serializable;
+
 import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.commons.lang.builder.ToStringStyle;
 
 /**
  * War configuration.
  */
-public class RebelWar {
+public class RebelWar implements Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   private String path;
   
@@ -52,6 +56,13 @@ public class RebelWar {
     this.originalPath = originalPath;
   }
 
+  public RebelWar copy() {
+    RebelWar copy = new RebelWar();
+    copy.path = path;
+    copy.originalPath = originalPath;
+    return copy;
+  }
+
   public String toString() {
     ToStringBuilder builder = new ToStringBuilder(this, ToStringStyle.DEFAULT_STYLE);
     builder.append("path", path);
@@ -45,6 +45,20 @@ public class RebelWeb {
     resources.add(resource);
   }
 
+  /**
+   * A deep copy, the resources are copied as well.
+   */
+  public RebelWeb copy() {
+    RebelWeb copy = new RebelWeb();
+    copy.omitDefault = omitDefault;
+    if (resources != null) {
+      for (RebelWebResource resource : resources) {
+        copy.resources.add(resource.copy());
+      }
+    }
+    return copy;
+  }
+
   public String toString() {
     ToStringBuilder builder = new ToStringBuilder(this);
     builder.append("resources", resources);
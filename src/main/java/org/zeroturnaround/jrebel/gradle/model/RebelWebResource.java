@@ -15,6 +15,8 @@
  */
 package org.zeroturnaround.jrebel.gradle.model;
 
+import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.lang.builder.ToStringBuilder;
@@ -23,7 +25,9 @@ import org.apache.commons.lang.builder.ToStringStyle;
 /**
  * Web reource configuration.
  */
-public class RebelWebResource implements RebelResource {
+public class RebelWebResource implements RebelResource, Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   private String directory;
   
@@ -72,6 +76,18 @@ public class RebelWebResource implements RebelResource {
     return this.directory == null && this.target == null;
   }
   
+  /**
+   * A copy not sharing anything (including the include/exclude lists) with this resource.
+   */
+  public RebelWebResource copy() {
+    RebelWebResource copy = new RebelWebResource();
+    copy.directory = directory;
+    copy.target = target;
+    copy.includes = includes == null ? null : new ArrayList<String>(includes);
+    copy.excludes = excludes == null ? null : new ArrayList<String>(excludes);
+    return copy;
+  }
+
   public String toString() {
     ToStringBuilder builder = new ToStringBuilder(this, ToStringStyle.DEFAULT_STYLE);
     builder.append("directory", directory);
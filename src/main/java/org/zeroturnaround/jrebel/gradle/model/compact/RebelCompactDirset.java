@@ -0,0 +1,39 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle.model.compact;
+
+import org.zeroturnaround.jrebel.gradle.model.RebelClasspathResource;
+import org.zeroturnaround.jrebel.gradle.model.RebelMainModel;
+
+/**
+ * A classpath &lt;dirset&gt; entry.
+ */
+public final class RebelCompactDirset extends RebelCompactResource {
+
+  public RebelCompactDirset(RebelPath path, RebelPatterns patterns) {
+    super(path, patterns);
+  }
+
+  @Override
+  public void addTo(RebelMainModel model) {
+    RebelClasspathResource resource = new RebelClasspathResource();
+    resource.setDirset(getPathString());
+    resource.setIncludes(getPatterns().getIncludes());
+    resource.setExcludes(getPatterns().getExcludes());
+    model.addClasspathDirset(resource);
+  }
+
+}
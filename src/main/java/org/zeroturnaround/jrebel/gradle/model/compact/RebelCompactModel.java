@@ -0,0 +1,152 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle.model.compact;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.zeroturnaround.jrebel.gradle.model.RebelClasspathResource;
+import org.zeroturnaround.jrebel.gradle.model.RebelMainModel;
+import org.zeroturnaround.jrebel.gradle.model.RebelWar;
+import org.zeroturnaround.jrebel.gradle.model.RebelWebResource;
+
+/**
+ * Immutable, compact representation of a RebelMainModel, meant for keeping lots of models in memory at once
+ * (e.g. the models of all the projects of an aggregated multi-project build).
+ *
+ * Paths are stored as interned segment chains, pattern lists are interned and shared between resources, and every
+ * resource kind is its own small class. Convert back with toMainModel() to render or modify it.
+ */
+public final class RebelCompactModel implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final RebelCompactResource[] NO_RESOURCES = new RebelCompactResource[0];
+
+  private static final RebelCompactWebLink[] NO_LINKS = new RebelCompactWebLink[0];
+
+  /**
+   * dirs, dirsets, jars and jarsets -- each kind in the order of the original model
+   */
+  private final RebelCompactResource[] classpath;
+
+  private final RebelCompactWebLink[] webLinks;
+
+  private final RebelPath war;
+
+  /**
+   * The war path as configured, before the path fixing (see RebelWar#getOriginalPath)
+   */
+  private final String warOriginalPath;
+
+  private final String fallbackClasspath;
+
+  private RebelCompactModel(RebelCompactResource[] classpath, RebelCompactWebLink[] webLinks, RebelPath war,
+      String warOriginalPath, String fallbackClasspath)
+  {
+    this.classpath = classpath;
+    this.webLinks = webLinks;
+    this.war = war;
+    this.warOriginalPath = warOriginalPath;
+    this.fallbackClasspath = fallbackClasspath;
+  }
+
+  /**
+   * Convert with the shared interner
+   */
+  public static RebelCompactModel from(RebelMainModel model) {
+    return from(model, RebelModelInterner.getShared());
+  }
+
+  public static RebelCompactModel from(RebelMainModel model, RebelModelInterner interner) {
+    List<RebelCompactResource> classpath = new ArrayList<RebelCompactResource>(model.getResourceCount());
+    for (RebelClasspathResource r : model.getClasspathDirs()) {
+      classpath.add(new RebelCompactDir(interner.internPath(r.getDirectory()), patterns(r.getIncludes(), r.getExcludes(), interner)));
+    }
+    for (RebelClasspathResource r : model.getClasspathDirsets()) {
+      classpath.add(new RebelCompactDirset(interner.internPath(r.getDirset()), patterns(r.getIncludes(), r.getExcludes(), interner)));
+    }
+    for (RebelClasspathResource r : model.getClasspathJars()) {
+      classpath.add(new RebelCompactJar(interner.internPath(r.getJar()), patterns(r.getIncludes(), r.getExcludes(), interner)));
+    }
+    for (RebelClasspathResource r : model.getClasspathJarsets()) {
+      classpath.add(new RebelCompactJarset(interner.internPath(r.getJarset()), patterns(r.getIncludes(), r.getExcludes(), interner)));
+    }
+
+    List<RebelCompactWebLink> webLinks = new ArrayList<RebelCompactWebLink>(model.getWebResources().size());
+    for (RebelWebResource r : model.getWebResources()) {
+      webLinks.add(new RebelCompactWebLink(interner.intern(r.getTarget()), interner.internPath(r.getDirectory()),
+          patterns(r.getIncludes(), r.getExcludes(), interner)));
+    }
+
+    RebelWar war = model.getWar();
+    return new RebelCompactModel(
+        classpath.isEmpty() ? NO_RESOURCES : classpath.toArray(new RebelCompactResource[classpath.size()]),
+        webLinks.isEmpty() ? NO_LINKS : webLinks.toArray(new RebelCompactWebLink[webLinks.size()]),
+        war != null ? interner.internPath(war.getPath()) : null,
+        war != null ? interner.intern(war.getOriginalPath()) : null,
+        interner.intern(model.getFallbackClasspath()));
+  }
+
+  private static RebelPatterns patterns(List<String> includes, List<String> excludes, RebelModelInterner interner) {
+    return interner.internPatterns(includes, excludes);
+  }
+
+  public List<RebelCompactResource> getClasspath() {
+    return Collections.unmodifiableList(Arrays.asList(classpath));
+  }
+
+  public List<RebelCompactWebLink> getWebLinks() {
+    return Collections.unmodifiableList(Arrays.asList(webLinks));
+  }
+
+  public RebelPath getWar() {
+    return war;
+  }
+
+  public String getWarOriginalPath() {
+    return warOriginalPath;
+  }
+
+  public String getFallbackClasspath() {
+    return fallbackClasspath;
+  }
+
+  /**
+   * A fresh, mutable model with the same contents.
+   */
+  public RebelMainModel toMainModel() {
+    RebelMainModel model = new RebelMainModel();
+    for (RebelCompactResource resource : classpath) {
+      resource.addTo(model);
+    }
+    for (RebelCompactWebLink link : webLinks) {
+      link.addTo(model);
+    }
+    if (war != null) {
+      RebelWar rebelWar = new RebelWar();
+      rebelWar.setPath(war.toString());
+      rebelWar.setOriginalPath(warOriginalPath);
+      model.setWar(rebelWar);
+    }
+    model.setFallbackClasspath(fallbackClasspath);
+    return model;
+  }
+
+}
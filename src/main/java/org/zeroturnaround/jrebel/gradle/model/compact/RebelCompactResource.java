@@ -0,0 +1,60 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle.model.compact;
+
+import java.io.Serializable;
+
+import org.zeroturnaround.jrebel.gradle.model.RebelMainModel;
+
+/**
+ * Immutable, compact counterpart of RebelClasspathResource / RebelWebResource. Instead of one class with a nullable
+ * field per possible target, every kind of resource has its own small subclass holding just the interned path
+ * and the shared patterns.
+ */
+public abstract class RebelCompactResource implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final RebelPath path;
+
+  private final RebelPatterns patterns;
+
+  protected RebelCompactResource(RebelPath path, RebelPatterns patterns) {
+    this.path = path;
+    this.patterns = patterns;
+  }
+
+  public RebelPath getPath() {
+    return path;
+  }
+
+  public RebelPatterns getPatterns() {
+    return patterns;
+  }
+
+  /**
+   * The path as a plain string (null-safe).
+   */
+  public String getPathString() {
+    return path != null ? path.toString() : null;
+  }
+
+  /**
+   * Add a (mutable) copy of this resource to the model.
+   */
+  public abstract void addTo(RebelMainModel model);
+
+}
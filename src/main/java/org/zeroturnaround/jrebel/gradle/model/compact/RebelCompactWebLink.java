@@ -0,0 +1,47 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle.model.compact;
+
+import org.zeroturnaround.jrebel.gradle.model.RebelMainModel;
+import org.zeroturnaround.jrebel.gradle.model.RebelWebResource;
+
+/**
+ * A &lt;link&gt; of the &lt;web&gt; element: the directory and the (interned) target inside the web application.
+ */
+public final class RebelCompactWebLink extends RebelCompactResource {
+
+  private final String target;
+
+  public RebelCompactWebLink(String target, RebelPath path, RebelPatterns patterns) {
+    super(path, patterns);
+    this.target = target;
+  }
+
+  public String getTarget() {
+    return target;
+  }
+
+  @Override
+  public void addTo(RebelMainModel model) {
+    RebelWebResource resource = new RebelWebResource();
+    resource.setTarget(target);
+    resource.setDirectory(getPathString());
+    resource.setIncludes(getPatterns().getIncludes());
+    resource.setExcludes(getPatterns().getExcludes());
+    model.addWebResource(resource);
+  }
+
+}
@@ -0,0 +1,173 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle.model.compact;
+
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Interns path segments, paths and pattern lists while converting models to their compact form.
+ *
+ * The sharing comes from converting all the models that live together (e.g. all projects of an aggregated build)
+ * with the same interner, normally the shared one. It lives as long as the daemon, so it's bounded: once it holds
+ * maxEntries strings, paths and pattern lists, new values are no longer interned (just not shared).
+ * Thread-safe, so projects may be converted in parallel.
+ *
+ * Its tables are part of what the compact models cost, so they're open addressing arrays rather than hash maps with
+ * a node object per entry.
+ */
+public class RebelModelInterner {
+
+  public static final int DEFAULT_MAX_ENTRIES = 100000;
+
+  private static final RebelModelInterner SHARED = new RebelModelInterner(DEFAULT_MAX_ENTRIES);
+
+  private final int maxEntries;
+
+  private int entries;
+
+  private final InternTable<String> strings = new InternTable<String>();
+
+  private final InternTable<RebelPath> paths = new InternTable<RebelPath>();
+
+  private final InternTable<RebelPatterns> patterns = new InternTable<RebelPatterns>();
+
+  public RebelModelInterner(int maxEntries) {
+    this.maxEntries = maxEntries;
+  }
+
+  /**
+   * The interner shared by all the builds of this class loader
+   */
+  public static RebelModelInterner getShared() {
+    return SHARED;
+  }
+
+  /**
+   * Number of interned strings, paths and pattern lists
+   */
+  public synchronized int size() {
+    return entries;
+  }
+
+  public String intern(String value) {
+    if (value == null) {
+      return null;
+    }
+    return intern(strings, value);
+  }
+
+  /**
+   * The path for a slash or backslash separated path string, with its parent directories interned; null for null.
+   * The empty path is a single empty segment.
+   */
+  public RebelPath internPath(String path) {
+    if (path == null) {
+      return null;
+    }
+    String[] segments = StringUtils.splitPreserveAllTokens(StringUtils.replace(path, "\\", "/"), '/');
+    if (segments.length == 0) {
+      segments = new String[] { "" };
+    }
+
+    // only the directories above are shared, the last segment rarely is: keeping it out of the map saves more than
+    // sharing it would
+    RebelPath parent = null;
+    for (int i = 0; i < segments.length - 1; i++) {
+      parent = intern(paths, new RebelPath(parent, intern(segments[i])));
+    }
+    return new RebelPath(parent, intern(segments[segments.length - 1]));
+  }
+
+  public RebelPatterns internPatterns(List<String> includes, List<String> excludes) {
+    return intern(patterns, new RebelPatterns(toArray(includes), toArray(excludes)));
+  }
+
+  private synchronized <T> T intern(InternTable<T> table, T candidate) {
+    T existing = table.find(candidate);
+    if (existing != null) {
+      return existing;
+    }
+    if (entries >= maxEntries) {
+      return candidate;
+    }
+    table.add(candidate);
+    entries++;
+    return candidate;
+  }
+
+  private String[] toArray(List<String> list) {
+    if (list == null) {
+      return null;
+    }
+    String[] array = new String[list.size()];
+    for (int i = 0; i < array.length; i++) {
+      array[i] = intern(list.get(i));
+    }
+    return array;
+  }
+
+  /**
+   * Hash set with linear probing, kept at most half full. Not thread-safe.
+   */
+  private static final class InternTable<T> {
+
+    private Object[] table = new Object[64];
+
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    T find(T value) {
+      for (int i = indexOf(value, table.length); table[i] != null; i = (i + 1) % table.length) {
+        if (table[i].equals(value)) {
+          return (T) table[i];
+        }
+      }
+      return null;
+    }
+
+    void add(T value) {
+      if ((size + 1) * 2 > table.length) {
+        Object[] old = table;
+        table = new Object[old.length * 2];
+        for (Object element : old) {
+          if (element != null) {
+            put(table, element);
+          }
+        }
+      }
+      put(table, value);
+      size++;
+    }
+
+    private static void put(Object[] table, Object value) {
+      int i = indexOf(value, table.length);
+      while (table[i] != null) {
+        i = (i + 1) % table.length;
+      }
+      table[i] = value;
+    }
+
+    private static int indexOf(Object value, int length) {
+      int hash = value.hashCode();
+      hash ^= hash >>> 16;
+      return (hash & 0x7fffffff) % length;
+    }
+
+  }
+
+}
@@ -0,0 +1,80 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle.model.compact;
+
+import java.io.Serializable;
+
+/**
+ * A '/'-separated path stored as a chain of interned segments, so that all the paths sharing a prefix
+ * (e.g. the workspace root, or a module's build directory) share the nodes of that prefix.
+ *
+ * Instances are only created by RebelModelInterner; the parent of an interned node is interned (canonical) too, which
+ * is why equals() can compare parents by identity. Nodes created once the interner is full just don't match any other.
+ */
+public final class RebelPath implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final RebelPath parent;
+
+  private final String name;
+
+  RebelPath(RebelPath parent, String name) {
+    this.parent = parent;
+    this.name = name;
+  }
+
+  public RebelPath getParent() {
+    return parent;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof RebelPath)) {
+      return false;
+    }
+    RebelPath other = (RebelPath) obj;
+    return parent == other.parent && name.equals(other.name);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * System.identityHashCode(parent) + name.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    appendTo(sb);
+    return sb.toString();
+  }
+
+  private void appendTo(StringBuilder sb) {
+    if (parent != null) {
+      parent.appendTo(sb);
+      sb.append('/');
+    }
+    sb.append(name);
+  }
+
+}
@@ -0,0 +1,86 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle.model.compact;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable include/exclude pattern lists. Interned by RebelModelInterner, so all the resources with
+ * the same patterns (typically none, or ["**&#47;*.class"]) share a single instance.
+ */
+public final class RebelPatterns implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final String[] includes;
+
+  private final String[] excludes;
+
+  RebelPatterns(String[] includes, String[] excludes) {
+    this.includes = includes;
+    this.excludes = excludes;
+  }
+
+  /**
+   * Copy of the includes for the mutable model, null if there are none.
+   */
+  public List<String> getIncludes() {
+    return toList(includes);
+  }
+
+  /**
+   * Copy of the excludes for the mutable model, null if there are none.
+   */
+  public List<String> getExcludes() {
+    return toList(excludes);
+  }
+
+  private static List<String> toList(String[] patterns) {
+    if (patterns == null) {
+      return null;
+    }
+    List<String> list = new ArrayList<String>(patterns.length);
+    Collections.addAll(list, patterns);
+    return list;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof RebelPatterns)) {
+      return false;
+    }
+    RebelPatterns other = (RebelPatterns) obj;
+    return Arrays.equals(includes, other.includes) && Arrays.equals(excludes, other.excludes);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Arrays.hashCode(includes) + Arrays.hashCode(excludes);
+  }
+
+  @Override
+  public String toString() {
+    return "includes=" + Arrays.toString(includes) + ", excludes=" + Arrays.toString(excludes);
+  }
+
+}
@@ -0,0 +1,69 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle.tooling;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.zeroturnaround.jrebel.gradle.model.RebelMainModel;
+import org.zeroturnaround.jrebel.gradle.model.compact.RebelCompactModel;
+
+/**
+ * The RebelToolingModel sent to the Tooling API client (serialized).
+ *
+ * It holds the models of all the projects of the build at once, so they're kept in their compact form (interned
+ * with the shared interner) and only expanded when asked for.
+ */
+public class DefaultRebelToolingModel implements RebelToolingModel, Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final Map<String, RebelCompactModel> projectModels = new LinkedHashMap<String, RebelCompactModel>();
+
+  private final Map<String, File> rebelXmlFiles = new LinkedHashMap<String, File>();
+
+  public void addProject(String projectPath, RebelMainModel model, File rebelXmlFile) {
+    projectModels.put(projectPath, RebelCompactModel.from(model));
+    rebelXmlFiles.put(projectPath, rebelXmlFile);
+  }
+
+  /**
+   * Fresh (mutable) copies of the models
+   */
+  public Map<String, RebelMainModel> getProjectModels() {
+    Map<String, RebelMainModel> models = new LinkedHashMap<String, RebelMainModel>();
+    for (Map.Entry<String, RebelCompactModel> projectModel : projectModels.entrySet()) {
+      models.put(projectModel.getKey(), projectModel.getValue().toMainModel());
+    }
+    return Collections.unmodifiableMap(models);
+  }
+
+  public Map<String, File> getRebelXmlFiles() {
+    return Collections.unmodifiableMap(rebelXmlFiles);
+  }
+
+  public String toString() {
+    ToStringBuilder builder = new ToStringBuilder(this);
+    builder.append("projectModels", getProjectModels());
+    builder.append("rebelXmlFiles", rebelXmlFiles);
+    return builder.toString();
+  }
+
+}
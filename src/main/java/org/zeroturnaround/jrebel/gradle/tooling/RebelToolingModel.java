@@ -0,0 +1,41 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle.tooling;
+
+import java.io.File;
+import java.util.Map;
+
+import org.zeroturnaround.jrebel.gradle.model.RebelMainModel;
+
+/**
+ * The JRebel layout of a whole build, for IDE integrations: fetched through the Tooling API with
+ * ProjectConnection#getModel(RebelToolingModel.class) in one round trip, without executing any tasks.
+ *
+ * Only the projects with the rebel plugin and JavaPlugin applied are included.
+ */
+public interface RebelToolingModel {
+
+  /**
+   * The resolved model of each project, keyed by project path
+   */
+  Map<String, RebelMainModel> getProjectModels();
+
+  /**
+   * Where generateRebel writes rebel.xml in each project, keyed by project path
+   */
+  Map<String, File> getRebelXmlFiles();
+
+}
@@ -0,0 +1,74 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle.tooling;
+
+import org.gradle.api.Project;
+import org.gradle.api.Task;
+import org.gradle.api.plugins.ExtraPropertiesExtension;
+import org.gradle.tooling.provider.model.ToolingModelBuilder;
+import org.gradle.tooling.provider.model.ToolingModelBuilderRegistry;
+import org.zeroturnaround.jrebel.gradle.RebelGenerateTask;
+import org.zeroturnaround.jrebel.gradle.RebelPlugin;
+import org.zeroturnaround.jrebel.gradle.model.RebelMainModel;
+
+/**
+ * Builds the RebelToolingModel of the whole build, whichever project it's requested for. The models are resolved
+ * from the configuration by RebelGenerateTask#resolveModel, the same way generateRebel builds them, but without
+ * running (or depending on) anything.
+ *
+ * The registry is shared by all the projects of the build, so the builder is registered once per build.
+ */
+public class RebelToolingModelBuilder implements ToolingModelBuilder {
+
+  /**
+   * Extra property of the root project, set once the builder is registered
+   */
+  private static final String REGISTERED_PROPERTY = "rebelToolingModelBuilderRegistered";
+
+  /**
+   * Make sure the build's registry has a builder. Safe to call from every project applying the plugin.
+   */
+  public static synchronized void register(Project project, ToolingModelBuilderRegistry registry) {
+    ExtraPropertiesExtension extraProperties = project.getRootProject().getExtensions().getExtraProperties();
+    if (!extraProperties.has(REGISTERED_PROPERTY)) {
+      registry.register(new RebelToolingModelBuilder());
+      extraProperties.set(REGISTERED_PROPERTY, Boolean.TRUE);
+    }
+  }
+
+  public boolean canBuild(String modelName) {
+    return RebelToolingModel.class.getName().equals(modelName);
+  }
+
+  public Object buildAll(String modelName, Project project) {
+    DefaultRebelToolingModel toolingModel = new DefaultRebelToolingModel();
+
+    for (Project p : project.getRootProject().getAllprojects()) {
+      Task task = p.getTasks().findByName(RebelPlugin.GENERATE_REBEL_TASK_NAME);
+      if (!(task instanceof RebelGenerateTask)) {
+        continue;
+      }
+      RebelGenerateTask generateRebelTask = (RebelGenerateTask) task;
+      RebelMainModel model = generateRebelTask.resolveModel();
+      if (model == null) {
+        continue;
+      }
+      toolingModel.addProject(p.getPath(), model, generateRebelTask.getRebelXmlFile());
+    }
+    return toolingModel;
+  }
+
+}
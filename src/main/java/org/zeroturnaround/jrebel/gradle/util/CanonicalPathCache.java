@@ -0,0 +1,182 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Canonical paths of files and directories, cached across the builds a Gradle daemon runs for a root project.
+ * Canonicalization resolves every path element from the file system, while a build in a warm daemon mostly asks for
+ * the very same paths as the previous one.
+ *
+ * An entry is only used while its parent directory has the last-modified time it had when the entry was cached:
+ * replacing the file, or a symlink in its place, changes the parent directory. That takes a single stat instead of
+ * resolving the whole path; a symlink retargeted further up the path goes unnoticed. The least recently used entries
+ * are dropped once the cache is full.
+ */
+public class CanonicalPathCache {
+
+  public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+  /**
+   * Root projects whose caches are kept, the least recently built one is dropped first
+   */
+  private static final int MAX_ROOTS = 8;
+
+  private static final Map<String, CanonicalPathCache> BY_ROOT = new LinkedHashMap<String, CanonicalPathCache>(16, 0.75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, CanonicalPathCache> eldest) {
+      return size() > MAX_ROOTS;
+    }
+  };
+
+  private static class Entry {
+
+    private final String canonicalPath;
+
+    private final long parentLastModified;
+
+    Entry(String canonicalPath, long parentLastModified) {
+      this.canonicalPath = canonicalPath;
+      this.parentLastModified = parentLastModified;
+    }
+  }
+
+  private final Map<String, Entry> entries;
+
+  private long hits;
+
+  private long misses;
+
+  private long stale;
+
+  public CanonicalPathCache(final int maxEntries) {
+    entries = new LinkedHashMap<String, Entry>(256, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  /**
+   * The cache of the builds of the given root project (directory), kept for as long as the plugin's class loader
+   * lives, i.e. the daemon.
+   */
+  public static CanonicalPathCache forRootDir(File rootDir) {
+    String key = rootDir.getAbsolutePath();
+    synchronized (BY_ROOT) {
+      CanonicalPathCache cache = BY_ROOT.get(key);
+      if (cache == null) {
+        cache = new CanonicalPathCache(DEFAULT_MAX_ENTRIES);
+        BY_ROOT.put(key, cache);
+      }
+      return cache;
+    }
+  }
+
+  /**
+   * Same as File#getCanonicalPath. Tells whether the cache was hit through the returned Lookup.
+   */
+  public Lookup getCanonicalPath(File file) throws IOException {
+    File absoluteFile = file.getAbsoluteFile();
+    String key = absoluteFile.getPath();
+    File parent = absoluteFile.getParentFile();
+    long parentLastModified = parent != null ? FileUtil.lastModified(parent) : 0;
+
+    Entry cached;
+    synchronized (this) {
+      cached = entries.get(key);
+      if (cached != null) {
+        if (cached.parentLastModified == parentLastModified) {
+          hits++;
+        }
+        else {
+          stale++;
+          cached = null;
+        }
+      }
+    }
+    if (cached != null) {
+      return new Lookup(cached.canonicalPath, true);
+    }
+
+    // canonicalize outside the lock, other threads may look up other paths meanwhile
+    String canonicalPath = file.getCanonicalPath();
+    synchronized (this) {
+      misses++;
+      entries.put(key, new Entry(canonicalPath, parentLastModified));
+    }
+    return new Lookup(canonicalPath, false);
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * Lookups that had to canonicalize, stale entries included
+   */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * Entries found but not used because their parent directory had changed
+   */
+  public synchronized long getStale() {
+    return stale;
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  /**
+   * Result of a lookup: the canonical path and whether it came from the cache.
+   */
+  public static class Lookup {
+
+    private final String canonicalPath;
+
+    private final boolean hit;
+
+    Lookup(String canonicalPath, boolean hit) {
+      this.canonicalPath = canonicalPath;
+      this.hit = hit;
+    }
+
+    public String getCanonicalPath() {
+      return canonicalPath;
+    }
+
+    public boolean isHit() {
+      return hit;
+    }
+  }
+
+}
@@ -0,0 +1,268 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle.util;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.gradle.api.Task;
+
+/**
+ * Looks into the copy specs of a Copy-like task (processResources), which Gradle keeps in its internal API.
+ *
+ * Everything is looked up reflectively. Any surprise (another Gradle version, a task that isn't a copy task) is
+ * answered conservatively: the task may change the files it copies and nothing is known about what it copies from
+ * where, so that callers fall back to the task's output instead of guessing.
+ */
+public class CopySpecUtil {
+
+  /**
+   * The jar task (and the war task extending it) excludes META-INF/MANIFEST.MF of its sources with an action of its
+   * own on the main spec: an inner class of Jar, on Gradle 1.x a closure declared in Jar
+   */
+  private static final String[] ARCHIVE_TASK_ACTION_PREFIXES = { "org.gradle.jvm.tasks.Jar$", "org.gradle.api.tasks.bundling.Jar$" };
+
+  /**
+   * True if any spec of the task has copy actions, i.e. filter(), expand(), rename(), eachFile() or filesMatching()
+   * was used, or if that can't be determined.
+   */
+  public static boolean mayTransformFiles(Task copyTask) {
+    try {
+      Object rootSpec = invoke(copyTask, "getRootSpec");
+      return rootSpec == null || hasCopyActions(rootSpec);
+    }
+    catch (Exception e) {
+      return true;
+    }
+  }
+
+  /**
+   * What the task copies, spec by spec: each source (as given to from()) with its destination path and patterns.
+   * Specs with copy actions (on themselves or a parent) are left out, as are specs whose patterns can't be expressed
+   * as a single list of includes and excludes. Empty if the specs can't be read.
+   */
+  public static List<SourceMapping> getSourceMappings(Task copyTask) {
+    List<SourceMapping> mappings = new ArrayList<SourceMapping>();
+    try {
+      Object rootSpec = invoke(copyTask, "getRootSpec");
+      if (rootSpec != null) {
+        collectSourceMappings(rootSpec, "", Collections.<String>emptyList(), Collections.<String>emptyList(), mappings);
+      }
+    }
+    catch (Exception e) {
+      return Collections.emptyList();
+    }
+    return mappings;
+  }
+
+  private static void collectSourceMappings(Object spec, String parentPath, List<String> parentIncludes,
+      List<String> parentExcludes, List<SourceMapping> mappings) throws Exception
+  {
+    Object copyActions = getCopyActions(spec);
+    if (!(copyActions instanceof Collection) || !((Collection<?>) copyActions).isEmpty()) {
+      return;
+    }
+    Object actual = unwrap(spec);
+
+    String destinationPath = parentPath;
+    Object destPath = invoke(actual, "getDestPath");
+    if (destPath instanceof String) {
+      // relative to the parent spec
+      destinationPath = joinPaths(parentPath, (String) destPath);
+    }
+    else if (destPath != null) {
+      // Gradle 1.x: a RelativePath, already including the parents
+      destinationPath = String.valueOf(invoke(destPath, "getPathString"));
+    }
+
+    List<String> includes = toList(invoke(actual, "getIncludes"));
+    if (includes.isEmpty()) {
+      includes = parentIncludes;
+    }
+    else if (!parentIncludes.isEmpty()) {
+      // a file has to match both
+      return;
+    }
+    List<String> excludes = new ArrayList<String>(parentExcludes);
+    excludes.addAll(toList(invoke(actual, "getExcludes")));
+
+    Object sourcePaths = invoke(actual, "getSourcePaths");
+    if (sourcePaths instanceof Collection) {
+      for (Object sourcePath : (Collection<?>) sourcePaths) {
+        mappings.add(new SourceMapping(sourcePath, destinationPath, includes, excludes));
+      }
+    }
+
+    Object children = invoke(actual, "getChildren");
+    if (children instanceof Iterable) {
+      for (Object child : (Iterable<?>) children) {
+        collectSourceMappings(child, destinationPath, includes, excludes, mappings);
+      }
+    }
+  }
+
+  private static Object unwrap(Object spec) throws Exception {
+    Object delegate = invoke(spec, "getDelegateCopySpec");
+    return delegate != null && delegate != spec ? unwrap(delegate) : spec;
+  }
+
+  private static String joinPaths(String parentPath, String path) {
+    String normalized = path.replace('\\', '/');
+    while (normalized.startsWith("/")) {
+      normalized = normalized.substring(1);
+    }
+    while (normalized.endsWith("/")) {
+      normalized = normalized.substring(0, normalized.length() - 1);
+    }
+    if (parentPath.length() == 0) {
+      return normalized;
+    }
+    return normalized.length() == 0 ? parentPath : parentPath + "/" + normalized;
+  }
+
+  private static List<String> toList(Object patterns) {
+    List<String> list = new ArrayList<String>();
+    if (patterns instanceof Collection) {
+      for (Object pattern : (Collection<?>) patterns) {
+        list.add(String.valueOf(pattern));
+      }
+    }
+    return list;
+  }
+
+  private static boolean hasCopyActions(Object spec) throws Exception {
+    Object copyActions = getCopyActions(spec);
+    if (!(copyActions instanceof Collection)) {
+      return true;
+    }
+    if (!((Collection<?>) copyActions).isEmpty()) {
+      return true;
+    }
+
+    Object children = invoke(spec, "getChildren");
+    if (!(children instanceof Iterable)) {
+      return true;
+    }
+    for (Object child : (Iterable<?>) children) {
+      if (hasCopyActions(child)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * The copy actions of the spec that may change files, null if they can't be read
+   */
+  private static Object getCopyActions(Object spec) throws Exception {
+    Object copyActions = invoke(spec, "getCopyActions");
+    if (copyActions == null) {
+      // Gradle 1.x
+      copyActions = invoke(spec, "getAllCopyActions");
+    }
+    if (copyActions == null) {
+      // the root spec of a task wraps the real one
+      Object delegate = invoke(spec, "getDelegateCopySpec");
+      if (delegate != null && delegate != spec) {
+        return getCopyActions(delegate);
+      }
+    }
+    if (!(copyActions instanceof Collection)) {
+      return copyActions;
+    }
+    List<Object> transforming = new ArrayList<Object>();
+    for (Object copyAction : (Collection<?>) copyActions) {
+      if (!isArchiveTaskAction(copyAction)) {
+        transforming.add(copyAction);
+      }
+    }
+    return transforming;
+  }
+
+  private static boolean isArchiveTaskAction(Object copyAction) throws Exception {
+    Object closure = invoke(copyAction, "getClosure");
+    String className = (closure != null ? closure : copyAction).getClass().getName();
+    for (String prefix : ARCHIVE_TASK_ACTION_PREFIXES) {
+      if (className.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * One from() of a copy spec: the files of 'sourcePath' end up under 'destinationPath' ('/'-separated, relative to
+   * the task's destination, "" for the root), filtered by the includes and excludes.
+   */
+  public static class SourceMapping {
+
+    private final Object sourcePath;
+
+    private final String destinationPath;
+
+    private final List<String> includes;
+
+    private final List<String> excludes;
+
+    SourceMapping(Object sourcePath, String destinationPath, List<String> includes, List<String> excludes) {
+      this.sourcePath = sourcePath;
+      this.destinationPath = destinationPath;
+      this.includes = Collections.unmodifiableList(new ArrayList<String>(includes));
+      this.excludes = Collections.unmodifiableList(new ArrayList<String>(excludes));
+    }
+
+    /**
+     * As given to from(), to be resolved with Project#files
+     */
+    public Object getSourcePath() {
+      return sourcePath;
+    }
+
+    public String getDestinationPath() {
+      return destinationPath;
+    }
+
+    public List<String> getIncludes() {
+      return includes;
+    }
+
+    public List<String> getExcludes() {
+      return excludes;
+    }
+
+  }
+
+  /**
+   * Call a public or protected no-arg method declared anywhere in the class hierarchy, null if there's none
+   */
+  private static Object invoke(Object target, String methodName) throws Exception {
+    for (Class<?> clazz = target.getClass(); clazz != null; clazz = clazz.getSuperclass()) {
+      try {
+        Method method = clazz.getDeclaredMethod(methodName);
+        method.setAccessible(true);
+        return method.invoke(target);
+      }
+      catch (NoSuchMethodException e) {
+        // look further up
+      }
+    }
+    return null;
+  }
+
+}
@@ -0,0 +1,44 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle.util;
+
+/**
+ * Receives the file system work done by FileUtil on the thread it is bound to, see
+ * {@link FileUtil#setCounter(FileOperationCounter)}. Implementations are called from several threads at once.
+ */
+public interface FileOperationCounter {
+
+  /**
+   * One File#getCanonicalPath call
+   */
+  void countCanonicalization();
+
+  /**
+   * One canonical path served from the CanonicalPathCache (instead of a File#getCanonicalPath call)
+   */
+  void countPathCacheHit();
+
+  /**
+   * One file system stat call (exists, isDirectory, lastModified, length, ..)
+   */
+  void countStat();
+
+  /**
+   * Path of the project the work is done for, for the JFR events.
+   */
+  String getProjectPath();
+
+}
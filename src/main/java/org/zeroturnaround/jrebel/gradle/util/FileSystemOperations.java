@@ -0,0 +1,77 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle.util;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The file operations java.io can't do: hard links and moves replacing the target atomically.
+ *
+ * This class doesn't reference the java.nio.file API (Java 7+) itself: on older JVMs no links are created, the
+ * callers copy instead, and files are moved with File#renameTo.
+ */
+public abstract class FileSystemOperations {
+
+  private static final FileSystemOperations INSTANCE = create();
+
+  public static FileSystemOperations get() {
+    return INSTANCE;
+  }
+
+  /**
+   * Create a hard link to an existing file. False if the JVM or the file system doesn't support hard links, then the
+   * caller has to copy the file.
+   *
+   * @throws IOException e.g. the files are on different file systems
+   */
+  public abstract boolean createLink(File link, File existing) throws IOException;
+
+  /**
+   * Move a file over the target, atomically where the file system supports it
+   */
+  public abstract void move(File source, File target) throws IOException;
+
+  private static FileSystemOperations create() {
+    try {
+      Class.forName("java.nio.file.Files");
+      return (FileSystemOperations) Class.forName("org.zeroturnaround.jrebel.gradle.util.NioFileSystemOperations").newInstance();
+    }
+    catch (Throwable e) {
+      // Java 6 or older
+      return new LegacyFileSystemOperations();
+    }
+  }
+
+  private static class LegacyFileSystemOperations extends FileSystemOperations {
+
+    public boolean createLink(File link, File existing) {
+      return false;
+    }
+
+    public void move(File source, File target) throws IOException {
+      if (source.renameTo(target)) {
+        return;
+      }
+      // e.g. Windows doesn't rename over an existing file
+      target.delete();
+      if (!source.renameTo(target)) {
+        throw new IOException("Failed moving \"" + source + "\" to \"" + target + "\"");
+      }
+    }
+  }
+
+}
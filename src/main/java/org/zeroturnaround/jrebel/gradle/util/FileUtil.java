@@ -1,21 +1,67 @@
 package org.zeroturnaround.jrebel.gradle.util;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.util.Set;
 
 import org.apache.commons.lang.StringUtils;
 import org.gradle.tooling.BuildException;
+import org.zeroturnaround.jrebel.gradle.jfr.RebelFlightRecorder;
 
 public class FileUtil {
 
+  private static final ThreadLocal<FileOperationCounter> COUNTER = new ThreadLocal<FileOperationCounter>();
+
+  private static final ThreadLocal<CanonicalPathCache> PATH_CACHE = new ThreadLocal<CanonicalPathCache>();
+
+  /**
+   * Count the file system work of this thread into the given counter, null to stop counting.
+   */
+  public static void setCounter(FileOperationCounter counter) {
+    if (counter == null) {
+      COUNTER.remove();
+    }
+    else {
+      COUNTER.set(counter);
+    }
+  }
+
+  /**
+   * Counter bound to this thread, null if none. Hand it over to worker threads to have their work counted too.
+   */
+  public static FileOperationCounter getCounter() {
+    return COUNTER.get();
+  }
+
+  /**
+   * Canonicalize through the given cache on this thread, null to canonicalize every time.
+   */
+  public static void setPathCache(CanonicalPathCache cache) {
+    if (cache == null) {
+      PATH_CACHE.remove();
+    }
+    else {
+      PATH_CACHE.set(cache);
+    }
+  }
+
   /**
    * file writer helper
    */
   public static void writeToFile(File file, String contents) throws IOException {
+    RebelFlightRecorder.Span span = RebelFlightRecorder.get().beginWrite(currentProjectPath(), file.getPath());
     Writer w = null;
     try {
       FileOutputStream is = new FileOutputStream(file);
@@ -24,19 +70,193 @@ public class FileUtil {
       w.write(contents);
     }
     finally {
-      w.close();
+      try {
+        if (w != null) {
+          w.close();
+        }
+      }
+      finally {
+        if (span != RebelFlightRecorder.NOOP_SPAN) {
+          span.bytes(file.length());
+        }
+        span.finish();
+      }
     }
   }
  
+  /**
+   * The contents of a file written by {@link #writeToFile(File, String)}
+   */
+  public static String readFile(File file) throws IOException {
+    Reader r = null;
+    try {
+      r = new BufferedReader(new InputStreamReader(new FileInputStream(file)));
+      StringBuilder contents = new StringBuilder();
+      char[] buffer = new char[8192];
+      int read;
+      while ((read = r.read(buffer)) != -1) {
+        contents.append(buffer, 0, read);
+      }
+      return contents.toString();
+    }
+    finally {
+      closeQuietly(r);
+    }
+  }
+
+  /**
+   * File#getCanonicalPath, through the CanonicalPathCache bound to this thread if there is one
+   */
   public static String getCanonicalPath(File file) throws BuildException {
+    RebelFlightRecorder.Span span = RebelFlightRecorder.get().beginCanonicalization(currentProjectPath(), file.getPath());
     try {
-      return file.getCanonicalPath();
+      CanonicalPathCache cache = PATH_CACHE.get();
+      CanonicalPathCache.Lookup lookup = cache != null ? cache.getCanonicalPath(file) : null;
+      FileOperationCounter counter = COUNTER.get();
+      if (counter != null) {
+        if (lookup != null && lookup.isHit()) {
+          counter.countPathCacheHit();
+        }
+        else {
+          counter.countCanonicalization();
+        }
+      }
+      return lookup != null ? lookup.getCanonicalPath() : file.getCanonicalPath();
     }
     catch (IOException e) {
       throw new BuildException("Failed to get canonical path of " + file.getAbsolutePath(), e);
     }
+    finally {
+      span.finish();
+    }
+  }
+
+  /**
+   * Path of the project whose work is counted on this thread, for the JFR events.
+   */
+  private static String currentProjectPath() {
+    FileOperationCounter counter = COUNTER.get();
+    return counter != null ? counter.getProjectPath() : null;
+  }
+
+  private static void countStat() {
+    FileOperationCounter counter = COUNTER.get();
+    if (counter != null) {
+      counter.countStat();
+    }
   }
   
+  /**
+   * Close a stream, ignoring null and any failure
+   */
+  public static void closeQuietly(Closeable closeable) {
+    if (closeable == null) {
+      return;
+    }
+    try {
+      closeable.close();
+    }
+    catch (IOException e) {
+      // ignore
+    }
+  }
+
+  /**
+   * Copy a file with FileChannel#transferTo, i.e. without the contents passing through the Java heap (zero-copy
+   * where the OS supports it). The target is replaced and gets the source's timestamp.
+   */
+  public static void copyFile(File source, File target) throws IOException {
+    FileInputStream in = null;
+    FileOutputStream out = null;
+    try {
+      in = new FileInputStream(source);
+      out = new FileOutputStream(target);
+      FileChannel sourceChannel = in.getChannel();
+      FileChannel targetChannel = out.getChannel();
+      long size = sourceChannel.size();
+      long position = 0;
+      while (position < size) {
+        position += sourceChannel.transferTo(position, size - position, targetChannel);
+      }
+      out.close();
+    }
+    finally {
+      closeQuietly(in);
+      closeQuietly(out);
+    }
+    target.setLastModified(source.lastModified());
+  }
+
+  /**
+   * Whether the two files have the same contents
+   */
+  public static boolean contentEquals(File file1, File file2) throws IOException {
+    if (file1.length() != file2.length()) {
+      return false;
+    }
+    InputStream in1 = null;
+    InputStream in2 = null;
+    try {
+      in1 = new BufferedInputStream(new FileInputStream(file1));
+      in2 = new BufferedInputStream(new FileInputStream(file2));
+      int b;
+      do {
+        b = in1.read();
+        if (b != in2.read()) {
+          return false;
+        }
+      }
+      while (b != -1);
+      return true;
+    }
+    finally {
+      closeQuietly(in1);
+      closeQuietly(in2);
+    }
+  }
+
+  /**
+   * For the walks that follow symlinked directories: records the directory by its canonical path, false if it was
+   * walked already (e.g. a link back to an ancestor) or can't be resolved (e.g. a dangling link), so it's skipped.
+   */
+  public static boolean markVisited(Set<String> visitedDirs, File dir) {
+    try {
+      return visitedDirs.add(dir.getCanonicalPath());
+    }
+    catch (IOException e) {
+      return false;
+    }
+  }
+
+  /*
+   * Stat helpers, counted into the counter bound to this thread.
+   */
+
+  public static boolean exists(File file) {
+    countStat();
+    return file.exists();
+  }
+
+  public static boolean isDirectory(File file) {
+    countStat();
+    return file.isDirectory();
+  }
+
+  public static boolean isFile(File file) {
+    countStat();
+    return file.isFile();
+  }
+
+  public static long lastModified(File file) {
+    countStat();
+    return file.lastModified();
+  }
+
+  public static long length(File file) {
+    countStat();
+    return file.length();
+  }
+
   public static boolean isRelativeToPath(File baseDir, File file) throws BuildException {
     String basedirpath = FileUtil.getCanonicalPath(baseDir);
     String absolutePath = FileUtil.getCanonicalPath(file);
@@ -17,10 +17,22 @@ public class LoggerWrapper {
     this.wrappedLogger = _wrappedLogger;
   }
 
+  public boolean isInfoEnabled() {
+    return wrappedLogger.isInfoEnabled();
+  }
+
+  public boolean isDebugEnabled() {
+    return wrappedLogger.isDebugEnabled();
+  }
+
   public void error(String msg) {
     wrappedLogger.error(PREFIX + msg);
   }
   
+  public void warn(String msg) {
+    wrappedLogger.warn(PREFIX + msg);
+  }
+  
   public void info(String msg) {
     wrappedLogger.info(PREFIX + msg);
   }
@@ -32,5 +44,34 @@ public class LoggerWrapper {
   public void trace(String msg) {
     wrappedLogger.trace(PREFIX + msg);
   }
+
+  /*
+   * Parameterized variants ('{}' placeholders). Nothing is concatenated and the arguments' toString() is not
+   * called unless the level is enabled -- use these whenever the message isn't a constant.
+   */
+
+  public void lifecycle(String format, Object... args) {
+    if (wrappedLogger.isLifecycleEnabled()) {
+      wrappedLogger.lifecycle(PREFIX + format, args);
+    }
+  }
+
+  public void info(String format, Object... args) {
+    if (wrappedLogger.isInfoEnabled()) {
+      wrappedLogger.info(PREFIX + format, args);
+    }
+  }
+
+  public void debug(String format, Object... args) {
+    if (wrappedLogger.isDebugEnabled()) {
+      wrappedLogger.debug(PREFIX + format, args);
+    }
+  }
+
+  public void trace(String format, Object... args) {
+    if (wrappedLogger.isTraceEnabled()) {
+      wrappedLogger.trace(PREFIX + format, args);
+    }
+  }
   
 }
\ No newline at end of file
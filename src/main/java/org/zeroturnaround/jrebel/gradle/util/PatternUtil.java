@@ -0,0 +1,122 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle.util;
+
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Ant-style include/exclude pattern matching, the same flavour JRebel uses for the &lt;include&gt; and
+ * &lt;exclude&gt; elements in rebel.xml.
+ *
+ * Paths are always relative and '/'-separated. A pattern ending with '/' is treated as if it was followed by '**'.
+ */
+public class PatternUtil {
+
+  /**
+   * True if the relative path passes the given includes and excludes. An empty (or null) list of includes
+   * means "include everything".
+   */
+  public static boolean isIncluded(String relativePath, List<String> includes, List<String> excludes) {
+    if (excludes != null) {
+      for (String exclude : excludes) {
+        if (matchPath(exclude, relativePath)) {
+          return false;
+        }
+      }
+    }
+
+    if (includes == null || includes.isEmpty()) {
+      return true;
+    }
+
+    for (String include : includes) {
+      if (matchPath(include, relativePath)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Match a whole relative path against an Ant-style pattern ('**' spans directories, '*' and '?' don't).
+   */
+  public static boolean matchPath(String pattern, String path) {
+    String normalizedPattern = StringUtils.replace(pattern, "\\", "/");
+    if (normalizedPattern.endsWith("/")) {
+      normalizedPattern = normalizedPattern + "**";
+    }
+
+    String[] patternParts = StringUtils.split(normalizedPattern, '/');
+    String[] pathParts = StringUtils.split(StringUtils.replace(path, "\\", "/"), '/');
+
+    return matchParts(patternParts, 0, pathParts, 0);
+  }
+
+  private static boolean matchParts(String[] pattern, int patternIdx, String[] path, int pathIdx) {
+    while (patternIdx < pattern.length) {
+      String part = pattern[patternIdx];
+
+      if (part.equals("**")) {
+        // collapse consecutive '**' elements
+        while (patternIdx + 1 < pattern.length && pattern[patternIdx + 1].equals("**")) {
+          patternIdx++;
+        }
+        if (patternIdx + 1 == pattern.length) {
+          return true;
+        }
+        for (int i = pathIdx; i < path.length; i++) {
+          if (matchParts(pattern, patternIdx + 1, path, i)) {
+            return true;
+          }
+        }
+        return false;
+      }
+
+      if (pathIdx >= path.length || !matchSegment(part, 0, path[pathIdx], 0)) {
+        return false;
+      }
+      patternIdx++;
+      pathIdx++;
+    }
+    return pathIdx == path.length;
+  }
+
+  /**
+   * Match a single path segment against a pattern segment containing '*' and '?' wildcards.
+   */
+  private static boolean matchSegment(String pattern, int p, String str, int s) {
+    while (p < pattern.length()) {
+      char c = pattern.charAt(p);
+      if (c == '*') {
+        for (int i = s; i <= str.length(); i++) {
+          if (matchSegment(pattern, p + 1, str, i)) {
+            return true;
+          }
+        }
+        return false;
+      }
+      if (s >= str.length() || (c != '?' && c != str.charAt(s))) {
+        return false;
+      }
+      p++;
+      s++;
+    }
+    return s == str.length();
+  }
+
+}
@@ -0,0 +1,267 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle.perf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.gradle.testkit.runner.BuildResult;
+import org.gradle.testkit.runner.GradleRunner;
+import org.gradle.testkit.runner.TaskOutcome;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.zeroturnaround.jrebel.gradle.RebelMetricsAggregator;
+
+/**
+ * Runs synthetic multi-project builds (1, 50 and 500 subprojects, every fourth of them a war project) through
+ * Gradle TestKit and measures configuration time, generateRebel execution time and the re-run that Gradle skips
+ * as up to date.
+ *
+ * Two checks are made against baseline.properties:
+ * <ul>
+ *   <li>scaling, on any machine: the cost per project of the 500-project build must stay within 'scaling.tolerance'
+ *   of the cost per project of the 50-project build, so work growing faster than the number of projects fails;</li>
+ *   <li>absolute timings, only on the kind of machine they were measured on (same OS, architecture and CPU count).</li>
+ * </ul>
+ *
+ * Not part of 'gradle test' -- run it with 'gradle perfTest'. The measured values are written into
+ * build/reports/perfTest/results.properties, together with the machine they were measured on.
+ */
+public class RebelPluginPerformanceTest {
+
+  private static final String BASELINE = "baseline.properties";
+
+  private static final String MACHINE_KEY = "machine";
+
+  private static final String MACHINE_DETAILS_KEY = "machine.details";
+
+  /**
+   * The builds compared by the scaling check
+   */
+  private static final int SMALL_BUILD = 50;
+
+  private static final int LARGE_BUILD = 500;
+
+  private static final String[] SCALING_MEASUREMENTS = { "configuration", "generateRebel" };
+
+  private static Properties baseline;
+
+  private static Properties results = new Properties();
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @BeforeClass
+  public static void loadBaseline() throws IOException {
+    baseline = new Properties();
+    InputStream in = RebelPluginPerformanceTest.class.getResourceAsStream(BASELINE);
+    try {
+      baseline.load(in);
+    }
+    finally {
+      IOUtils.closeQuietly(in);
+    }
+  }
+
+  /**
+   * What the absolute timings depend on and doesn't change from run to run, e.g. "Linux amd64, 8 CPUs"
+   */
+  private static String machineKey() {
+    return System.getProperty("os.name") + " " + System.getProperty("os.arch") + ", "
+        + Runtime.getRuntime().availableProcessors() + " CPUs";
+  }
+
+  /**
+   * OS, CPUs, memory and the JVM, e.g. "Linux 4.15.0 amd64, 8 CPUs, 3641 MB max heap, Java 1.8.0_202 (Oracle Corporation)"
+   */
+  private static String describeMachine() {
+    Runtime runtime = Runtime.getRuntime();
+    return System.getProperty("os.name") + " " + System.getProperty("os.version") + " " + System.getProperty("os.arch")
+        + ", " + runtime.availableProcessors() + " CPUs, " + runtime.maxMemory() / (1024 * 1024) + " MB max heap, Java "
+        + System.getProperty("java.version") + " (" + System.getProperty("java.vendor") + ")";
+  }
+
+  @AfterClass
+  public static void writeResults() throws IOException {
+    results.setProperty(MACHINE_KEY, machineKey());
+    results.setProperty(MACHINE_DETAILS_KEY, describeMachine());
+    File resultsFile = new File(System.getProperty("rebel.perfTest.resultsDir", "build/reports/perfTest"), "results.properties");
+    resultsFile.getParentFile().mkdirs();
+    FileOutputStream out = new FileOutputStream(resultsFile);
+    try {
+      results.store(out, "RebelPluginPerformanceTest results (milliseconds)");
+    }
+    finally {
+      IOUtils.closeQuietly(out);
+    }
+  }
+
+  @Test
+  public void testSingleProject() throws Exception {
+    measure(1);
+  }
+
+  @Test
+  public void testFiftyProjects() throws Exception {
+    measure(50);
+  }
+
+  @Test
+  public void testFiveHundredProjects() throws Exception {
+    measure(500);
+  }
+
+  /**
+   * Measures the two builds again if they haven't been measured in this run yet
+   */
+  @Test
+  public void testScaling() throws Exception {
+    List<String> regressions = new ArrayList<String>();
+    double tolerance = Double.parseDouble(baseline.getProperty("scaling.tolerance", "0.5"));
+    for (String measurement : SCALING_MEASUREMENTS) {
+      double small = perProject(SMALL_BUILD, measurement);
+      double large = perProject(LARGE_BUILD, measurement);
+      double limit = small * (1 + tolerance);
+      if (large > limit) {
+        regressions.add(String.format("%s takes %.1f ms per project with %d projects, %.1f ms with %d projects"
+            + " (the limit is %.1f ms)", measurement, large, LARGE_BUILD, small, SMALL_BUILD, limit));
+      }
+    }
+    if (!regressions.isEmpty()) {
+      fail("Performance regression: " + regressions);
+    }
+  }
+
+  private double perProject(int projects, String measurement) throws Exception {
+    String key = "projects." + projects + "." + measurement;
+    if (results.getProperty(key) == null) {
+      measure(projects);
+    }
+    return Double.parseDouble(results.getProperty(key)) / projects;
+  }
+
+  private void measure(int projects) throws Exception {
+    File projectDir = tempFolder.newFolder("build-" + projects);
+    generateBuild(projectDir, projects);
+
+    // warm up the daemon (and let it compile the build scripts) so that we measure the plugin, not the daemon start
+    run(projectDir, "help");
+
+    long configuration = time(projectDir, "help");
+    long generateRebel = time(projectDir, "generateRebel");
+
+    // nothing changed: Gradle checks the declared inputs and outputs and doesn't execute generateRebel at all
+    long start = System.nanoTime();
+    BuildResult rerun = run(projectDir, "generateRebel");
+    long upToDate = (System.nanoTime() - start) / 1000000;
+    assertEquals(TaskOutcome.UP_TO_DATE, rerun.task(":module-0:generateRebel").getOutcome());
+
+    File aggregateReport = new File(projectDir, "build/reports/rebel/" + RebelMetricsAggregator.AGGREGATE_REPORT_NAME);
+    assertTrue("No aggregated metrics report at " + aggregateReport, aggregateReport.isFile());
+    assertTrue(FileUtils.readFileToString(aggregateReport).contains("\"projectCount\": " + projects));
+
+    List<String> regressions = new ArrayList<String>();
+    compare(projects, "configuration", configuration, regressions);
+    compare(projects, "generateRebel", generateRebel, regressions);
+    compare(projects, "upToDate", upToDate, regressions);
+
+    if (!regressions.isEmpty()) {
+      fail("Performance regression: " + regressions);
+    }
+  }
+
+  private void compare(int projects, String measurement, long millis, List<String> regressions) {
+    String key = "projects." + projects + "." + measurement;
+    results.setProperty(key, String.valueOf(millis));
+
+    String expected = baseline.getProperty(key);
+    if (expected == null || !machineKey().equals(baseline.getProperty(MACHINE_KEY))) {
+      return;
+    }
+    double tolerance = Double.parseDouble(baseline.getProperty("tolerance", "0.25"));
+    long limit = (long) (Long.parseLong(expected.trim()) * (1 + tolerance));
+    if (millis > limit) {
+      regressions.add(key + " took " + millis + " ms, the limit is " + limit + " ms");
+    }
+  }
+
+  private static long time(File projectDir, String task) {
+    long start = System.nanoTime();
+    run(projectDir, task);
+    return (System.nanoTime() - start) / 1000000;
+  }
+
+  private static BuildResult run(File projectDir, String task) {
+    return GradleRunner.create()
+        .withProjectDir(projectDir)
+        .withPluginClasspath(pluginClasspath())
+        .withArguments(task, "--offline", "--stacktrace")
+        .build();
+  }
+
+  private static List<File> pluginClasspath() {
+    List<File> classpath = new ArrayList<File>();
+    for (String path : System.getProperty("rebel.pluginClasspath").split(File.pathSeparator)) {
+      classpath.add(new File(path));
+    }
+    return classpath;
+  }
+
+  /**
+   * A root project with the given number of subprojects, no sources, no dependencies.
+   */
+  private static void generateBuild(File projectDir, int projects) throws IOException {
+    StringBuilder settings = new StringBuilder("rootProject.name = 'perf-" + projects + "'\n");
+    for (int i = 0; i < projects; i++) {
+      String name = "module-" + i;
+      settings.append("include '").append(name).append("'\n");
+
+      String plugin = i % 4 == 3 ? "war" : "java";
+      FileUtils.writeStringToFile(new File(projectDir, name + "/build.gradle"),
+          "plugins {\n" +
+          "  id '" + plugin + "'\n" +
+          "  id 'rebel'\n" +
+          "}\n" +
+          "\n" +
+          "rebel {\n" +
+          "  classpath {\n" +
+          "    resource {}\n" +
+          "    resource {\n" +
+          "      directory = 'build/extra-classes'\n" +
+          "      excludes = ['**/*.tmp']\n" +
+          "    }\n" +
+          "  }\n" +
+          "}\n");
+    }
+    FileUtils.writeStringToFile(new File(projectDir, "settings.gradle"), settings.toString());
+    FileUtils.writeStringToFile(new File(projectDir, "build.gradle"), "");
+  }
+
+}
@@ -0,0 +1,100 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.zeroturnaround.jrebel.gradle.util.CanonicalPathCache;
+
+/**
+ * Tests for the canonical path cache kept across the builds of a daemon.
+ */
+public class CanonicalPathCacheTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void testRepeatedLookupIsHit() throws Exception {
+    File dir = tempFolder.newFolder("classes");
+    File dotted = new File(dir, "../classes/.");
+
+    CanonicalPathCache cache = new CanonicalPathCache(100);
+    CanonicalPathCache.Lookup first = cache.getCanonicalPath(dotted);
+    CanonicalPathCache.Lookup second = cache.getCanonicalPath(dotted);
+
+    assertFalse(first.isHit());
+    assertTrue(second.isHit());
+    assertEquals(dir.getCanonicalPath(), second.getCanonicalPath());
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+  }
+
+  @Test
+  public void testKeptPerRootProject() throws Exception {
+    File root = tempFolder.newFolder("root");
+    File otherRoot = tempFolder.newFolder("other");
+
+    // every build of the same root project gets the same cache, other root projects their own
+    assertSame(CanonicalPathCache.forRootDir(root), CanonicalPathCache.forRootDir(new File(root.getPath())));
+    assertNotSame(CanonicalPathCache.forRootDir(root), CanonicalPathCache.forRootDir(otherRoot));
+
+    File dir = new File(root, "classes");
+    dir.mkdirs();
+    CanonicalPathCache.forRootDir(root).getCanonicalPath(dir);
+    assertTrue(CanonicalPathCache.forRootDir(root).getCanonicalPath(dir).isHit());
+    assertFalse(CanonicalPathCache.forRootDir(otherRoot).getCanonicalPath(dir).isHit());
+  }
+
+  @Test
+  public void testStaleOnceParentChanges() throws Exception {
+    File parent = tempFolder.newFolder("build");
+    File dir = new File(parent, "classes");
+    dir.mkdirs();
+    parent.setLastModified(1000000000000L);
+
+    CanonicalPathCache cache = new CanonicalPathCache(100);
+    cache.getCanonicalPath(dir);
+    assertTrue(cache.getCanonicalPath(dir).isHit());
+
+    // e.g. 'classes' replaced by a symlink
+    parent.setLastModified(1000000002000L);
+    assertFalse(cache.getCanonicalPath(dir).isHit());
+    assertEquals(1, cache.getStale());
+    assertTrue(cache.getCanonicalPath(dir).isHit());
+  }
+
+  @Test
+  public void testIsBounded() throws Exception {
+    CanonicalPathCache cache = new CanonicalPathCache(2);
+    for (int i = 0; i < 5; i++) {
+      cache.getCanonicalPath(new File(tempFolder.getRoot(), "dir" + i));
+    }
+    assertEquals(2, cache.size());
+    assertTrue(cache.getCanonicalPath(new File(tempFolder.getRoot(), "dir4")).isHit());
+    assertFalse(cache.getCanonicalPath(new File(tempFolder.getRoot(), "dir0")).isHit());
+  }
+
+}
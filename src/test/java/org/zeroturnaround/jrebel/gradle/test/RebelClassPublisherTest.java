@@ -0,0 +1,113 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.zeroturnaround.jrebel.gradle.RebelClassPublisher;
+
+/**
+ * Tests for publishing staged classes into the monitored classes directory.
+ */
+public class RebelClassPublisherTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void testPublishesOnlyChangesAndLeavesOthersAlone() throws Exception {
+    File staging = tempFolder.newFolder("staging");
+    File classes = tempFolder.newFolder("classes");
+    FileUtils.writeStringToFile(new File(staging, "com/example/A.class"), "a1");
+    FileUtils.writeStringToFile(new File(staging, "com/example/B.class"), "b1");
+    // not from the staging directory
+    FileUtils.writeStringToFile(new File(classes, "rebel.xml"), "<application/>");
+
+    RebelClassPublisher publisher = new RebelClassPublisher(staging, classes, Collections.<String>emptySet());
+    publisher.publish();
+    assertEquals(2, publisher.getUpdated());
+    assertEquals("a1", FileUtils.readFileToString(new File(classes, "com/example/A.class")));
+    assertTrue(new File(classes, RebelClassPublisher.MARKER_FILE_NAME).exists());
+    Set<String> published = publisher.getPublished();
+
+    // an incremental recompilation: A left alone, B changed, C new, B's inner class gone
+    File stagedB = new File(staging, "com/example/B.class");
+    long compiledB = stagedB.lastModified();
+    FileUtils.writeStringToFile(stagedB, "b2");
+    // same size, so only the timestamp tells
+    assertTrue(stagedB.setLastModified(compiledB + 2000));
+    FileUtils.writeStringToFile(new File(staging, "com/example/C.class"), "c1");
+    FileUtils.writeStringToFile(new File(classes, "com/example/B$1.class"), "b1$1");
+    published = new HashSet<String>(published);
+    published.add("com/example/B$1.class");
+
+    publisher = new RebelClassPublisher(staging, classes, published);
+    publisher.publish();
+    assertEquals(2, publisher.getUpdated());
+    assertEquals(1, publisher.getDeleted());
+    assertEquals(1, publisher.getUnchanged());
+    assertEquals("b2", FileUtils.readFileToString(new File(classes, "com/example/B.class")));
+    assertEquals("c1", FileUtils.readFileToString(new File(classes, "com/example/C.class")));
+    assertFalse(new File(classes, "com/example/B$1.class").exists());
+    assertTrue(new File(classes, "rebel.xml").exists());
+
+    // no temporary files left behind
+    String[] names = new File(classes, "com/example").list();
+    assertEquals(3, names.length);
+
+    // the published files are copies, writing into a staged file doesn't change them
+    FileUtils.writeStringToFile(new File(staging, "com/example/A.class"), "a2");
+    assertEquals("a1", FileUtils.readFileToString(new File(classes, "com/example/A.class")));
+  }
+
+  @Test
+  public void testSymlinkCycleIsListedOnce() throws Exception {
+    File staging = tempFolder.newFolder("staging");
+    File classes = tempFolder.newFolder("classes");
+    FileUtils.writeStringToFile(new File(staging, "com/example/A.class"), "a1");
+    try {
+      // com/example/loop -> staging
+      Files.createSymbolicLink(new File(staging, "com/example/loop").toPath(), staging.toPath());
+    }
+    catch (UnsupportedOperationException e) {
+      Assume.assumeNoException(e);
+    }
+    catch (IOException e) {
+      // e.g. no privilege to create links on Windows
+      Assume.assumeNoException(e);
+    }
+
+    RebelClassPublisher publisher = new RebelClassPublisher(staging, classes, Collections.<String>emptySet());
+    publisher.publish();
+    assertEquals(1, publisher.getUpdated());
+    assertEquals(Collections.singleton("com/example/A.class"), publisher.getPublished());
+  }
+
+}
@@ -0,0 +1,219 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.zeroturnaround.jrebel.gradle.RebelDeltaManifest;
+import org.zeroturnaround.jrebel.gradle.RebelDeltaManifestBuilder;
+import org.zeroturnaround.jrebel.gradle.RebelXmlWriter;
+import org.zeroturnaround.jrebel.gradle.model.RebelClasspathResource;
+import org.zeroturnaround.jrebel.gradle.model.RebelMainModel;
+import org.zeroturnaround.jrebel.gradle.model.RebelWebResource;
+
+/**
+ * Tests for the delta manifest, synced to a stand-in receiver that mirrors each root into a directory of its own.
+ */
+public class RebelDeltaManifestTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void testDeltasKeepTheReceiverInSync() throws Exception {
+    File classes = tempFolder.newFolder("classes");
+    FileUtils.writeStringToFile(new File(classes, "com/example/A.class"), "a1");
+    FileUtils.writeStringToFile(new File(classes, "com/example/B.class"), "b1");
+    FileUtils.writeStringToFile(new File(classes, "com/example/notes.txt"), "not monitored");
+    File webapp = tempFolder.newFolder("webapp");
+    FileUtils.writeStringToFile(new File(webapp, "index.jsp"), "<html/>");
+
+    RebelMainModel model = new RebelMainModel();
+    RebelClasspathResource dir = new RebelClasspathResource();
+    dir.setDirectory(classes.getAbsolutePath());
+    dir.addExclude("**/*.txt");
+    model.addClasspathDir(dir);
+    RebelWebResource link = new RebelWebResource();
+    link.setTarget("/");
+    link.setDirectory(webapp.getAbsolutePath());
+    model.addWebResource(link);
+
+    File manifestFile = new File(tempFolder.getRoot(), "delta/manifest.txt");
+    File changesFile = new File(tempFolder.getRoot(), "delta/changes.txt");
+    StandInReceiver receiver = new StandInReceiver(tempFolder.newFolder("remote"));
+
+    // first run: everything is sent
+    RebelDeltaManifestBuilder builder = new RebelDeltaManifestBuilder(4);
+    RebelDeltaManifest manifest = builder.build(model, RebelDeltaManifest.read(manifestFile));
+    List<RebelDeltaManifest.Change> changes = manifest.changesSince(RebelDeltaManifest.read(manifestFile));
+    assertEquals(3, manifest.size());
+    assertEquals(3, changes.size());
+    manifest.write(manifestFile);
+    RebelDeltaManifest.writeChanges(changes, changesFile);
+    assertEquals(3, receiver.apply(RebelDeltaManifest.readChanges(changesFile)));
+    receiver.assertInSync(classes, "com/example/A.class", "com/example/B.class");
+    receiver.assertInSync(webapp, "index.jsp");
+
+    // one modified, one deleted, one added; the timestamps move on
+    FileUtils.writeStringToFile(new File(classes, "com/example/A.class"), "a2");
+    new File(classes, "com/example/A.class").setLastModified(System.currentTimeMillis() + 2000);
+    assertTrue(new File(classes, "com/example/B.class").delete());
+    FileUtils.writeStringToFile(new File(webapp, "about.jsp"), "<about/>");
+
+    RebelDeltaManifest previous = RebelDeltaManifest.read(manifestFile);
+    manifest = builder.build(model, previous);
+    changes = manifest.changesSince(previous);
+    // index.jsp is taken over from the previous manifest
+    assertEquals(2, builder.getHashed());
+    assertEquals(3, changes.size());
+    manifest.write(manifestFile);
+    RebelDeltaManifest.writeChanges(changes, changesFile);
+    assertEquals(3, receiver.apply(RebelDeltaManifest.readChanges(changesFile)));
+    receiver.assertInSync(classes, "com/example/A.class");
+    receiver.assertInSync(webapp, "index.jsp", "about.jsp");
+    assertFalse(receiver.getFile(classes, "com/example/B.class").exists());
+
+    // nothing changed, nothing to send
+    previous = RebelDeltaManifest.read(manifestFile);
+    manifest = builder.build(model, previous);
+    assertEquals(0, builder.getHashed());
+    assertTrue(manifest.changesSince(previous).isEmpty());
+  }
+
+  @Test
+  public void testClassSnapshot() throws Exception {
+    File classes = tempFolder.newFolder("classes");
+    FileUtils.writeStringToFile(new File(classes, "com/example/A.class"), "a1");
+    FileUtils.writeStringToFile(new File(classes, "com/example/messages.properties"), "not a class");
+    // big enough to be hashed in chunks
+    byte[] big = new byte[3 * 1024 * 1024 + 17];
+    new Random(42).nextBytes(big);
+    FileUtils.writeByteArrayToFile(new File(classes, "com/example/Big.class"), big);
+
+    RebelMainModel model = new RebelMainModel();
+    RebelClasspathResource dir = new RebelClasspathResource();
+    dir.setDirectory(classes.getAbsolutePath());
+    model.addClasspathDir(dir);
+
+    RebelDeltaManifestBuilder builder = new RebelDeltaManifestBuilder(2);
+    RebelDeltaManifest snapshot = builder.buildClasses(model, new RebelDeltaManifest());
+    assertEquals(2, snapshot.size());
+
+    String expected = new BigInteger(1, MessageDigest.getInstance("SHA-1").digest(big)).toString(16);
+    while (expected.length() < 40) {
+      expected = "0" + expected;
+    }
+    assertEquals(expected, snapshot.getEntry(classes.getAbsolutePath(), "com/example/Big.class").getHash());
+
+    FileUtils.writeStringToFile(new File(classes, "com/example/A.class"), "a2");
+    new File(classes, "com/example/A.class").setLastModified(System.currentTimeMillis() + 2000);
+    FileUtils.writeStringToFile(new File(classes, "com/example/messages.properties"), "still not a class");
+    List<RebelDeltaManifest.Change> changes = builder.buildClasses(model, snapshot).changesSince(snapshot);
+    assertEquals(1, changes.size());
+    assertEquals(RebelDeltaManifest.MODIFIED, changes.get(0).getKind());
+    assertEquals("com/example/A.class", changes.get(0).getRelativePath());
+  }
+
+  @Test
+  public void testSymlinkCycleIsWalkedOnce() throws Exception {
+    File classes = tempFolder.newFolder("classes");
+    FileUtils.writeStringToFile(new File(classes, "com/example/A.class"), "a1");
+    try {
+      // com/example/loop -> classes
+      Files.createSymbolicLink(new File(classes, "com/example/loop").toPath(), classes.toPath());
+    }
+    catch (UnsupportedOperationException e) {
+      Assume.assumeNoException(e);
+    }
+    catch (IOException e) {
+      // e.g. no privilege to create links on Windows
+      Assume.assumeNoException(e);
+    }
+
+    RebelMainModel model = new RebelMainModel();
+    RebelClasspathResource dir = new RebelClasspathResource();
+    dir.setDirectory(classes.getAbsolutePath());
+    model.addClasspathDir(dir);
+
+    RebelDeltaManifest manifest = new RebelDeltaManifestBuilder(1).build(model, new RebelDeltaManifest());
+    assertEquals(1, manifest.size());
+  }
+
+  @Test
+  public void testRebelRemoteXml() {
+    String xml = new RebelXmlWriter().toRemoteXmlString("com.example.shop&co");
+    assertTrue(xml.contains("<rebel-remote xmlns=\"http://www.zeroturnaround.com/rebel/remote\">"));
+    assertTrue(xml.contains("<id>com.example.shop&amp;co</id>"));
+  }
+
+  /**
+   * Plays the remote side: uploads are copied into (and deletions removed from) a mirror of each root
+   */
+  private static class StandInReceiver {
+
+    private final File baseDir;
+
+    private final List<String> roots = new ArrayList<String>();
+
+    StandInReceiver(File baseDir) {
+      this.baseDir = baseDir;
+    }
+
+    int apply(List<RebelDeltaManifest.Change> changes) throws Exception {
+      for (RebelDeltaManifest.Change change : changes) {
+        File target = getFile(new File(change.getRoot()), change.getRelativePath());
+        if (change.getKind() == RebelDeltaManifest.DELETED) {
+          assertTrue(target.delete());
+        }
+        else {
+          FileUtils.copyFile(change.getFile(), target);
+        }
+      }
+      return changes.size();
+    }
+
+    File getFile(File root, String relativePath) {
+      if (!roots.contains(root.getPath())) {
+        roots.add(root.getPath());
+      }
+      return new File(new File(baseDir, "root" + roots.indexOf(root.getPath())), relativePath);
+    }
+
+    void assertInSync(File root, String... relativePaths) throws Exception {
+      for (String relativePath : relativePaths) {
+        assertEquals(FileUtils.readFileToString(new File(root, relativePath)),
+            FileUtils.readFileToString(getFile(root, relativePath)));
+      }
+    }
+  }
+
+}
@@ -0,0 +1,214 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.gradle.api.logging.Logging;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.zeroturnaround.jrebel.gradle.RebelGenerateTask;
+import org.zeroturnaround.jrebel.gradle.RebelModelBuilder;
+import org.zeroturnaround.jrebel.gradle.RebelPathFixer;
+import org.zeroturnaround.jrebel.gradle.model.RebelClasspath;
+import org.zeroturnaround.jrebel.gradle.model.RebelClasspathResource;
+import org.zeroturnaround.jrebel.gradle.model.RebelMainModel;
+import org.zeroturnaround.jrebel.gradle.model.RebelWar;
+import org.zeroturnaround.jrebel.gradle.model.RebelWeb;
+import org.zeroturnaround.jrebel.gradle.model.RebelWebResource;
+import org.zeroturnaround.jrebel.gradle.util.LoggerWrapper;
+
+/**
+ * Tests that building the model leaves the configuration alone, so it can be repeated and run concurrently.
+ */
+public class RebelModelBuilderTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private File projectDir;
+
+  private File classesDir;
+
+  private File resourcesDir;
+
+  private File webappDir;
+
+  @Before
+  public void setUp() throws Exception {
+    projectDir = tempFolder.newFolder("project");
+    classesDir = new File(projectDir, "build/classes/main");
+    classesDir.mkdirs();
+    resourcesDir = new File(projectDir, "build/resources/main");
+    resourcesDir.mkdirs();
+    webappDir = new File(projectDir, "src/main/webapp");
+    webappDir.mkdirs();
+  }
+
+  @Test
+  public void testConfigurationIsNotModified() throws Exception {
+    RebelClasspath classpath = createClasspath();
+    RebelWeb web = createWeb();
+    RebelWar war = createWar();
+
+    RebelMainModel model = createBuilder(classpath, web, war).build();
+
+    assertEquals("lib/classes", classpath.getResources().get(0).getDirectory());
+    assertEquals("src/main/static", web.getResources().get(0).getDirectory());
+    assertEquals("build/libs/app.war", war.getPath());
+    assertNull(war.getOriginalPath());
+
+    String expectedRoot = projectDir.getCanonicalPath().replace('\\', '/');
+    assertEquals(expectedRoot + "/lib/classes", model.getClasspathDirs().get(2).getDirectory());
+    assertEquals(expectedRoot + "/build/libs/app.war", model.getWar().getPath());
+    assertEquals("build/libs/app.war", model.getWar().getOriginalPath());
+    assertNotSame(web.getResources().get(0), model.getWebResources().get(1));
+  }
+
+  @Test
+  public void testRepeatedBuildsAreIdentical() throws Exception {
+    RebelClasspath classpath = createClasspath();
+    RebelModelBuilder builder = createBuilder(classpath, createWeb(), createWar());
+
+    String first = builder.build().toXmlString();
+
+    // neither modifying a built model nor the configuration afterwards changes what gets built
+    builder.build().getClasspathDirs().get(2).addExclude("**/*.txt");
+    classpath.getResources().get(0).setDirectory("elsewhere");
+
+    assertEquals(first, builder.build().toXmlString());
+  }
+
+  @Test
+  public void testConcurrentBuilds() throws Exception {
+    final RebelModelBuilder builder = createBuilder(createClasspath(), createWeb(), createWar());
+    String expected = builder.build().toXmlString();
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Callable<String>> builds = new ArrayList<Callable<String>>();
+      for (int i = 0; i < 32; i++) {
+        builds.add(new Callable<String>() {
+          public String call() throws Exception {
+            return builder.build().toXmlString();
+          }
+        });
+      }
+      for (Future<String> result : executor.invokeAll(builds)) {
+        assertEquals(expected, result.get());
+      }
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testOneDirPerLanguageOutput() throws Exception {
+    File kotlinDir = new File(projectDir, "build/kotlin-classes/main");
+    kotlinDir.mkdirs();
+    File groovyDir = new File(projectDir, "build/classes/groovy/main");
+
+    RebelClasspathResource defaultElement = new RebelClasspathResource();
+    defaultElement.addExclude("**/*.txt");
+    RebelClasspath classpath = new RebelClasspath();
+    classpath.addResource(defaultElement);
+
+    RebelModelBuilder builder = new RebelModelBuilder(new LoggerWrapper(Logging.getLogger(RebelModelBuilderTest.class)),
+        new RebelPathFixer(projectDir, null, null), RebelGenerateTask.PACKAGING_TYPE_JAR, classpath, null, null,
+        Arrays.asList(classesDir, groovyDir, kotlinDir), resourcesDir, null, null, false);
+    List<RebelClasspathResource> dirs = builder.build().getClasspathDirs();
+
+    // resources first, then the existing classes directories in the given order, all with the default's patterns
+    assertEquals(3, dirs.size());
+    assertEquals(resourcesDir.getCanonicalPath(), dirs.get(0).getDirectory());
+    assertEquals(classesDir.getCanonicalPath(), dirs.get(1).getDirectory());
+    assertEquals(kotlinDir.getCanonicalPath(), dirs.get(2).getDirectory());
+    assertEquals(Arrays.asList("**/*.txt"), dirs.get(2).getExcludes());
+  }
+
+  @Test
+  public void testSourceResourcesBeforeProcessedResources() throws Exception {
+    File sourceResourcesDir = new File(projectDir, "src/main/resources");
+    sourceResourcesDir.mkdirs();
+    File missingResourcesDir = new File(projectDir, "src/main/other-resources");
+
+    RebelClasspathResource sourceResources = new RebelClasspathResource();
+    sourceResources.setDirectory(sourceResourcesDir.getAbsolutePath());
+    sourceResources.addExclude("**/*.properties");
+    RebelClasspathResource missingResources = new RebelClasspathResource();
+    missingResources.setDirectory(missingResourcesDir.getAbsolutePath());
+
+    RebelModelBuilder builder = new RebelModelBuilder(new LoggerWrapper(Logging.getLogger(RebelModelBuilderTest.class)),
+        new RebelPathFixer(projectDir, null, null), RebelGenerateTask.PACKAGING_TYPE_JAR, null, null, null,
+        Collections.singletonList(classesDir), resourcesDir, Arrays.asList(sourceResources, missingResources), null,
+        false);
+    List<RebelClasspathResource> dirs = builder.build().getClasspathDirs();
+
+    // the filtered files are still served from the processed resources
+    assertEquals(3, dirs.size());
+    assertEquals(sourceResourcesDir.getCanonicalPath(), dirs.get(0).getDirectory());
+    assertEquals(Arrays.asList("**/*.properties"), dirs.get(0).getExcludes());
+    assertEquals(resourcesDir.getCanonicalPath(), dirs.get(1).getDirectory());
+    assertEquals(classesDir.getCanonicalPath(), dirs.get(2).getDirectory());
+  }
+
+  private RebelModelBuilder createBuilder(RebelClasspath classpath, RebelWeb web, RebelWar war) {
+    return new RebelModelBuilder(new LoggerWrapper(Logging.getLogger(RebelModelBuilderTest.class)),
+        new RebelPathFixer(projectDir, null, null), RebelGenerateTask.PACKAGING_TYPE_WAR, classpath, web, war,
+        Collections.singletonList(classesDir), resourcesDir, null, webappDir, false);
+  }
+
+  private static RebelClasspath createClasspath() {
+    RebelClasspath classpath = new RebelClasspath();
+    RebelClasspathResource resource = new RebelClasspathResource();
+    resource.setDirectory("lib/classes");
+    resource.setExcludes(new ArrayList<String>(Arrays.asList("**/*.properties")));
+    classpath.addResource(resource);
+    return classpath;
+  }
+
+  private static RebelWeb createWeb() {
+    RebelWeb web = new RebelWeb();
+    web.setOmitDefault(false);
+    RebelWebResource resource = new RebelWebResource();
+    resource.setTarget("/static/");
+    resource.setDirectory("src/main/static");
+    web.addResource(resource);
+    return web;
+  }
+
+  private static RebelWar createWar() {
+    RebelWar war = new RebelWar();
+    war.setPath("build/libs/app.war");
+    return war;
+  }
+
+}
@@ -0,0 +1,136 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.zeroturnaround.jrebel.gradle.model.RebelClasspathResource;
+import org.zeroturnaround.jrebel.gradle.model.RebelMainModel;
+import org.zeroturnaround.jrebel.gradle.model.RebelModelDiff;
+import org.zeroturnaround.jrebel.gradle.model.RebelModelDiff.ChangeType;
+import org.zeroturnaround.jrebel.gradle.model.RebelWar;
+import org.zeroturnaround.jrebel.gradle.model.RebelWebResource;
+
+/**
+ * Tests for the structural diff between the previous and the current model.
+ */
+public class RebelModelDiffTest {
+
+  @Test
+  public void testSameModelHasNoChanges() throws Exception {
+    RebelModelDiff diff = RebelModelDiff.compare(createModel(), createModel());
+    assertTrue(diff.toSummaryString(), diff.isEmpty());
+  }
+
+  @Test
+  public void testEverythingIsAddedWithoutPreviousModel() {
+    RebelModelDiff diff = RebelModelDiff.compare(null, createModel());
+    assertEquals(4, diff.getChanges().size());
+    for (RebelModelDiff.Change change : diff.getChanges()) {
+      assertEquals(ChangeType.ADDED, change.getType());
+    }
+  }
+
+  @Test
+  public void testDetectsAddedRemovedAndChangedElements() {
+    RebelMainModel previous = createModel();
+    RebelMainModel current = createModel();
+
+    current.getClasspathDirs().remove(1);
+    current.getClasspathDirs().get(0).addExclude("**/*.txt");
+
+    RebelClasspathResource jar = new RebelClasspathResource();
+    jar.setJar("/project/lib/extra.jar");
+    current.addClasspathJar(jar);
+
+    current.getWebResources().get(0).setDirectory("/project/src/main/web");
+
+    RebelModelDiff diff = RebelModelDiff.compare(previous, current);
+    assertEquals(diff.toSummaryString(),
+        "~ dir /project/build/classes/main: excludes [**/*.properties] -> [**/*.properties, **/*.txt]\n" +
+        "- dir /project/build/resources/main\n" +
+        "+ jar /project/lib/extra.jar\n" +
+        "~ link /: directory /project/src/main/webapp -> /project/src/main/web\n");
+  }
+
+  @Test
+  public void testDetectsClasspathOrderChange() {
+    RebelMainModel current = createModel();
+    RebelClasspathResource first = current.getClasspathDirs().remove(0);
+    current.addClasspathDir(first);
+
+    RebelModelDiff diff = RebelModelDiff.compare(createModel(), current);
+    assertEquals(1, diff.getChanges().size());
+    assertEquals("classpath", diff.getChanges().get(0).getElement());
+  }
+
+  @Test
+  public void testNullAndEmptyPatternsAreEqual() {
+    RebelMainModel current = createModel();
+    current.getWebResources().get(0).setIncludes(Arrays.<String>asList());
+    assertTrue(RebelModelDiff.compare(createModel(), current).isEmpty());
+  }
+
+  /**
+   * The task persists the last model with Java serialization
+   */
+  @Test
+  public void testSerializedModelHasNoChanges() throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(createModel());
+    out.close();
+
+    ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    RebelMainModel restored = (RebelMainModel) in.readObject();
+    in.close();
+
+    assertTrue(RebelModelDiff.compare(restored, createModel()).isEmpty());
+    assertEquals(createModel().toXmlString(), restored.toXmlString());
+  }
+
+  private static RebelMainModel createModel() {
+    RebelMainModel model = new RebelMainModel();
+
+    RebelClasspathResource classes = new RebelClasspathResource();
+    classes.setDirectory("/project/build/classes/main");
+    classes.addExclude("**/*.properties");
+    model.addClasspathDir(classes);
+
+    RebelClasspathResource resources = new RebelClasspathResource();
+    resources.setDirectory("/project/build/resources/main");
+    model.addClasspathDir(resources);
+
+    RebelWebResource webapp = new RebelWebResource();
+    webapp.setTarget("/");
+    webapp.setDirectory("/project/src/main/webapp");
+    model.addWebResource(webapp);
+
+    RebelWar war = new RebelWar();
+    war.setPath("/project/build/libs/project.war");
+    model.setWar(war);
+    return model;
+  }
+
+}
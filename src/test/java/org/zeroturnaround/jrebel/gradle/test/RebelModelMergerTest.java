@@ -0,0 +1,146 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.zeroturnaround.jrebel.gradle.RebelFragmentCache;
+import org.zeroturnaround.jrebel.gradle.RebelModelMerger;
+import org.zeroturnaround.jrebel.gradle.RebelPathFixer;
+import org.zeroturnaround.jrebel.gradle.RebelXmlReader;
+import org.zeroturnaround.jrebel.gradle.model.RebelClasspathResource;
+import org.zeroturnaround.jrebel.gradle.model.RebelMainModel;
+import org.zeroturnaround.jrebel.gradle.model.RebelWebResource;
+
+/**
+ * Tests for merging hand-written rebel.xml fragments into the generated model.
+ */
+public class RebelModelMergerTest {
+
+  private static final String FRAGMENT =
+      "<application>\n" +
+      "  <classpath fallback=\"default\">\n" +
+      "    <dir name=\"/project/build/classes/main/\"><exclude name=\"**/*Test.class\"/></dir>\n" +
+      "    <jarset dir=\"/opt/extra/lib\"/>\n" +
+      "  </classpath>\n" +
+      "  <web>\n" +
+      "    <link target=\"/\"><dir name=\"/project/src/main/webapp\"><exclude name=\"WEB-INF/**\"/></dir></link>\n" +
+      "    <link target=\"/static\"><dir name=\"/shared/static\"/></link>\n" +
+      "  </web>\n" +
+      "</application>\n";
+
+  private static final RebelPathFixer PATH_FIXER = new RebelPathFixer(new File("/project"), null, null);
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void testFragmentReplacesSamePathAndAppendsTheRest() throws Exception {
+    RebelMainModel model = createGeneratedModel();
+    RebelMainModel fragment = new RebelXmlReader().readFromString(FRAGMENT);
+
+    new RebelModelMerger(PATH_FIXER).merge(model, fragment);
+
+    assertEquals(2, model.getClasspathDirs().size());
+    assertEquals("/project/build/classes/main", model.getClasspathDirs().get(0).getDirectory());
+    assertEquals(Arrays.asList("**/*Test.class"), model.getClasspathDirs().get(0).getExcludes());
+    assertEquals("/project/build/resources/main", model.getClasspathDirs().get(1).getDirectory());
+    assertEquals("/opt/extra/lib", model.getClasspathJarsets().get(0).getJarset());
+    assertEquals("default", model.getFallbackClasspath());
+
+    assertEquals(2, model.getWebResources().size());
+    assertEquals(Arrays.asList("WEB-INF/**"), model.getWebResources().get(0).getExcludes());
+    assertEquals("/static", model.getWebResources().get(1).getTarget());
+
+    // merging again changes nothing
+    String merged = model.toXmlString();
+    new RebelModelMerger(PATH_FIXER).merge(model, fragment);
+    assertEquals(merged, model.toXmlString());
+  }
+
+  @Test
+  public void testFragmentPathsAreFixedBeforeMerging() throws Exception {
+    RebelMainModel model = createGeneratedModel();
+    RebelMainModel fragment = new RebelXmlReader().readFromString(
+        "<application><classpath><dir name=\"build/classes/main\"><exclude name=\"**/*Test.class\"/></dir></classpath></application>");
+
+    new RebelModelMerger(PATH_FIXER).merge(model, fragment);
+
+    // relative to the project directory, the same directory as the generated one
+    assertEquals(2, model.getClasspathDirs().size());
+    assertEquals("/project/build/classes/main", model.getClasspathDirs().get(0).getDirectory());
+    assertEquals(Arrays.asList("**/*Test.class"), model.getClasspathDirs().get(0).getExcludes());
+  }
+
+  @Test
+  public void testFragmentIsNotModified() throws Exception {
+    RebelMainModel fragment = new RebelXmlReader().readFromString(FRAGMENT);
+    RebelMainModel model = createGeneratedModel();
+    new RebelModelMerger(PATH_FIXER).merge(model, fragment);
+
+    model.getClasspathDirs().get(0).addExclude("**/*.txt");
+
+    assertNotSame(fragment.getClasspathDirs().get(0), model.getClasspathDirs().get(0));
+    assertEquals(Arrays.asList("**/*Test.class"), fragment.getClasspathDirs().get(0).getExcludes());
+    assertNull(fragment.getClasspathDirs().get(0).getIncludes());
+  }
+
+  @Test
+  public void testUnchangedFragmentIsParsedOnce() throws Exception {
+    File fragmentFile = tempFolder.newFile("extra.xml");
+    FileUtils.writeStringToFile(fragmentFile, FRAGMENT);
+
+    RebelFragmentCache cache = new RebelFragmentCache(16);
+    RebelMainModel first = cache.load(fragmentFile);
+    assertSame(first, cache.load(fragmentFile));
+    assertEquals(1, cache.getMisses());
+    assertEquals(1, cache.getHits());
+
+    FileUtils.writeStringToFile(fragmentFile, FRAGMENT.replace("/opt/extra/lib", "/opt/other/lib"));
+    RebelMainModel changed = cache.load(fragmentFile);
+    assertEquals("/opt/other/lib", changed.getClasspathJarsets().get(0).getJarset());
+    assertEquals(2, cache.getMisses());
+  }
+
+  private static RebelMainModel createGeneratedModel() {
+    RebelMainModel model = new RebelMainModel();
+
+    RebelClasspathResource classes = new RebelClasspathResource();
+    classes.setDirectory("/project/build/classes/main");
+    model.addClasspathDir(classes);
+
+    RebelClasspathResource resources = new RebelClasspathResource();
+    resources.setDirectory("/project/build/resources/main");
+    model.addClasspathDir(resources);
+
+    RebelWebResource webapp = new RebelWebResource();
+    webapp.setTarget("/");
+    webapp.setDirectory("/project/src/main/webapp");
+    model.addWebResource(webapp);
+    return model;
+  }
+
+}
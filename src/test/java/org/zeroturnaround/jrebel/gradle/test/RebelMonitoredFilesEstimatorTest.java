@@ -0,0 +1,136 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.zeroturnaround.jrebel.gradle.RebelGenerateMetrics;
+import org.zeroturnaround.jrebel.gradle.RebelMonitoredFilesEstimator;
+import org.zeroturnaround.jrebel.gradle.RebelMonitoredFilesReport;
+import org.zeroturnaround.jrebel.gradle.model.RebelClasspathResource;
+import org.zeroturnaround.jrebel.gradle.model.RebelMainModel;
+import org.zeroturnaround.jrebel.gradle.model.RebelWebResource;
+import org.zeroturnaround.jrebel.gradle.util.PatternUtil;
+
+/**
+ * Tests for the monitored-files budget estimation and the Ant-style pattern matching behind it.
+ */
+public class RebelMonitoredFilesEstimatorTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void testPatternMatching() {
+    assertTrue(PatternUtil.matchPath("**/*.class", "com/example/Foo.class"));
+    assertTrue(PatternUtil.matchPath("**/*.class", "Foo.class"));
+    assertTrue(PatternUtil.matchPath("com/", "com/example/Foo.class"));
+    assertTrue(PatternUtil.matchPath("com/**/Foo?.class", "com/a/b/Foo1.class"));
+    assertFalse(PatternUtil.matchPath("*.class", "com/Foo.class"));
+    assertFalse(PatternUtil.matchPath("com/*.class", "com/example/Foo.class"));
+
+    assertTrue(PatternUtil.isIncluded("a/B.class", null, null));
+    assertFalse(PatternUtil.isIncluded("a/b.xml", Arrays.asList("**/*.class"), null));
+    assertFalse(PatternUtil.isIncluded("a/B.class", Arrays.asList("**/*.class"), Arrays.asList("a/**")));
+  }
+
+  @Test
+  public void testCountsFilesWithPatternsApplied() throws Exception {
+    File classes = tempFolder.newFolder("classes");
+    FileUtils.writeStringToFile(new File(classes, "com/example/A.class"), "12345");
+    FileUtils.writeStringToFile(new File(classes, "com/example/B.class"), "123");
+    FileUtils.writeStringToFile(new File(classes, "com/example/c.properties"), "1");
+
+    File webapp = tempFolder.newFolder("webapp");
+    FileUtils.writeStringToFile(new File(webapp, "index.jsp"), "12");
+
+    RebelMainModel model = new RebelMainModel();
+
+    RebelClasspathResource dir = new RebelClasspathResource();
+    dir.setDirectory(classes.getAbsolutePath());
+    dir.addExclude("**/*.properties");
+    model.addClasspathDir(dir);
+
+    RebelClasspathResource missing = new RebelClasspathResource();
+    missing.setDirectory("${my-workspace}/build/classes");
+    model.addClasspathDir(missing);
+
+    RebelWebResource link = new RebelWebResource();
+    link.setTarget("/");
+    link.setDirectory(webapp.getAbsolutePath());
+    model.addWebResource(link);
+
+    RebelGenerateMetrics metrics = new RebelGenerateMetrics(":test");
+    RebelGenerateMetrics.setCurrent(metrics);
+    RebelMonitoredFilesReport report;
+    try {
+      report = new RebelMonitoredFilesEstimator(2).estimate(model);
+    }
+    finally {
+      RebelGenerateMetrics.clearCurrent();
+    }
+
+    assertEquals(3, report.getEntries().size());
+    assertEquals(2, report.getEntries().get(0).getFiles());
+    assertEquals(8, report.getEntries().get(0).getBytes());
+    assertTrue(report.getEntries().get(1).isMissing());
+    assertEquals(1, report.getEntries().get(2).getFiles());
+
+    assertEquals(3, report.getTotalFiles());
+    assertEquals(10, report.getTotalBytes());
+
+    // the workers' stat calls are counted into the metrics of the calling thread
+    assertTrue(metrics.getStatCalls() > 0);
+  }
+
+  @Test
+  public void testSymlinkCycleIsWalkedOnce() throws Exception {
+    File classes = tempFolder.newFolder("classes");
+    FileUtils.writeStringToFile(new File(classes, "com/example/A.class"), "12345");
+    try {
+      // com/example/loop -> classes
+      Files.createSymbolicLink(new File(classes, "com/example/loop").toPath(), classes.toPath());
+    }
+    catch (UnsupportedOperationException e) {
+      Assume.assumeNoException(e);
+    }
+    catch (IOException e) {
+      // e.g. no privilege to create links on Windows
+      Assume.assumeNoException(e);
+    }
+
+    RebelMainModel model = new RebelMainModel();
+    RebelClasspathResource dir = new RebelClasspathResource();
+    dir.setDirectory(classes.getAbsolutePath());
+    model.addClasspathDir(dir);
+
+    RebelMonitoredFilesReport report = new RebelMonitoredFilesEstimator(1).estimate(model);
+    assertEquals(1, report.getTotalFiles());
+  }
+
+}
@@ -18,31 +18,51 @@ package org.zeroturnaround.jrebel.gradle.test;
 import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
+import groovy.lang.Closure;
 import junit.framework.Assert;
 
 import org.apache.commons.io.FileUtils;
+import org.gradle.api.Action;
 import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
 import org.gradle.api.Project;
 import org.gradle.api.ProjectEvaluationListener;
 import org.gradle.api.Task;
 import org.gradle.api.internal.project.AbstractProject;
+import org.gradle.api.internal.project.ProjectInternal;
 import org.gradle.api.internal.project.ProjectStateInternal;
+import org.gradle.api.plugins.ApplicationPlugin;
+import org.gradle.api.plugins.ApplicationPluginConvention;
 import org.gradle.api.plugins.GroovyPlugin;
 import org.gradle.api.plugins.JavaPlugin;
 import org.gradle.api.plugins.JavaPluginConvention;
 import org.gradle.api.plugins.WarPlugin;
 import org.gradle.api.plugins.WarPluginConvention;
 import org.gradle.api.plugins.jetty.JettyPlugin;
+import org.gradle.api.file.CopySpec;
+import org.gradle.api.tasks.Copy;
 import org.gradle.api.tasks.TaskExecutionException;
+import org.gradle.api.tasks.bundling.Jar;
+import org.gradle.api.tasks.bundling.War;
+import org.gradle.api.tasks.compile.AbstractCompile;
 import org.gradle.testfixtures.ProjectBuilder;
+import org.gradle.tooling.provider.model.ToolingModelBuilder;
+import org.gradle.tooling.provider.model.ToolingModelBuilderRegistry;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TestName;
+import org.zeroturnaround.jrebel.gradle.RebelAgent;
+import org.zeroturnaround.jrebel.gradle.RebelChangedClassesTask;
+import org.zeroturnaround.jrebel.gradle.RebelDeltaManifestTask;
+import org.zeroturnaround.jrebel.gradle.RebelExplodeWarTask;
 import org.zeroturnaround.jrebel.gradle.RebelGenerateTask;
+import org.zeroturnaround.jrebel.gradle.RebelJavaExec;
 import org.zeroturnaround.jrebel.gradle.RebelPlugin;
+import org.zeroturnaround.jrebel.gradle.RebelPublishClassesTask;
 import org.zeroturnaround.jrebel.gradle.dsl.RebelDslMain;
 import org.zeroturnaround.jrebel.gradle.dsl.RebelDslWar;
 import org.zeroturnaround.jrebel.gradle.dsl.RebelDslWeb;
@@ -51,6 +71,8 @@ import org.zeroturnaround.jrebel.gradle.model.RebelClasspathResource;
 import org.zeroturnaround.jrebel.gradle.model.RebelMainModel;
 import org.zeroturnaround.jrebel.gradle.model.RebelWar;
 import org.zeroturnaround.jrebel.gradle.model.RebelWebResource;
+import org.zeroturnaround.jrebel.gradle.tooling.RebelToolingModel;
+import org.zeroturnaround.jrebel.gradle.tooling.RebelToolingModelBuilder;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -437,6 +459,624 @@ public class RebelPluginTest {
   
   // TODO a test for java plugin project with customized source location -
   
+  /**
+   * Test merging a hand-written fragment from src/main/rebel into the generated model.
+   */
+  @Test
+  public void testMergeFragments() throws Exception {
+    Project project = ProjectBuilder.builder().build();
+    project.getPlugins().apply(JavaPlugin.class);
+    project.getPlugins().apply(RebelPlugin.class);
+
+    RebelDslMain rebelExtension = (RebelDslMain) project.getExtensions().getByName(RebelPlugin.REBEL_EXTENSION_NAME);
+    rebelExtension.setMergeFragments(true);
+
+    callAfterEvaluated(project);
+
+    JavaPluginConvention javaConvention = project.getConvention().getPlugin(JavaPluginConvention.class);
+    File defaultClassesDir = javaConvention.getSourceSets().getByName("main").getOutput().getClassesDir();
+    defaultClassesDir.mkdirs();
+
+    // the fragment replaces the generated classes directory (adding an exclude) and adds a jarset
+    FileUtils.writeStringToFile(project.file(RebelPlugin.DEFAULT_FRAGMENTS_DIRECTORY + "/extra.xml"),
+        "<application>\n" +
+        "  <classpath>\n" +
+        "    <dir name=\"" + defaultClassesDir.getAbsolutePath() + "\"><exclude name=\"**/*Test.class\"/></dir>\n" +
+        "    <jarset dir=\"/opt/extra/lib\"/>\n" +
+        "  </classpath>\n" +
+        "</application>\n");
+
+    RebelGenerateTask task = (RebelGenerateTask) project.getTasks().getByName(RebelPlugin.GENERATE_REBEL_TASK_NAME);
+    task.skipWritingRebelXml();
+    task.generate();
+
+    RebelMainModel model = task.getRebelModel();
+
+    assertEquals(1, model.getClasspathDirs().size());
+    assertEquals(defaultClassesDir.getAbsolutePath(), model.getClasspathDirs().get(0).getDirectory());
+    assertEquals(Arrays.asList("**/*Test.class"), model.getClasspathDirs().get(0).getExcludes());
+
+    assertEquals(1, model.getClasspathJarsets().size());
+    assertEquals("/opt/extra/lib", model.getClasspathJarsets().get(0).getJarset());
+
+    cleanUp(project);
+  }
+
+  /**
+   * Test that with 'useGeneratedResourcesDirectory' rebel.xml goes into its own source set output directory.
+   */
+  @Test
+  public void testUseGeneratedResourcesDirectory() throws Exception {
+    Project project = ProjectBuilder.builder().build();
+    project.getPlugins().apply(JavaPlugin.class);
+    project.getPlugins().apply(RebelPlugin.class);
+
+    RebelDslMain rebelExtension = (RebelDslMain) project.getExtensions().getByName(RebelPlugin.REBEL_EXTENSION_NAME);
+    rebelExtension.setUseGeneratedResourcesDirectory(true);
+
+    callAfterEvaluated(project);
+
+    RebelGenerateTask task = (RebelGenerateTask) project.getTasks().getByName(RebelPlugin.GENERATE_REBEL_TASK_NAME);
+    task.propagateConventionMappingSettings();
+
+    File generatedDir = new File(project.getBuildDir(), RebelPlugin.GENERATED_REBEL_XML_DIRECTORY);
+    assertEquals(generatedDir, task.getRebelXmlDirectory());
+
+    JavaPluginConvention javaConvention = project.getConvention().getPlugin(JavaPluginConvention.class);
+    assertTrue(javaConvention.getSourceSets().getByName("main").getOutput().getDirs().getFiles().contains(generatedDir));
+
+    // no dependency cycle with 'classes'
+    Task classesTask = project.getTasks().getByName(JavaPlugin.CLASSES_TASK_NAME);
+    assertTrue(!task.getDependsOn().contains(classesTask));
+    assertTrue(classesTask.getTaskDependencies().getDependencies(classesTask).contains(task));
+
+    // ..which doesn't make it run with every 'classes': it has inputs and outputs to be up to date with
+    assertTrue(task.getOutputs().getFiles().contains(new File(generatedDir, RebelGenerateTask.REBEL_XML_FILE_NAME)));
+    assertTrue(task.getInputs().getFiles().contains(project.getBuildFile()));
+    assertEquals(RebelGenerateTask.PACKAGING_TYPE_JAR, task.getInputs().getProperties().get("packaging"));
+    assertEquals(Boolean.FALSE, task.getInputs().getProperties().get("pathsOnly"));
+    assertTrue(!task.getOutputs().getFiles().contains(new File(generatedDir, RebelGenerateTask.REBEL_REMOTE_XML_FILE_NAME)));
+
+    // settings made on the task itself count as well
+    task.setPathsOnly(true);
+    assertEquals(Boolean.TRUE, task.getInputs().getProperties().get("pathsOnly"));
+    task.setRemoteId("com.example.shop");
+    assertEquals("com.example.shop", task.getInputs().getProperties().get("remoteId"));
+    assertTrue(task.getOutputs().getFiles().contains(new File(generatedDir, RebelGenerateTask.REBEL_REMOTE_XML_FILE_NAME)));
+
+    cleanUp(project);
+  }
+
+  /**
+   * Test that in the paths-only mode generateRebel doesn't need compilation and adds the default directories anyway.
+   */
+  @Test
+  public void testPathsOnly() throws Exception {
+    Project project = ProjectBuilder.builder().build();
+    project.getPlugins().apply(JavaPlugin.class);
+    project.getPlugins().apply(RebelPlugin.class);
+
+    RebelDslMain rebelExtension = (RebelDslMain) project.getExtensions().getByName(RebelPlugin.REBEL_EXTENSION_NAME);
+    rebelExtension.setPathsOnly(true);
+
+    callAfterEvaluated(project);
+
+    RebelGenerateTask task = (RebelGenerateTask) project.getTasks().getByName(RebelPlugin.GENERATE_REBEL_TASK_NAME);
+    assertTrue(!task.getDependsOn().contains(project.getTasks().getByName(JavaPlugin.CLASSES_TASK_NAME)));
+
+    // the classes and resources directories are not created
+    task.skipWritingRebelXml();
+    task.generate();
+
+    JavaPluginConvention javaConvention = project.getConvention().getPlugin(JavaPluginConvention.class);
+    File defaultClassesDir = javaConvention.getSourceSets().getByName("main").getOutput().getClassesDir();
+    assertTrue(!defaultClassesDir.exists());
+
+    List<RebelClasspathResource> classpathDirs = task.getRebelModel().getClasspathDirs();
+    assertEquals(2, classpathDirs.size());
+    assertEquals(defaultClassesDir.getAbsolutePath(), classpathDirs.get(1).getDirectory());
+
+    cleanUp(project);
+  }
+
+  /**
+   * Test that the monitored files budget counts the local directories despite a placeholder 'rootPath'
+   */
+  @Test
+  public void testMonitoredFilesBudgetWithRootPath() throws Exception {
+    Project project = ProjectBuilder.builder().build();
+    project.getPlugins().apply(JavaPlugin.class);
+    project.getPlugins().apply(RebelPlugin.class);
+
+    RebelDslMain rebelExtension = (RebelDslMain) project.getExtensions().getByName(RebelPlugin.REBEL_EXTENSION_NAME);
+    rebelExtension.setRootPath("${myproject.root}");
+    rebelExtension.setPathsOnly(true);
+    rebelExtension.setMonitoredFilesBudget(1L);
+    rebelExtension.setFailOnBudgetExceeded(true);
+
+    callAfterEvaluated(project);
+
+    JavaPluginConvention javaConvention = project.getConvention().getPlugin(JavaPluginConvention.class);
+    File defaultClassesDir = javaConvention.getSourceSets().getByName("main").getOutput().getClassesDir();
+    FileUtils.writeStringToFile(new File(defaultClassesDir, "com/example/A.class"), "a");
+    FileUtils.writeStringToFile(new File(defaultClassesDir, "com/example/B.class"), "b");
+
+    RebelGenerateTask task = (RebelGenerateTask) project.getTasks().getByName(RebelPlugin.GENERATE_REBEL_TASK_NAME);
+    task.skipWritingRebelXml();
+    try {
+      task.generate();
+      Assert.fail("the budget of 1 file should be exceeded");
+    }
+    catch (GradleException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("2 files, the budget is 1"));
+    }
+
+    // the written paths still have the placeholder
+    assertTrue(task.getRebelModel().getClasspathDirs().get(1).getDirectory().startsWith("${myproject.root}"));
+
+    cleanUp(project);
+  }
+
+  /**
+   * Test that 'linkSourceResources' puts src/main/resources in front of the processed resources, unless
+   * processResources changes the files and those are not listed in 'filteredResources'.
+   */
+  @Test
+  public void testLinkSourceResources() throws Exception {
+    Project project = ProjectBuilder.builder().build();
+    project.getPlugins().apply(JavaPlugin.class);
+    project.getPlugins().apply(RebelPlugin.class);
+
+    RebelDslMain rebelExtension = (RebelDslMain) project.getExtensions().getByName(RebelPlugin.REBEL_EXTENSION_NAME);
+    rebelExtension.setLinkSourceResources(true);
+    rebelExtension.setPathsOnly(true);
+
+    callAfterEvaluated(project);
+
+    RebelGenerateTask task = (RebelGenerateTask) project.getTasks().getByName(RebelPlugin.GENERATE_REBEL_TASK_NAME);
+    task.skipWritingRebelXml();
+    task.generate();
+
+    File sourceResourcesDir = project.file("src/main/resources");
+    List<RebelClasspathResource> classpathDirs = task.getRebelModel().getClasspathDirs();
+    assertEquals(3, classpathDirs.size());
+    assertEquals(sourceResourcesDir.getAbsolutePath(), classpathDirs.get(0).getDirectory());
+
+    // filtering configured: everything comes from the processed resources again
+    Copy processResources = (Copy) project.getTasks().getByName(JavaPlugin.PROCESS_RESOURCES_TASK_NAME);
+    processResources.expand(Collections.singletonMap("version", "1.0"));
+    task.generate();
+    classpathDirs = task.getRebelModel().getClasspathDirs();
+    assertEquals(2, classpathDirs.size());
+
+    // .. unless the filtered files are listed
+    rebelExtension.addFilteredResource("**/*.properties");
+    task.generate();
+    classpathDirs = task.getRebelModel().getClasspathDirs();
+    assertEquals(3, classpathDirs.size());
+    assertEquals(sourceResourcesDir.getAbsolutePath(), classpathDirs.get(0).getDirectory());
+    assertEquals(Arrays.asList("**/*.properties"), classpathDirs.get(0).getExcludes());
+
+    cleanUp(project);
+  }
+
+  /**
+   * Test that the tooling model has the resolved models of all the Java projects of the build, without anything
+   * being compiled or written.
+   */
+  @Test
+  public void testToolingModel() throws Exception {
+    Project rootProject = ProjectBuilder.builder().build();
+    rootProject.getPlugins().apply(RebelPlugin.class);
+    Project project = ProjectBuilder.builder().withName("child").withParent(rootProject).build();
+    project.getPlugins().apply(JavaPlugin.class);
+    project.getPlugins().apply(RebelPlugin.class);
+
+    callAfterEvaluated(project);
+
+    // both projects applied the plugin, the build-scoped registry must still have a single builder
+    ToolingModelBuilderRegistry registry = ((ProjectInternal) project).getServices().get(ToolingModelBuilderRegistry.class);
+    ToolingModelBuilder builder = registry.getBuilder(RebelToolingModel.class.getName());
+    assertTrue(builder instanceof RebelToolingModelBuilder);
+    RebelToolingModel toolingModel = (RebelToolingModel) builder.buildAll(RebelToolingModel.class.getName(), project);
+
+    // the root project has no JavaPlugin
+    assertEquals(Collections.singleton(":child"), toolingModel.getProjectModels().keySet());
+
+    JavaPluginConvention javaConvention = project.getConvention().getPlugin(JavaPluginConvention.class);
+    File defaultClassesDir = javaConvention.getSourceSets().getByName("main").getOutput().getClassesDir();
+    assertTrue(!defaultClassesDir.exists());
+
+    List<RebelClasspathResource> classpathDirs = toolingModel.getProjectModels().get(":child").getClasspathDirs();
+    assertEquals(2, classpathDirs.size());
+    assertEquals(defaultClassesDir.getAbsolutePath(), classpathDirs.get(1).getDirectory());
+    assertEquals(new File(defaultClassesDir, "rebel.xml"), toolingModel.getRebelXmlFiles().get(":child"));
+    assertTrue(!toolingModel.getRebelXmlFiles().get(":child").exists());
+
+    cleanUp(rootProject);
+  }
+
+  /**
+   * Test that the application plugin gets a 'runWithRebel' task and that Jetty tasks generate rebel.xml first once an
+   * agent is configured.
+   */
+  @Test
+  public void testRunWithRebel() throws Exception {
+    Project project = ProjectBuilder.builder().build();
+    project.getPlugins().apply(RebelPlugin.class);
+    project.getPlugins().apply(ApplicationPlugin.class);
+    project.getPlugins().apply(JettyPlugin.class);
+    project.getConvention().getPlugin(ApplicationPluginConvention.class).setMainClassName("com.example.Main");
+
+    RebelDslMain rebelExtension = (RebelDslMain) project.getExtensions().getByName(RebelPlugin.REBEL_EXTENSION_NAME);
+    rebelExtension.setAgentPath("jrebel/lib/libjrebel64.so");
+
+    callAfterEvaluated(project);
+
+    Task generateRebelTask = project.getTasks().getByName(RebelPlugin.GENERATE_REBEL_TASK_NAME);
+    RebelJavaExec runWithRebel = (RebelJavaExec) project.getTasks().getByName(RebelPlugin.RUN_WITH_REBEL_TASK_NAME);
+    assertEquals("com.example.Main", runWithRebel.getMain());
+    assertTrue(runWithRebel.getTaskDependencies().getDependencies(runWithRebel).contains(generateRebelTask));
+
+    Task jettyRun = project.getTasks().getByName(JettyPlugin.JETTY_RUN);
+    assertTrue(jettyRun.getDependsOn().contains(generateRebelTask));
+
+    assertEquals(project.file("jrebel/lib/libjrebel64.so"), RebelAgent.findConfigured(project));
+    assertEquals("-agentpath:" + project.file("jrebel/lib/libjrebel64.so").getAbsolutePath(),
+        RebelAgent.toJvmArg(RebelAgent.findConfigured(project)));
+
+    cleanUp(project);
+  }
+
+  /**
+   * Test that with 'testWithRebel' the Test tasks execute generateRebel first and keep their own forking settings.
+   */
+  @Test
+  public void testTestWithRebel() throws Exception {
+    Project project = ProjectBuilder.builder().build();
+    project.getPlugins().apply(JavaPlugin.class);
+    project.getPlugins().apply(RebelPlugin.class);
+
+    RebelDslMain rebelExtension = (RebelDslMain) project.getExtensions().getByName(RebelPlugin.REBEL_EXTENSION_NAME);
+    rebelExtension.setTestWithRebel(true);
+    rebelExtension.setAgentPath("jrebel/jrebel.jar");
+    // not on the test classpath yet
+    File rebelXmlDirectory = new File(project.getBuildDir(), "rebel-xml");
+    rebelExtension.setRebelXmlDirectory(rebelXmlDirectory.getAbsolutePath());
+    org.gradle.api.tasks.testing.Test test = (org.gradle.api.tasks.testing.Test) project.getTasks().getByName(JavaPlugin.TEST_TASK_NAME);
+    test.setForkEvery(5L);
+
+    callAfterEvaluated(project);
+
+    Task generateRebelTask = project.getTasks().getByName(RebelPlugin.GENERATE_REBEL_TASK_NAME);
+    assertTrue(test.getDependsOn().contains(generateRebelTask));
+    assertEquals(5L, test.getForkEvery().longValue());
+    assertEquals("-javaagent:" + project.file("jrebel/jrebel.jar").getAbsolutePath(),
+        RebelAgent.toJvmArg(RebelAgent.findConfigured(project)));
+
+    // set when the project is evaluated, so they are the task's inputs
+    assertTrue(test.getAllJvmArgs().contains("-javaagent:" + project.file("jrebel/jrebel.jar").getAbsolutePath()));
+    assertEquals(rebelXmlDirectory, test.getClasspath().getFiles().iterator().next());
+
+    cleanUp(project);
+  }
+
+  /**
+   * Test that war { exploded = true } makes the staging directory of explodedRebelWar the <war dir>
+   */
+  @Test
+  public void testExplodedWar() throws Exception {
+    Project project = ProjectBuilder.builder().build();
+    project.getPlugins().apply(WarPlugin.class);
+    project.getPlugins().apply(RebelPlugin.class);
+
+    RebelDslMain rebelExtension = (RebelDslMain) project.getExtensions().getByName(RebelPlugin.REBEL_EXTENSION_NAME);
+    RebelDslWar dslWar = new RebelDslWar();
+    dslWar.setExploded(true);
+    rebelExtension.setWar(dslWar);
+
+    callAfterEvaluated(project);
+
+    RebelGenerateTask task = (RebelGenerateTask) project.getTasks().getByName(RebelPlugin.GENERATE_REBEL_TASK_NAME);
+    Task explodeWarTask = project.getTasks().getByName(RebelPlugin.EXPLODED_WAR_TASK_NAME);
+    assertTrue(explodeWarTask instanceof RebelExplodeWarTask);
+    assertTrue(task.getFinalizedBy().getDependencies(task).contains(explodeWarTask));
+
+    task.skipWritingRebelXml();
+    task.generate();
+
+    File explodedWarDir = new File(project.getBuildDir(), RebelPlugin.EXPLODED_WAR_DIRECTORY);
+    assertEquals(explodedWarDir.getAbsolutePath(), task.getRebelModel().getWar().getPath());
+
+    cleanUp(project);
+  }
+
+  /**
+   * Test that explodedRebelWar stages the war incrementally: a second run restages only the changed file and a file
+   * gone from the war is removed
+   */
+  @Test
+  public void testExplodedWarStagesIncrementally() throws Exception {
+    Project project = ProjectBuilder.builder().build();
+    project.getPlugins().apply(WarPlugin.class);
+    project.getPlugins().apply(RebelPlugin.class);
+
+    RebelDslMain rebelExtension = (RebelDslMain) project.getExtensions().getByName(RebelPlugin.REBEL_EXTENSION_NAME);
+    RebelDslWar dslWar = new RebelDslWar();
+    dslWar.setExploded(true);
+    rebelExtension.setWar(dslWar);
+
+    callAfterEvaluated(project);
+
+    JavaPluginConvention javaConvention = project.getConvention().getPlugin(JavaPluginConvention.class);
+    File classesDir = javaConvention.getSourceSets().getByName("main").getOutput().getClassesDir();
+    File classA = new File(classesDir, "com/example/A.class");
+    File classB = new File(classesDir, "com/example/B.class");
+    FileUtils.writeStringToFile(classA, "a1");
+    FileUtils.writeStringToFile(classB, "b1");
+    WarPluginConvention warConvention = project.getConvention().getPlugin(WarPluginConvention.class);
+    FileUtils.writeStringToFile(new File(warConvention.getWebAppDir(), "index.jsp"), "<html/>");
+
+    RebelExplodeWarTask explodeWarTask = (RebelExplodeWarTask) project.getTasks().getByName(RebelPlugin.EXPLODED_WAR_TASK_NAME);
+    File explodedWarDir = new File(project.getBuildDir(), RebelPlugin.EXPLODED_WAR_DIRECTORY);
+    File stagedA = new File(explodedWarDir, "WEB-INF/classes/com/example/A.class");
+    File stagedB = new File(explodedWarDir, "WEB-INF/classes/com/example/B.class");
+
+    // the classes are build output, linked unless the file system has no hard links; index.jsp is always copied
+    runActions(explodeWarTask);
+    int linked = explodeWarTask.getLinked();
+    assertTrue(linked == 0 || linked == 2);
+    assertEquals(3 - linked, explodeWarTask.getCopied());
+    assertEquals(0, explodeWarTask.getUnchanged());
+    assertEquals(0, explodeWarTask.getRemoved());
+    assertEquals("a1", FileUtils.readFileToString(stagedA));
+    assertEquals("b1", FileUtils.readFileToString(stagedB));
+    assertEquals("<html/>", FileUtils.readFileToString(new File(explodedWarDir, "index.jsp")));
+
+    // B recompiled
+    FileUtils.writeStringToFile(classB, "b22");
+    assertTrue(classB.setLastModified(classB.lastModified() + 2000));
+    runActions(explodeWarTask);
+    assertEquals(linked / 2, explodeWarTask.getLinked());
+    assertEquals(1 - linked / 2, explodeWarTask.getCopied());
+    assertEquals(2, explodeWarTask.getUnchanged());
+    assertEquals(0, explodeWarTask.getRemoved());
+    assertEquals("a1", FileUtils.readFileToString(stagedA));
+    assertEquals("b22", FileUtils.readFileToString(stagedB));
+
+    // A deleted
+    assertTrue(classA.delete());
+    runActions(explodeWarTask);
+    assertEquals(0, explodeWarTask.getLinked() + explodeWarTask.getCopied());
+    assertEquals(2, explodeWarTask.getUnchanged());
+    assertEquals(1, explodeWarTask.getRemoved());
+    assertTrue(!stagedA.exists());
+    assertEquals("b22", FileUtils.readFileToString(stagedB));
+
+    cleanUp(project);
+  }
+
+  /**
+   * Test that 'deriveWebFromWar' adds a <link> for an extra root of the war task, with its patterns
+   */
+  @Test
+  public void testDeriveWebFromWar() throws Exception {
+    Project project = ProjectBuilder.builder().build();
+    project.getPlugins().apply(WarPlugin.class);
+    project.getPlugins().apply(RebelPlugin.class);
+
+    File extraWebDir = project.file("src/extra-web");
+    extraWebDir.mkdirs();
+    War war = (War) project.getTasks().getByName(WarPlugin.WAR_TASK_NAME);
+    war.from(extraWebDir, new Closure<Object>(this) {
+      public Object doCall(CopySpec spec) {
+        spec.into("static");
+        spec.exclude("**/*.bak");
+        return null;
+      }
+    });
+
+    RebelDslMain rebelExtension = (RebelDslMain) project.getExtensions().getByName(RebelPlugin.REBEL_EXTENSION_NAME);
+    rebelExtension.setDeriveWebFromWar(true);
+
+    callAfterEvaluated(project);
+
+    RebelGenerateTask task = (RebelGenerateTask) project.getTasks().getByName(RebelPlugin.GENERATE_REBEL_TASK_NAME);
+    task.skipWritingRebelXml();
+    task.generate();
+
+    // the default one and the extra one
+    List<RebelWebResource> webResources = task.getRebelModel().getWebResources();
+    assertEquals(2, webResources.size());
+    assertEquals("/", webResources.get(0).getTarget());
+    assertEquals("/static/", webResources.get(1).getTarget());
+    assertEquals(extraWebDir.getAbsolutePath(), webResources.get(1).getDirectory());
+    assertEquals(Arrays.asList("**/*.bak"), webResources.get(1).getExcludes());
+
+    cleanUp(project);
+  }
+
+  /**
+   * Test that the extra directories of the jar and processResources tasks become classpath <dir>s
+   */
+  @Test
+  public void testDeriveClasspathFromCopySpecs() throws Exception {
+    Project project = ProjectBuilder.builder().build();
+    project.getPlugins().apply(JavaPlugin.class);
+    project.getPlugins().apply(RebelPlugin.class);
+
+    File generatedConfigDir = project.file("build/generated-config");
+    generatedConfigDir.mkdirs();
+    File extraResourcesDir = project.file("src/extra-resources");
+    extraResourcesDir.mkdirs();
+    File licensesDir = project.file("src/licenses");
+    licensesDir.mkdirs();
+
+    Jar jar = (Jar) project.getTasks().getByName(JavaPlugin.JAR_TASK_NAME);
+    jar.from(generatedConfigDir, new Closure<Object>(this) {
+      public Object doCall(CopySpec spec) {
+        spec.exclude("**/*.tmp");
+        return null;
+      }
+    });
+    // not at the root of the classpath
+    jar.from(licensesDir, new Closure<Object>(this) {
+      public Object doCall(CopySpec spec) {
+        spec.into("META-INF/licenses");
+        return null;
+      }
+    });
+    Copy processResources = (Copy) project.getTasks().getByName(JavaPlugin.PROCESS_RESOURCES_TASK_NAME);
+    processResources.from(extraResourcesDir);
+
+    RebelDslMain rebelExtension = (RebelDslMain) project.getExtensions().getByName(RebelPlugin.REBEL_EXTENSION_NAME);
+    rebelExtension.setDeriveClasspathFromCopySpecs(true);
+    rebelExtension.setPathsOnly(true);
+
+    callAfterEvaluated(project);
+
+    RebelGenerateTask task = (RebelGenerateTask) project.getTasks().getByName(RebelPlugin.GENERATE_REBEL_TASK_NAME);
+    task.skipWritingRebelXml();
+    task.generate();
+
+    // the extra processResources directory ahead of the processed resources (which have copies of its files), the
+    // classes, then the extra jar directory
+    JavaPluginConvention javaConvention = project.getConvention().getPlugin(JavaPluginConvention.class);
+    File resourcesDir = javaConvention.getSourceSets().getByName("main").getOutput().getResourcesDir();
+    List<RebelClasspathResource> classpathDirs = task.getRebelModel().getClasspathDirs();
+    assertEquals(4, classpathDirs.size());
+    assertEquals(extraResourcesDir.getAbsolutePath(), classpathDirs.get(0).getDirectory());
+    assertEquals(resourcesDir.getAbsolutePath(), classpathDirs.get(1).getDirectory());
+    assertEquals(generatedConfigDir.getAbsolutePath(), classpathDirs.get(3).getDirectory());
+    assertEquals(Arrays.asList("**/*.tmp"), classpathDirs.get(3).getExcludes());
+
+    cleanUp(project);
+  }
+
+  /**
+   * Test the rebel-remote.xml id and the rebelDeltaManifest task
+   */
+  @Test
+  public void testRemoteSettings() throws Exception {
+    Project project = ProjectBuilder.builder().build();
+    project.setGroup("com.example");
+    project.getPlugins().apply(JavaPlugin.class);
+    project.getPlugins().apply(RebelPlugin.class);
+
+    RebelDslMain rebelExtension = (RebelDslMain) project.getExtensions().getByName(RebelPlugin.REBEL_EXTENSION_NAME);
+    rebelExtension.setGenerateRebelRemote(true);
+
+    callAfterEvaluated(project);
+
+    RebelGenerateTask task = (RebelGenerateTask) project.getTasks().getByName(RebelPlugin.GENERATE_REBEL_TASK_NAME);
+    assertEquals("com.example." + project.getName(), task.getRemoteId());
+    assertTrue(task.getOutputs().getFiles().contains(
+        new File(task.getRebelXmlDirectory$MAGIC(), RebelGenerateTask.REBEL_REMOTE_XML_FILE_NAME)));
+
+    RebelDeltaManifestTask deltaManifestTask = (RebelDeltaManifestTask) project.getTasks().getByName(RebelPlugin.DELTA_MANIFEST_TASK_NAME);
+    assertTrue(deltaManifestTask.getDependsOn().contains(task));
+    assertEquals(new File(project.getBuildDir(), RebelPlugin.DELTA_MANIFEST_DIRECTORY), deltaManifestTask.getOutputDirectory());
+
+    cleanUp(project);
+  }
+
+  /**
+   * Test that rebelDeltaManifest hashes the local directories despite a placeholder 'rootPath', and that the changes
+   * add up until the sync tool has consumed them
+   */
+  @Test
+  public void testDeltaManifestChanges() throws Exception {
+    Project project = ProjectBuilder.builder().build();
+    project.getPlugins().apply(JavaPlugin.class);
+    project.getPlugins().apply(RebelPlugin.class);
+
+    RebelDslMain rebelExtension = (RebelDslMain) project.getExtensions().getByName(RebelPlugin.REBEL_EXTENSION_NAME);
+    rebelExtension.setRootPath("${myproject.root}");
+
+    callAfterEvaluated(project);
+
+    JavaPluginConvention javaConvention = project.getConvention().getPlugin(JavaPluginConvention.class);
+    File defaultClassesDir = javaConvention.getSourceSets().getByName("main").getOutput().getClassesDir();
+    FileUtils.writeStringToFile(new File(defaultClassesDir, "com/example/A.class"), "a1");
+
+    RebelDeltaManifestTask deltaManifestTask = (RebelDeltaManifestTask) project.getTasks().getByName(RebelPlugin.DELTA_MANIFEST_TASK_NAME);
+    deltaManifestTask.createManifest();
+    assertEquals(1, deltaManifestTask.getChanges().size());
+
+    // not synced yet, so A is still a change
+    FileUtils.writeStringToFile(new File(defaultClassesDir, "com/example/B.class"), "b1");
+    deltaManifestTask.createManifest();
+    assertEquals(2, deltaManifestTask.getChanges().size());
+
+    // the sync tool uploaded the changes
+    assertTrue(new File(deltaManifestTask.getOutputDirectory(), RebelDeltaManifestTask.CHANGES_FILE_NAME).delete());
+    deltaManifestTask.createManifest();
+    assertEquals(0, deltaManifestTask.getChanges().size());
+
+    cleanUp(project);
+  }
+
+  /**
+   * Test that rebelChangedClasses follows the compilation with 'listChangedClasses'
+   */
+  @Test
+  public void testListChangedClasses() throws Exception {
+    Project project = ProjectBuilder.builder().build();
+    project.getPlugins().apply(GroovyPlugin.class);
+    project.getPlugins().apply(RebelPlugin.class);
+
+    RebelDslMain rebelExtension = (RebelDslMain) project.getExtensions().getByName(RebelPlugin.REBEL_EXTENSION_NAME);
+    rebelExtension.setListChangedClasses(true);
+
+    callAfterEvaluated(project);
+
+    RebelChangedClassesTask changedClassesTask = (RebelChangedClassesTask) project.getTasks().getByName(RebelPlugin.CHANGED_CLASSES_TASK_NAME);
+    for (String compileTaskName : new String[] { "compileJava", "compileGroovy" }) {
+      Task compileTask = project.getTasks().getByName(compileTaskName);
+      assertTrue(compileTask.getFinalizedBy().getDependencies(compileTask).contains(changedClassesTask));
+    }
+
+    // not into the compiler's output directory (next to rebel.xml), that would make the compilation out of date
+    assertEquals(new File(project.getBuildDir(), "rebel/rebel-changed-classes.txt"), changedClassesTask.getChangedClassesFile());
+    assertTrue(changedClassesTask.getOutputs().getFiles().contains(changedClassesTask.getChangedClassesFile()));
+
+    cleanUp(project);
+  }
+
+  /**
+   * Test that with 'publishClassesInBatches' compileJava writes into the staging directory and the classes directory
+   * in rebel.xml stays the same
+   */
+  @Test
+  public void testPublishClassesInBatches() throws Exception {
+    Project project = ProjectBuilder.builder().build();
+    project.getPlugins().apply(GroovyPlugin.class);
+    project.getPlugins().apply(RebelPlugin.class);
+
+    RebelDslMain rebelExtension = (RebelDslMain) project.getExtensions().getByName(RebelPlugin.REBEL_EXTENSION_NAME);
+    rebelExtension.setPublishClassesInBatches(true);
+    rebelExtension.setPathsOnly(true);
+
+    AbstractCompile compileJava = (AbstractCompile) project.getTasks().getByName(JavaPlugin.COMPILE_JAVA_TASK_NAME);
+    File classesDir = compileJava.getDestinationDir();
+
+    callAfterEvaluated(project);
+
+    RebelPublishClassesTask publishTask = (RebelPublishClassesTask) project.getTasks().getByName(RebelPlugin.PUBLISH_CLASSES_TASK_NAME);
+    assertEquals(classesDir, publishTask.getClassesDirectory());
+    assertEquals(publishTask.getStagingDirectory(), compileJava.getDestinationDir());
+    assertTrue(compileJava.getFinalizedBy().getDependencies(compileJava).contains(publishTask));
+    assertTrue(project.getTasks().getByName(JavaPlugin.CLASSES_TASK_NAME).getDependsOn().contains(publishTask));
+    assertTrue(project.getTasks().getByName("compileGroovy").getDependsOn().contains(publishTask));
+
+    RebelGenerateTask task = (RebelGenerateTask) project.getTasks().getByName(RebelPlugin.GENERATE_REBEL_TASK_NAME);
+    task.skipWritingRebelXml();
+    task.generate();
+    assertEquals(classesDir.getAbsolutePath(), task.getRebelModel().getClasspathDirs().get(0).getDirectory());
+
+    cleanUp(project);
+  }
+
   // TODO a test for java plugin project with MULTIPLE source locations with customized source location
   
   // TODO a test for war plugin project with customized source location -
@@ -467,6 +1107,15 @@ public class RebelPluginTest {
     return Math.random() < 0.5;
   }
   
+  /**
+   * Run the task's actions, again if it has run already (Task#execute() runs a task at most once)
+   */
+  private static void runActions(Task task) {
+    for (Action<? super Task> action : task.getActions()) {
+      action.execute(task);
+    }
+  }
+
   /**
    * Bad, internal-API-dependent code that works around the issue of 'afterEvaluated' not being called
    */
@@ -0,0 +1,110 @@
+/**
+ *  Copyright (C) 2012 ZeroTurnaround <support@zeroturnaround.com>
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.zeroturnaround.jrebel.gradle.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.zeroturnaround.jrebel.gradle.RebelXmlReader;
+import org.zeroturnaround.jrebel.gradle.model.RebelClasspathResource;
+import org.zeroturnaround.jrebel.gradle.model.RebelMainModel;
+import org.zeroturnaround.jrebel.gradle.model.RebelModelDiff;
+import org.zeroturnaround.jrebel.gradle.model.RebelWar;
+import org.zeroturnaround.jrebel.gradle.model.RebelWebResource;
+
+/**
+ * Tests for reading rebel.xml back into the model.
+ */
+public class RebelXmlReaderTest {
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    RebelMainModel model = new RebelMainModel();
+    model.setFallbackClasspath("all");
+
+    RebelClasspathResource dir = new RebelClasspathResource();
+    dir.setDirectory("/project/build/classes/main");
+    dir.addExclude("**/*.properties");
+    dir.addInclude("com/example/**");
+    model.addClasspathDir(dir);
+
+    RebelClasspathResource jar = new RebelClasspathResource();
+    jar.setJar("/project/lib/a & b.jar");
+    model.addClasspathJar(jar);
+
+    RebelClasspathResource jarset = new RebelClasspathResource();
+    jarset.setJarset("/project/lib");
+    jarset.addInclude("*.jar");
+    model.addClasspathJarset(jarset);
+
+    RebelClasspathResource dirset = new RebelClasspathResource();
+    dirset.setDirset("/project/modules");
+    model.addClasspathDirset(dirset);
+
+    RebelWebResource link = new RebelWebResource();
+    link.setTarget("/");
+    link.setDirectory("/project/src/main/webapp");
+    link.setExcludes(Arrays.asList("WEB-INF/lib/**"));
+    model.addWebResource(link);
+
+    RebelWar war = new RebelWar();
+    war.setPath("/project/build/libs/project.war");
+    model.setWar(war);
+
+    String xml = model.toXmlString();
+    RebelMainModel read = new RebelXmlReader().readFromString(xml);
+
+    assertEquals(xml, read.toXmlString());
+    assertTrue(RebelModelDiff.compare(model, read).isEmpty());
+    assertEquals("/project/lib/a & b.jar", read.getClasspathJars().get(0).getJar());
+  }
+
+  /**
+   * Hand-written files don't always have the namespace, may point to a packed war and contain elements we don't model.
+   */
+  @Test
+  public void testLenientParsing() throws Exception {
+    String xml =
+        "<application>\n" +
+        "  <classpath>\n" +
+        "    <dir name=\"/a\"><exclude name=\"x/**\"/></dir>\n" +
+        "    <unknown name=\"/b\"><include name=\"y\"/></unknown>\n" +
+        "  </classpath>\n" +
+        "  <war file=\"/project/app.war\"/>\n" +
+        "  <web><link target=\"/static\"><dir name=\"/c\"/></link></web>\n" +
+        "</application>\n";
+
+    RebelMainModel model = new RebelXmlReader().readFromString(xml);
+
+    assertEquals(1, model.getClasspathDirs().size());
+    assertEquals(Arrays.asList("x/**"), model.getClasspathDirs().get(0).getExcludes());
+    assertNull(model.getClasspathDirs().get(0).getIncludes());
+    assertEquals("/project/app.war", model.getWar().getPath());
+    assertEquals("/static", model.getWebResources().get(0).getTarget());
+    assertEquals("/c", model.getWebResources().get(0).getDirectory());
+  }
+
+  @Test(expected = IOException.class)
+  public void testMalformedXml() throws Exception {
+    new RebelXmlReader().readFromString("<application><classpath></application>");
+  }
+
+}